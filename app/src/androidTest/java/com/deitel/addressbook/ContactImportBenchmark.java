@@ -0,0 +1,136 @@
+package com.deitel.addressbook;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.deitel.addressbook.data.AddressBookContentProvider;
+import com.deitel.addressbook.data.DatabaseDescription;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Instrumented benchmark of ContactImporter, which will execute on an Android device.
+ * It imports a generated vCard file into an isolated database, so the user's contacts are
+ * never touched. Results are written to logcat under the tag "ImportBenchmark".
+ */
+public class ContactImportBenchmark extends ProviderTestCase2<AddressBookContentProvider> {
+
+    private static final String TAG = "ImportBenchmark";
+
+    //the number of cards in the generated file.
+    private static final int CARD_COUNT = 100000;
+
+    private File file;
+
+    public ContactImportBenchmark() {
+        super(AddressBookContentProvider.class, DatabaseDescription.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(getContext().getCacheDir(), "import-benchmark.vcf");
+        writeCards(file, CARD_COUNT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    //imports CARD_COUNT cards, logging the throughput and the largest heap growth seen after a chunk.
+    public void testImport100kCards() throws Exception {
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        final long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        final long[] peakHeap = {heapBefore};
+
+        ContactImporter importer = new ContactImporter(getMockContentResolver());
+        long start = SystemClock.elapsedRealtimeNanos();
+        ContactImporter.Result result = importer.importFrom(new FileInputStream(file), file.length(),
+                new ContactImporter.Listener() {
+                    @Override
+                    public void onImportProgress(int imported, long bytesRead, long totalBytes) {
+                        peakHeap[0] = Math.max(peakHeap[0], runtime.totalMemory() - runtime.freeMemory());
+                    }
+
+                    @Override
+                    public void onImportFinished(ContactImporter.Result result) {
+                    }
+                });
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        double seconds = nanos / 1e9;
+        Log.i(TAG, String.format("%d cards, %.1f MB in %.1f s: %.0f cards/sec, %.1f MB/sec, " +
+                        "peak heap growth %.1f MB",
+                result.imported, file.length() / 1e6, seconds, result.imported / seconds,
+                file.length() / 1e6 / seconds, (peakHeap[0] - heapBefore) / 1e6));
+
+        assertNull(result.error);
+        assertEquals(CARD_COUNT, result.imported);
+        assertEquals(CARD_COUNT, countContacts());
+    }
+
+    //cancelling stops the import at a chunk boundary and keeps the chunks already inserted.
+    public void testCancelKeepsCompletedChunks() throws Exception {
+        final ContactImporter importer = new ContactImporter(getMockContentResolver());
+        ContactImporter.Result result = importer.importFrom(new FileInputStream(file), file.length(),
+                new ContactImporter.Listener() {
+                    @Override
+                    public void onImportProgress(int imported, long bytesRead, long totalBytes) {
+                        if (imported >= 2 * ContactImporter.CHUNK_SIZE)
+                            importer.cancel();
+                    }
+
+                    @Override
+                    public void onImportFinished(ContactImporter.Result result) {
+                    }
+                });
+
+        assertTrue(result.cancelled);
+        assertEquals(2 * ContactImporter.CHUNK_SIZE, result.imported);
+        assertEquals(2 * ContactImporter.CHUNK_SIZE, countContacts());
+    }
+
+    //writeCards writes count vCard 3.0 cards with every field the contacts table stores.
+    private static void writeCards(File file, int count) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            for (int i = 0; i < count; i++) {
+                writer.write("BEGIN:VCARD\r\nVERSION:3.0\r\n");
+                writer.write("N:Contact " + i + ";Imported;;;\r\n");
+                writer.write("FN:Imported Contact " + i + "\r\n");
+                writer.write("TEL;TYPE=CELL:555-" + (1000 + i % 9000) + "\r\n");
+                writer.write("EMAIL;TYPE=INTERNET:contact" + i + "@example.com\r\n");
+                writer.write("ADR;TYPE=HOME:;;" + i + " Main Street;Springfield;IL;" +
+                        (10000 + i % 90000) + ";USA\r\n");
+                writer.write("NOTE:Generated by ContactImportBenchmark\r\n");
+                writer.write("END:VCARD\r\n");
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    private int countContacts() {
+        Cursor cursor = getMockContentResolver().query(Contact.CONTENT_URI,
+                new String[]{Contact._ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        }
+        finally {
+            cursor.close();
+        }
+    }
+}
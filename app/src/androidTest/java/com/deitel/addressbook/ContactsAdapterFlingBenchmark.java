@@ -0,0 +1,181 @@
+package com.deitel.addressbook;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.deitel.addressbook.data.AddressBookContentProvider;
+import com.deitel.addressbook.data.AddressBookProviderBenchmark;
+import com.deitel.addressbook.data.DatabaseDescription;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of ContactsAdapter's bind path, which will execute on an Android device.
+ * It flings a RecyclerView showing 50,000 contacts and records the time between frames with
+ * Choreographer. The contacts live in an isolated database, so the user's contacts are never touched.
+ * Results are written to logcat under the tag "FlingBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class ContactsAdapterFlingBenchmark {
+
+    private static final String TAG = "FlingBenchmark";
+    private static final String DATABASE_PREFIX = "fling_benchmark.";
+    private static final int ROW_COUNT = 50000;
+    private static final int FLINGS = 10;
+
+    //a frame that takes longer than this misses the display's 60 Hz refresh.
+    private static final long FRAME_BUDGET_NANOS = 16666667;
+
+    @Rule
+    public final ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private MockContentResolver resolver;
+    private RecyclerView recyclerView;
+    private ContactsAdapter adapter;
+
+    private final List<Long> frameNanos = new ArrayList<>();
+    private volatile boolean recording;
+
+    @Before
+    public void setUp() throws Exception {
+        //a provider of our own, whose database file names start with DATABASE_PREFIX.
+        Context context = new RenamingDelegatingContext(
+                InstrumentationRegistry.getTargetContext(), DATABASE_PREFIX);
+        context.deleteDatabase("AddressBook.db");
+
+        AddressBookContentProvider provider = new AddressBookContentProvider();
+        ProviderInfo providerInfo = new ProviderInfo();
+        providerInfo.authority = DatabaseDescription.AUTHORITY;
+        provider.attachInfo(context, providerInfo);
+
+        resolver = new MockContentResolver();
+        resolver.addProvider(DatabaseDescription.AUTHORITY, provider);
+        resolver.bulkInsert(Contact.CONTENT_URI, AddressBookProviderBenchmark.generateContacts(ROW_COUNT));
+
+        //the first page, just like ContactsFragment's CursorLoader loads it.
+        final Cursor firstPage = resolver.query(Contact.buildPageUri(null, null, ContactPageList.PAGE_SIZE),
+                Contact.LIST_PROJECTION, null, null, null);
+        firstPage.getCount();
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                MainActivity activity = activityRule.getActivity();
+                recyclerView = new RecyclerView(activity);
+                recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+                recyclerView.addItemDecoration(new ItemDivider(activity));
+                recyclerView.setHasFixedSize(true);
+                adapter = new ContactsAdapter(resolver, new ContactsAdapter.ContactClickListener() {
+                    @Override
+                    public void onClick(Uri contactUri) {
+                    }
+                });
+                recyclerView.setAdapter(adapter);
+                adapter.swapCursor(firstPage);
+                activity.setContentView(recyclerView);
+            }
+        });
+        instrumentation.waitForIdleSync();
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE_PREFIX + "AddressBook.db");
+    }
+
+    @Test
+    public void flingFrameTimes() throws Exception {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                recording = true;
+                Choreographer.getInstance().postFrameCallback(frameRecorder);
+            }
+        });
+
+        for (int i = 0; i < FLINGS; i++)
+            flingAndWait();
+
+        recording = false;
+        instrumentation.waitForIdleSync();
+
+        long[] intervals = new long[frameNanos.size() - 1];
+        int janky = 0;
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i] = frameNanos.get(i + 1) - frameNanos.get(i);
+            if (intervals[i] > FRAME_BUDGET_NANOS)
+                janky++;
+        }
+        Arrays.sort(intervals);
+
+        Log.i(TAG, String.format("%d frames, median %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms, " +
+                        "%d over budget, %d rows loaded",
+                intervals.length, percentile(intervals, 50), percentile(intervals, 90),
+                percentile(intervals, 99), intervals[intervals.length - 1] / 1e6, janky,
+                adapter.getItemCount()));
+
+        assertTrue(adapter.getItemCount() > ContactPageList.PAGE_SIZE);
+    }
+
+    //flings the list down and waits until it stops scrolling.
+    private void flingAndWait() throws InterruptedException {
+        final CountDownLatch idle = new CountDownLatch(1);
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                    @Override
+                    public void onScrollStateChanged(RecyclerView view, int newState) {
+                        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                            view.removeOnScrollListener(this);
+                            idle.countDown();
+                        }
+                    }
+                });
+                recyclerView.fling(0, Integer.MAX_VALUE);
+            }
+        });
+        assertTrue(idle.await(30, TimeUnit.SECONDS));
+    }
+
+    //frameRecorder records the start time of every frame while recording is true.
+    private final Choreographer.FrameCallback frameRecorder = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!recording)
+                return;
+            frameNanos.add(frameTimeNanos);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    private static double percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)] / 1e6;
+    }
+}
@@ -0,0 +1,124 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentProviderOperation;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumentation tests for AddressBookContentProvider.applyBatch, which will execute on an Android
+ * device. ProviderTestCase2's MockContentResolver drops every notification, so the provider is
+ * given a context with the real ContentResolver (to observe its notifications) and a renamed,
+ * separate database (so the user's contacts are never touched).
+ */
+@RunWith(AndroidJUnit4.class)
+public class AddressBookContentProviderBatchTest {
+
+    private static final String DATABASE_PREFIX = "batch_test.";
+
+    //long enough for the notification window to end and the notifications to be delivered.
+    private static final long SETTLE_MILLIS = 500;
+
+    private Context context;
+    private AddressBookContentProvider provider;
+    private HandlerThread observerThread;
+    private ContentObserver observer;
+    private int changes;
+
+    @Before
+    public void createProvider() {
+        context = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(), DATABASE_PREFIX);
+        provider = new AddressBookContentProvider();
+        provider.attachInfo(context, null);
+
+        observerThread = new HandlerThread("AddressBookContentProviderBatchTest");
+        observerThread.start();
+        observer = new ContentObserver(new Handler(observerThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                synchronized (AddressBookContentProviderBatchTest.this) {
+                    changes++;
+                }
+            }
+        };
+        context.getContentResolver().registerContentObserver(Contact.CONTENT_URI, true, observer);
+    }
+
+    @After
+    public void shutdownProvider() {
+        context.getContentResolver().unregisterContentObserver(observer);
+        observerThread.quit();
+        provider.shutdown();
+        context.deleteDatabase("AddressBook.db");
+    }
+
+    @Test
+    public void committedBatch_isNotified() throws Exception {
+        ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+        batch.add(insertOperation("Ada Lovelace").build());
+        batch.add(insertOperation("Grace Hopper").withYieldAllowed(true).build());
+        provider.applyBatch(batch);
+        Thread.sleep(SETTLE_MILLIS);
+
+        assertEquals(2, count());
+        assertEquals(1, changes());
+    }
+
+    @Test
+    public void failedBatch_isRolledBackAndNotNotified() throws Exception {
+        ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+        batch.add(insertOperation("Ada Lovelace").build());
+        //the last operation expects a contact that does not exist, so the batch fails.
+        batch.add(ContentProviderOperation.newAssertQuery(Contact.CONTENT_URI)
+                .withSelection(Contact.COLUMN_NAME + " = ?", new String[]{"Charles Babbage"})
+                .withExpectedCount(1)
+                .build());
+        try {
+            provider.applyBatch(batch);
+            fail("failing batch applied");
+        }
+        catch (OperationApplicationException expected) {
+        }
+        Thread.sleep(SETTLE_MILLIS);
+
+        assertEquals(0, count());
+        assertEquals(0, changes());
+    }
+
+    private static ContentProviderOperation.Builder insertOperation(String name) {
+        return ContentProviderOperation.newInsert(Contact.CONTENT_URI)
+                .withValue(Contact.COLUMN_NAME, name);
+    }
+
+    private synchronized int changes() {
+        return changes;
+    }
+
+    private int count() {
+        Cursor cursor = provider.query(Contact.CONTENT_URI, null, null, null, null);
+        try {
+            return cursor.getCount();
+        }
+        finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+
+import com.deitel.addressbook.core.VCardParser;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * Instrumentation tests for AddressBookContentProvider, which will execute on an Android device.
+ * The provider runs against an isolated database, so the user's contacts are never touched.
+ */
+public class AddressBookContentProviderTest extends ProviderTestCase2<AddressBookContentProvider> {
+
+    //the row ID of the contact setUp inserts.
+    private long adaId;
+
+    public AddressBookContentProviderTest() {
+        super(AddressBookContentProvider.class, DatabaseDescription.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, "Ada Lovelace");
+        values.put(Contact.COLUMN_EMAIL, "ada@example.com");
+        adaId = ContentUris.parseId(getMockContentResolver().insert(Contact.CONTENT_URI, values));
+    }
+
+    public void testNullProjection_returnsTheDetailProfile() {
+        Cursor cursor = getMockContentResolver().query(Contact.CONTENT_URI, null, null, null, null);
+        try {
+            assertEquals(Arrays.asList(Contact.DETAIL_PROJECTION), Arrays.asList(cursor.getColumnNames()));
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    public void testListProjection_returnsOnlyTheListColumns() {
+        Cursor cursor = getMockContentResolver().query(Contact.buildPageUri(null, null, 10),
+                Contact.LIST_PROJECTION, null, null, null);
+        try {
+            assertEquals(Arrays.asList(Contact.LIST_PROJECTION), Arrays.asList(cursor.getColumnNames()));
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Ada Lovelace", cursor.getString(cursor.getColumnIndex(Contact.COLUMN_NAME)));
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    public void testUnknownColumn_isRejected() {
+        assertProjectionRejected(new String[]{Contact._ID, "password"});
+    }
+
+    public void testColumnExpression_isRejected() {
+        assertProjectionRejected(new String[]{Contact._ID, "(SELECT sql FROM sqlite_master) AS name"});
+    }
+
+    public void testCsvExport_quotesSpecialCharacters() throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, "Smith, \"Jr\"");
+        values.put(Contact.COLUMN_CITY, "Springfield");
+        getMockContentResolver().insert(Contact.CONTENT_URI, values);
+
+        BufferedReader reader = openExport(Contact.FORMAT_CSV);
+        try {
+            assertEquals("name,phone,email,street,city,state,zip", reader.readLine());
+            assertEquals("Ada Lovelace,,ada@example.com,,,,", reader.readLine());
+            assertEquals("\"Smith, \"\"Jr\"\"\",,,,Springfield,,", reader.readLine());
+            assertNull(reader.readLine());
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    public void testVCardExport_importsUnchanged() throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, "Grace Hopper; Rear Admiral");
+        values.put(Contact.COLUMN_PHONE, "555-0199");
+        values.put(Contact.COLUMN_STREET, "1 Navy Way");
+        values.put(Contact.COLUMN_ZIP, "22202");
+        getMockContentResolver().insert(Contact.CONTENT_URI, values);
+
+        assertEquals(Contact.MIME_TYPE_VCARD,
+                getMockContentResolver().getType(Contact.buildExportUri(Contact.FORMAT_VCARD)));
+        VCardParser parser = new VCardParser(openExport(Contact.FORMAT_VCARD));
+        assertEquals("Ada Lovelace", parser.next().name);
+        VCardParser.Card card = parser.next();
+        assertEquals("Grace Hopper; Rear Admiral", card.name);
+        assertEquals("555-0199", card.phone);
+        assertEquals("1 Navy Way", card.street);
+        assertNull(card.city);
+        assertEquals("22202", card.zip);
+        assertNull(parser.next());
+    }
+
+    public void testDuplicates_areListedByGroupAndMerged() {
+        long copy = insert("ada lovelace", "555-010-0000", null);
+        insert("Charles Babbage", "555-010-0001", null);
+
+        Cursor cursor = getMockContentResolver().query(Contact.buildDuplicatesUri(),
+                new String[]{Contact.COLUMN_DUPLICATE_GROUP, Contact._ID, Contact.COLUMN_PHONE}, null, null, null);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(adaId, cursor.getLong(0));
+            assertEquals(adaId, cursor.getLong(1));
+            assertTrue(cursor.moveToNext());
+            assertEquals(adaId, cursor.getLong(0));
+            assertEquals(copy, cursor.getLong(1));
+            assertEquals("555-010-0000", cursor.getString(2));
+        }
+        finally {
+            cursor.close();
+        }
+
+        Bundle extras = new Bundle();
+        extras.putLongArray(Contact.EXTRA_IDS, new long[]{adaId, copy});
+        Bundle result = getMockContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_MERGE, null, extras);
+        assertEquals(1, result.getInt(Contact.EXTRA_MERGED_COUNT));
+
+        //the copy is gone and its phone number was added to the contact we kept.
+        cursor = getMockContentResolver().query(Contact.CONTENT_URI, null, null, null, null);
+        try {
+            assertEquals(2, cursor.getCount());
+        }
+        finally {
+            cursor.close();
+        }
+        cursor = getMockContentResolver().query(Contact.buildContactUri(adaId), null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Ada Lovelace", cursor.getString(cursor.getColumnIndex(Contact.COLUMN_NAME)));
+            assertEquals("555-010-0000", cursor.getString(cursor.getColumnIndex(Contact.COLUMN_PHONE)));
+            assertEquals("ada@example.com", cursor.getString(cursor.getColumnIndex(Contact.COLUMN_EMAIL)));
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    public void testPhoneLookup_matchesOnTheTrailingDigits() {
+        long local = insert("Local", "555-010-0000", null);
+        long international = insert("International", "+1 (555) 010-0000", null);
+        insert("Neighbor", "555-010-0001", null);
+        long emergency = insert("Emergency", "911", null);
+
+        //the exact match comes first, then the numbers that only end the same way, by name.
+        assertLookup("1 555 010 0000", international, local);
+        assertLookup("(555) 010-0000", local, international);
+        assertLookup("010-0000", international, local);
+
+        //numbers shorter than 7 digits only match exactly.
+        assertLookup("911", emergency);
+        assertLookup("10-0000");
+        assertLookup("no digits");
+
+        //the phone key follows the phone number when it is edited.
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_PHONE, "555-010-0001");
+        getMockContentResolver().update(Contact.buildContactUri(local), values, null, null);
+        assertLookup("555-010-0000", international);
+    }
+
+    public void testDelete_isUndoneByRestoreAndRemovedByPurge() {
+        long grace = insert("Grace Hopper", "555-0199", null);
+        assertEquals(1, getMockContentResolver().delete(Contact.buildContactUri(grace), null, null));
+
+        //a deleted contact is hidden from every query and cannot be updated.
+        assertEquals(1, count(Contact.CONTENT_URI));
+        assertEquals(0, count(Contact.buildContactUri(grace)));
+        assertEquals(0, count(Contact.buildSearchUri("grace")));
+        assertEquals(0, count(Contact.buildPhoneLookupUri("555-0199")));
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_CITY, "Arlington");
+        assertEquals(0, getMockContentResolver().update(Contact.buildContactUri(grace), values, null, null));
+
+        Bundle extras = new Bundle();
+        extras.putLongArray(Contact.EXTRA_IDS, new long[]{grace});
+        Bundle result = getMockContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_RESTORE, null, extras);
+        assertEquals(1, result.getInt(Contact.EXTRA_RESTORED_COUNT));
+        assertEquals(1, count(Contact.buildPhoneLookupUri("555-0199")));
+
+        //a fresh tombstone is kept; one older than the retention period is purged. Callers cannot
+        //write the tombstone column, so we backdate Ada's delete in the database directly.
+        getMockContentResolver().delete(Contact.buildContactUri(grace), null, null);
+        AddressBookDatabaseHelper dbHelper = new AddressBookDatabaseHelper(getMockContext());
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            values.clear();
+            values.put(Contact.COLUMN_DELETED_AT, 1);
+            db.update(Contact.TABLE_NAME, values, Contact._ID + " = " + adaId, null);
+        }
+        finally {
+            dbHelper.close();
+        }
+        result = getMockContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_PURGE, null, null);
+        assertEquals(1, result.getInt(Contact.EXTRA_PURGED_COUNT));
+
+        extras.putLongArray(Contact.EXTRA_IDS, new long[]{adaId, grace});
+        result = getMockContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_RESTORE, null, extras);
+        assertEquals(1, result.getInt(Contact.EXTRA_RESTORED_COUNT));
+        assertEquals(1, count(Contact.CONTENT_URI));
+    }
+
+    public void testInternalColumns_areRejected() {
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, "Grace Hopper");
+        values.put(Contact.COLUMN_SORT_KEY, "a");
+        try {
+            getMockContentResolver().insert(Contact.CONTENT_URI, values);
+            fail("sort key accepted");
+        }
+        catch (IllegalArgumentException expected) {
+        }
+
+        values.clear();
+        values.put(Contact.COLUMN_DELETED_AT, 1);
+        try {
+            getMockContentResolver().update(Contact.buildContactUri(adaId), values, null, null);
+            fail("tombstone accepted");
+        }
+        catch (IllegalArgumentException expected) {
+        }
+        assertEquals(1, count(Contact.CONTENT_URI));
+    }
+
+    public void testContactSet_isUpdatedAndDeletedTogether() {
+        long grace = insert("Grace Hopper", null, null);
+        long alan = insert("Alan Turing", null, null);
+
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_STATE, "NY");
+        assertEquals(2, getMockContentResolver().update(Contact.buildContactsUri(adaId, grace),
+                values, null, null));
+        Cursor cursor = getMockContentResolver().query(Contact.CONTENT_URI, null,
+                Contact.COLUMN_STATE + " = ?", new String[]{"NY"}, null);
+        try {
+            assertEquals(2, cursor.getCount());
+        }
+        finally {
+            cursor.close();
+        }
+
+        //deleted contacts in the set are skipped.
+        assertEquals(1, getMockContentResolver().delete(Contact.buildContactUri(grace), null, null));
+        assertEquals(2, getMockContentResolver().delete(Contact.buildContactsUri(adaId, grace, alan),
+                null, null));
+        assertEquals(0, count(Contact.CONTENT_URI));
+
+        try {
+            getMockContentResolver().delete(Uri.withAppendedPath(Contact.CONTENT_URI, "ids/1,x"), null, null);
+            fail("malformed contact set accepted");
+        }
+        catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testSections_followInsertsRenamesAndDeletes() {
+        assertEquals("a=1", sections());
+
+        long alan = insert("Alan Turing", null, null);
+        long grace = insert("Grace Hopper", null, null);
+        insert(null, "555-0100", null);
+        assertEquals("=1 a=2 g=1", sections());
+
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, "Barbara Liskov");
+        getMockContentResolver().update(Contact.buildContactUri(alan), values, null, null);
+        assertEquals("=1 a=1 b=1 g=1", sections());
+
+        //deleted contacts are not counted, and empty sections are not listed.
+        getMockContentResolver().delete(Contact.buildContactUri(grace), null, null);
+        assertEquals("=1 a=1 b=1", sections());
+
+        Bundle extras = new Bundle();
+        extras.putLongArray(Contact.EXTRA_IDS, new long[]{grace});
+        getMockContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_RESTORE, null, extras);
+        assertEquals("=1 a=1 b=1 g=1", sections());
+    }
+
+    private long insert(String name, String phone, String email) {
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, name);
+        values.put(Contact.COLUMN_PHONE, phone);
+        values.put(Contact.COLUMN_EMAIL, email);
+        return ContentUris.parseId(getMockContentResolver().insert(Contact.CONTENT_URI, values));
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = getMockContentResolver().query(uri, new String[]{Contact._ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    //returns the rows of the sections Uri as "section=count", in order.
+    private String sections() {
+        Cursor cursor = getMockContentResolver().query(Contact.buildSectionsUri(), null, null, null, null);
+        try {
+            StringBuilder sections = new StringBuilder();
+            while (cursor.moveToNext()) {
+                if (sections.length() > 0)
+                    sections.append(' ');
+                sections.append(cursor.getString(cursor.getColumnIndex(Contact.COLUMN_SECTION)))
+                        .append('=')
+                        .append(cursor.getInt(cursor.getColumnIndex(Contact.COLUMN_SECTION_COUNT)));
+            }
+            return sections.toString();
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    //asserts that looking up number returns exactly the contacts ids, in that order.
+    private void assertLookup(String number, long... ids) {
+        Cursor cursor = getMockContentResolver().query(Contact.buildPhoneLookupUri(number),
+                new String[]{Contact._ID}, null, null, null);
+        try {
+            long[] found = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++)
+                found[i] = cursor.getLong(0);
+            assertEquals(number, Arrays.toString(ids), Arrays.toString(found));
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    private BufferedReader openExport(String format) throws IOException {
+        InputStream in = getMockContentResolver().openInputStream(Contact.buildExportUri(format));
+        return new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    }
+
+    private void assertProjectionRejected(String[] projection) {
+        try {
+            getMockContentResolver().query(Contact.CONTENT_URI, projection, null, null, null).close();
+            fail("projection accepted: " + Arrays.toString(projection));
+        }
+        catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.CrossProcessCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.os.SystemClock;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.deitel.addressbook.core.SortKeys;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Instrumented benchmarks for AddressBookContentProvider, which will execute on an Android device.
+ * The provider runs against an isolated database, so the user's contacts are never touched.
+ * Results are written to logcat under the tag "ProviderBenchmark".
+ */
+public class AddressBookProviderBenchmark extends ProviderTestCase2<AddressBookContentProvider> {
+
+    private static final String TAG = "ProviderBenchmark";
+
+    //number of rows each benchmark writes.
+    private static final int ROW_COUNT = 5000;
+
+    //number of reads timed by testReaderLatencyDuringWrites, with and without a writer.
+    private static final int READ_COUNT = 500;
+
+    public AddressBookProviderBenchmark() {
+        super(AddressBookContentProvider.class, DatabaseDescription.AUTHORITY);
+    }
+
+    //compares a loop of single-row insert() calls against one bulkInsert() of the same rows.
+    public void testBulkInsertThroughput() throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        ContentValues[] rows = generateContacts(ROW_COUNT);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (ContentValues row : rows)
+            resolver.insert(Contact.CONTENT_URI, row);
+        long loopNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        int inserted = resolver.bulkInsert(Contact.CONTENT_URI, rows);
+        long bulkNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("insert() loop: %.0f rows/sec, bulkInsert(): %.0f rows/sec",
+                rowsPerSecond(ROW_COUNT, loopNanos), rowsPerSecond(ROW_COUNT, bulkNanos)));
+
+        assertEquals(ROW_COUNT, inserted);
+        assertEquals(2 * ROW_COUNT, countContacts());
+    }
+
+    //compares loading the whole sorted contact list with loading its first page and a deep page.
+    public void testPagedQueryLatency() throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        resolver.bulkInsert(Contact.CONTENT_URI, generateContacts(4 * ROW_COUNT));
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int fullCount = fill(resolver.query(Contact.CONTENT_URI, null, null, null,
+                Contact.PAGE_SORT_ORDER));
+        long fullNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        int firstPageCount = fill(resolver.query(Contact.buildPageUri(null, null, 100),
+                null, null, null, null));
+        long firstPageNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        //"Contact 5" sorts roughly in the middle of the list.
+        start = SystemClock.elapsedRealtimeNanos();
+        int deepPageCount = fill(resolver.query(
+                Contact.buildPageUri(Contact.buildPageKey(SortKeys.build("Contact 5"), Long.MAX_VALUE), null, 100),
+                null, null, null, null));
+        long deepPageNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("full list: %.1f ms, first page: %.1f ms, deep page: %.1f ms",
+                fullNanos / 1e6, firstPageNanos / 1e6, deepPageNanos / 1e6));
+
+        assertEquals(4 * ROW_COUNT, fullCount);
+        assertEquals(100, firstPageCount);
+        assertEquals(100, deepPageCount);
+    }
+
+    //compares a full-text search over 100k contacts with the equivalent LIKE '%x%' scan.
+    public void testSearchLatency() throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        resolver.bulkInsert(Contact.CONTENT_URI, generateContacts(20 * ROW_COUNT));
+
+        String like = "%45678%";
+        long start = SystemClock.elapsedRealtimeNanos();
+        int likeCount = fill(resolver.query(Contact.CONTENT_URI, null,
+                Contact.COLUMN_NAME + " LIKE ? OR " + Contact.COLUMN_EMAIL + " LIKE ? OR " +
+                        Contact.COLUMN_STREET + " LIKE ? OR " + Contact.COLUMN_CITY + " LIKE ? OR " +
+                        Contact.COLUMN_STATE + " LIKE ? OR " + Contact.COLUMN_ZIP + " LIKE ?",
+                new String[]{like, like, like, like, like, like}, Contact.PAGE_SORT_ORDER));
+        long likeNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        int searchCount = fill(resolver.query(Contact.buildSearchUri("45678"), null, null, null, null));
+        long searchNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("LIKE scan: %.1f ms (%d rows), FTS search: %.1f ms (%d rows)",
+                likeNanos / 1e6, likeCount, searchNanos / 1e6, searchCount));
+
+        assertTrue(searchCount > 0);
+    }
+
+    //compares the projection profiles on the whole, sorted contact list: how many rows fit in a
+    //CursorWindow (and so roughly how many bytes each row takes) and how long it takes to read
+    //every row through the windows. A CursorWindow is 2 MB on most devices.
+    public void testProjectionProfileWindowCost() throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        resolver.bulkInsert(Contact.CONTENT_URI, generateContacts(4 * ROW_COUNT));
+
+        String[] names = {"null (details)", "DETAIL_PROJECTION", "LIST_PROJECTION"};
+        String[][] profiles = {null, Contact.DETAIL_PROJECTION, Contact.LIST_PROJECTION};
+        for (int i = 0; i < profiles.length; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = resolver.query(Contact.CONTENT_URI, profiles[i], null, null,
+                    Contact.PAGE_SORT_ORDER);
+            int windows = 0;
+            int rowsPerWindow = 0;
+            int windowStart = -1;
+            try {
+                while (cursor.moveToNext()) {
+                    //the window is refilled when the cursor moves past its last row.
+                    CursorWindow window = ((CrossProcessCursor) cursor).getWindow();
+                    if (window.getStartPosition() != windowStart) {
+                        windowStart = window.getStartPosition();
+                        windows++;
+                        rowsPerWindow = Math.max(rowsPerWindow, window.getNumRows());
+                    }
+                }
+            }
+            finally {
+                cursor.close();
+            }
+            long nanos = SystemClock.elapsedRealtimeNanos() - start;
+
+            Log.i(TAG, String.format("%s: %.1f ms, %d windows, %d rows per window (about %d bytes per row)",
+                    names[i], nanos / 1e6, windows, rowsPerWindow, 2 * 1024 * 1024 / rowsPerWindow));
+            assertTrue(rowsPerWindow > 0);
+        }
+    }
+
+    //streams 100k contacts out of the export Uri in each format, logging the throughput and the
+    //largest heap growth seen while reading. The export is written into a pipe as it is read,
+    //so the heap should not grow with the number of contacts.
+    public void testExportThroughput() throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        int count = 20 * ROW_COUNT;
+        resolver.bulkInsert(Contact.CONTENT_URI, generateContacts(count));
+
+        Runtime runtime = Runtime.getRuntime();
+        for (String format : new String[]{Contact.FORMAT_CSV, Contact.FORMAT_VCARD}) {
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long peakHeap = heapBefore;
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            InputStream in = resolver.openInputStream(Contact.buildExportUri(format));
+            byte[] buffer = new byte[64 * 1024];
+            long bytes = 0;
+            int lines = 0;
+            try {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    for (int i = 0; i < n; i++)
+                        if (buffer[i] == '\n')
+                            lines++;
+                    //sample the heap about once per megabyte.
+                    if ((bytes + n) / (1024 * 1024) != bytes / (1024 * 1024))
+                        peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+                    bytes += n;
+                }
+            }
+            finally {
+                in.close();
+            }
+            double seconds = (SystemClock.elapsedRealtimeNanos() - start) / 1e9;
+
+            Log.i(TAG, String.format("export %s: %d contacts, %.1f MB in %.1f s: %.1f MB/sec, " +
+                            "peak heap growth %.1f MB", format, count, bytes / 1e6, seconds,
+                    bytes / 1e6 / seconds, (peakHeap - heapBefore) / 1e6));
+
+            //a header line plus one line per contact, or at least 7 lines per vCard.
+            if (format.equals(Contact.FORMAT_CSV))
+                assertEquals(count + 1, lines);
+            else
+                assertTrue(lines >= 7 * count);
+        }
+    }
+
+    //times the duplicates query over 100k contacts, 1000 of which were entered twice with a
+    //differently formatted phone number and a lower-cased name.
+    public void testDuplicateDetection() throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        int count = 20 * ROW_COUNT;
+        int duplicates = 1000;
+        resolver.bulkInsert(Contact.CONTENT_URI, generateContacts(count));
+
+        ContentValues[] copies = new ContentValues[duplicates];
+        for (int i = 0; i < duplicates; i++) {
+            int original = i * (count / duplicates);
+            copies[i] = new ContentValues();
+            copies[i].put(Contact.COLUMN_NAME, "contact " + original);
+            copies[i].put(Contact.COLUMN_PHONE, String.format("+1 (555) %07d", original));
+        }
+        resolver.bulkInsert(Contact.CONTENT_URI, copies);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int rows = fill(resolver.query(Contact.buildDuplicatesUri(), null, null, null, null));
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("duplicates of %d contacts: %.1f ms, %d rows",
+                count + duplicates, nanos / 1e6, rows));
+        assertEquals(2 * duplicates, rows);
+    }
+
+    //times READ_COUNT phone lookups over 100k contacts, each for a number formatted differently from
+    //the one stored and with a country code, against one LIKE scan of the phone column.
+    public void testPhoneLookupLatency() throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        int count = 20 * ROW_COUNT;
+        resolver.bulkInsert(Contact.CONTENT_URI, generateContacts(count));
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int likeCount = fill(resolver.query(Contact.CONTENT_URI, null, Contact.COLUMN_PHONE + " LIKE ?",
+                new String[]{"%" + String.format("%07d", count / 2)}, null));
+        long likeNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        long[] nanos = new long[READ_COUNT];
+        for (int i = 0; i < READ_COUNT; i++) {
+            String number = String.format("+1 (555) %07d", (i * 7919) % count);
+            start = SystemClock.elapsedRealtimeNanos();
+            int rows = fill(resolver.query(Contact.buildPhoneLookupUri(number), null, null, null, null));
+            nanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+            assertEquals(number, 1, rows);
+        }
+        Arrays.sort(nanos);
+
+        Log.i(TAG, String.format("LIKE scan: %.2f ms (%d rows); phone lookups: median %.3f ms, " +
+                        "p99 %.3f ms, max %.3f ms",
+                likeNanos / 1e6, likeCount, percentile(nanos, 50), percentile(nanos, 99),
+                percentile(nanos, 100)));
+    }
+
+    //measures the latency of the list's first page query and of a single contact query, first on
+    //an idle database and then while another thread keeps saving contacts one at a time, the way
+    //AddEditFragment saves them. With WAL the readers should barely notice the writer.
+    public void testReaderLatencyDuringWrites() throws Exception {
+        final ContentResolver resolver = getMockContentResolver();
+        resolver.bulkInsert(Contact.CONTENT_URI, generateContacts(ROW_COUNT));
+
+        long[] idleNanos = timeReads(resolver);
+
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicInteger writes = new AtomicInteger();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ContentValues values = new ContentValues();
+                while (writing.get()) {
+                    int i = writes.getAndIncrement();
+                    values.put(Contact.COLUMN_NAME, "Contact " + i + " (edited)");
+                    resolver.update(Contact.buildContactUri(1 + i % ROW_COUNT), values, null, null);
+                }
+            }
+        }, "BenchmarkWriter");
+        writer.start();
+        long[] writingNanos;
+        try {
+            writingNanos = timeReads(resolver);
+        }
+        finally {
+            writing.set(false);
+            writer.join();
+        }
+
+        Log.i(TAG, String.format("reads idle: median %.2f ms, p99 %.2f ms, max %.2f ms; " +
+                        "during %d writes: median %.2f ms, p99 %.2f ms, max %.2f ms",
+                percentile(idleNanos, 50), percentile(idleNanos, 99), percentile(idleNanos, 100),
+                writes.get(), percentile(writingNanos, 50), percentile(writingNanos, 99),
+                percentile(writingNanos, 100)));
+
+        assertTrue(writes.get() > 0);
+    }
+
+    //times READ_COUNT reads, alternating the first page of the list and a single contact,
+    //and returns their durations in nanoseconds, sorted.
+    private static long[] timeReads(ContentResolver resolver) {
+        long[] nanos = new long[READ_COUNT];
+        for (int i = 0; i < READ_COUNT; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            if (i % 2 == 0)
+                fill(resolver.query(Contact.buildPageUri(null, null, 100), null, null, null, null));
+            else
+                fill(resolver.query(Contact.buildContactUri(1 + i % ROW_COUNT), null, null, null, null));
+            nanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    //returns the given percentile of sorted durations, in milliseconds.
+    private static double percentile(long[] sortedNanos, int percent) {
+        return sortedNanos[Math.min(sortedNanos.length - 1, sortedNanos.length * percent / 100)] / 1e6;
+    }
+
+    //builds count synthetic contacts with deterministic contents.
+    public static ContentValues[] generateContacts(int count) {
+        ContentValues[] rows = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            ContentValues values = new ContentValues();
+            values.put(Contact.COLUMN_NAME, "Contact " + i);
+            values.put(Contact.COLUMN_PHONE, String.format("555-%07d", i));
+            values.put(Contact.COLUMN_EMAIL, "contact" + i + "@example.com");
+            values.put(Contact.COLUMN_STREET, i + " Main Street");
+            values.put(Contact.COLUMN_CITY, "Springfield");
+            values.put(Contact.COLUMN_STATE, "IL");
+            values.put(Contact.COLUMN_ZIP, String.format("%05d", i % 100000));
+            rows[i] = values;
+        }
+        return rows;
+    }
+
+    //fills cursor's window, closes it and returns its row count.
+    private static int fill(Cursor cursor) {
+        try {
+            return cursor.getCount();
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    private int countContacts() {
+        return fill(getMockContentResolver().query(Contact.CONTENT_URI, null, null, null, null));
+    }
+
+    private static double rowsPerSecond(int rows, long nanos) {
+        return rows * 1e9 / nanos;
+    }
+}
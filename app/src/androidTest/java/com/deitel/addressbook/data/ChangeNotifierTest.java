@@ -0,0 +1,116 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumentation tests for ChangeNotifier, which will execute on an Android device.
+ * Observers are registered the same way the list's and a contact's CursorLoaders register them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChangeNotifierTest {
+
+    private static final long WINDOW_MILLIS = 50;
+
+    //long enough for the window to end and the notifications to be delivered.
+    private static final long SETTLE_MILLIS = 500;
+
+    private ContentResolver contentResolver;
+    private HandlerThread observerThread;
+    private RecordingObserver listObserver;
+    private RecordingObserver contactObserver;
+    private ChangeNotifier notifier;
+
+    @Before
+    public void registerObservers() {
+        contentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        observerThread = new HandlerThread("ChangeNotifierTest");
+        observerThread.start();
+        Handler handler = new Handler(observerThread.getLooper());
+
+        listObserver = new RecordingObserver(handler);
+        contactObserver = new RecordingObserver(handler);
+        contentResolver.registerContentObserver(Contact.CONTENT_URI, true, listObserver);
+        contentResolver.registerContentObserver(Contact.buildContactUri(2), true, contactObserver);
+
+        notifier = new ChangeNotifier(contentResolver, WINDOW_MILLIS);
+    }
+
+    @After
+    public void unregisterObservers() {
+        contentResolver.unregisterContentObserver(listObserver);
+        contentResolver.unregisterContentObserver(contactObserver);
+        observerThread.quit();
+        notifier.shutdown();
+    }
+
+    @Test
+    public void oneContactChanged_onlyThatContactsObserversAreNotified() throws InterruptedException {
+        notifier.notifyChange(Contact.buildContactUri(1));
+        Thread.sleep(SETTLE_MILLIS);
+
+        assertEquals(1, listObserver.changes());
+        assertEquals(0, contactObserver.changes());
+    }
+
+    @Test
+    public void burstOfChanges_isOneNotificationOfTheTable() throws InterruptedException {
+        for (long id = 1; id <= 100; id++)
+            notifier.notifyChange(Contact.buildContactUri(id));
+        Thread.sleep(SETTLE_MILLIS);
+
+        assertEquals(1, listObserver.changes());
+        assertEquals(Contact.CONTENT_URI, listObserver.lastUri());
+        assertEquals(1, contactObserver.changes());
+    }
+
+    @Test
+    public void changesInSeparateWindows_areNotifiedSeparately() throws InterruptedException {
+        notifier.notifyChange(Contact.buildContactUri(1));
+        Thread.sleep(SETTLE_MILLIS);
+        notifier.notifyChange(Contact.buildContactUri(2));
+        Thread.sleep(SETTLE_MILLIS);
+
+        assertEquals(2, listObserver.changes());
+        assertEquals(1, contactObserver.changes());
+    }
+
+    //RecordingObserver records the Uris it is notified of.
+    private static final class RecordingObserver extends ContentObserver {
+        private final List<Uri> uris = new ArrayList<>();
+
+        RecordingObserver(Handler handler) {
+            super(handler);
+        }
+
+        @Override
+        public synchronized void onChange(boolean selfChange, Uri uri) {
+            uris.add(uri);
+        }
+
+        synchronized int changes() {
+            return uris.size();
+        }
+
+        synchronized Uri lastUri() {
+            return uris.get(uris.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.test.ProviderTestCase2;
+
+import com.deitel.addressbook.core.ContactRecord;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+/**
+ * Instrumentation tests for ContactCache, which will execute on an Android device.
+ * The provider runs against an isolated database and invalidates the cache when it writes.
+ */
+public class ContactCacheTest extends ProviderTestCase2<AddressBookContentProvider> {
+
+    private final ContactCache cache = ContactCache.getInstance();
+
+    public ContactCacheTest() {
+        super(AddressBookContentProvider.class, DatabaseDescription.AUTHORITY);
+    }
+
+    public void testLoadedContact_isServedFromMemory() {
+        long id = insertContact("Ada Lovelace");
+        cache.load(getMockContentResolver(), id);
+
+        int hits = cache.getHitCount();
+        ContactRecord contact = cache.get(id);
+
+        assertNotNull(contact);
+        assertEquals("Ada Lovelace", contact.name);
+        assertEquals(hits + 1, cache.getHitCount());
+    }
+
+    public void testUpdatedContact_isInvalidated() {
+        long id = insertContact("Ada Lovelace");
+        cache.load(getMockContentResolver(), id);
+
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, "Ada King");
+        getMockContentResolver().update(Contact.buildContactUri(id), values, null, null);
+
+        int misses = cache.getMissCount();
+        assertNull(cache.get(id));
+        assertEquals(misses + 1, cache.getMissCount());
+        assertEquals("Ada King", cache.load(getMockContentResolver(), id).name);
+    }
+
+    public void testDeletedContact_isInvalidated() {
+        long id = insertContact("Ada Lovelace");
+        cache.load(getMockContentResolver(), id);
+
+        getMockContentResolver().delete(Contact.buildContactUri(id), null, null);
+
+        assertNull(cache.get(id));
+        assertNull(cache.load(getMockContentResolver(), id));
+    }
+
+    private long insertContact(String name) {
+        ContentResolver resolver = getMockContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, name);
+        return ContentUris.parseId(resolver.insert(Contact.CONTENT_URI, values));
+    }
+}
@@ -0,0 +1,104 @@
+package com.deitel.addressbook.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.deitel.addressbook.core.PhoneKeys;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumentation tests that check SQLite's EXPLAIN QUERY PLAN for the contact list queries, which
+ * will execute on an Android device. The list must be read through the sort key index, in index
+ * order, without a temporary B-tree for the ORDER BY, and phone lookups through the phone key index.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ContactListQueryPlanTest {
+
+    private static final String[] LIST_COLUMNS =
+            {Contact._ID, Contact.COLUMN_NAME, Contact.COLUMN_SORT_KEY};
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        db = SQLiteDatabase.create(null);
+        new AddressBookDatabaseHelper(InstrumentationRegistry.getTargetContext()).onCreate(db);
+    }
+
+    @After
+    public void closeDatabase() {
+        db.close();
+    }
+
+    @Test
+    public void firstPage_isAnIndexOnlyScanWithoutSorting() {
+        String plan = explain(null, null);
+
+        assertTrue(plan, plan.contains("COVERING INDEX " + DatabaseMigrations.SortKeyMigration.INDEX_NAME));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void pageAfterKey_seeksIntoTheIndexWithoutSorting() {
+        String plan = explain(Contact.buildPageKey("m", 42), null);
+
+        assertTrue(plan, plan.startsWith("SEARCH"));
+        assertTrue(plan, plan.contains("COVERING INDEX " + DatabaseMigrations.SortKeyMigration.INDEX_NAME));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void pageBetweenKeys_seeksIntoTheIndexWithoutSorting() {
+        String plan = explain(Contact.buildPageKey("m", 42), Contact.buildPageKey("n", 7));
+
+        assertTrue(plan, plan.startsWith("SEARCH"));
+        assertTrue(plan, plan.contains("COVERING INDEX " + DatabaseMigrations.SortKeyMigration.INDEX_NAME));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void phoneLookup_searchesThePhoneKeyIndex() {
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(Contact.TABLE_NAME);
+        String phoneKey = PhoneKeys.build("+1 (555) 010-0000");
+        ContactQueries.appendPhoneLookup(queryBuilder, phoneKey);
+        String plan = explain(queryBuilder.buildQuery(null, ContactQueries.NOT_DELETED, null, null,
+                ContactQueries.phoneLookupSortOrder(phoneKey), null));
+
+        assertTrue(plan, plan.startsWith("SEARCH"));
+        assertTrue(plan, plan.contains("INDEX " + DatabaseMigrations.PhoneKeyMigration.INDEX_NAME));
+    }
+
+    //returns the details of the query plan of a page query built the way the provider builds it.
+    private String explain(String afterKey, String untilKey) {
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(Contact.TABLE_NAME);
+        ContactQueries.appendPageBounds(queryBuilder, afterKey, untilKey);
+        return explain(queryBuilder.buildQuery(LIST_COLUMNS, ContactQueries.NOT_DELETED, null, null,
+                Contact.PAGE_SORT_ORDER, "100"));
+    }
+
+    //returns the details of the query plan of sql.
+    private String explain(String sql) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            while (cursor.moveToNext())
+                plan.append(cursor.getString(cursor.getColumnIndex("detail"))).append('\n');
+        }
+        finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+}
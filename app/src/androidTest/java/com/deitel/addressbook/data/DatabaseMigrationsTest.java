@@ -0,0 +1,181 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumentation tests for the schema migrations in DatabaseMigrations, which will execute on an
+ * Android device. Every test starts from an in-memory database with the version 1 schema.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationsTest {
+
+    //the contacts table exactly as version 1 of the app created it.
+    private static final String VERSION_1_SCHEMA = "CREATE TABLE contacts(_id integer primary key, " +
+            "name TEXT, phone TEXT, email TEXT, street TEXT, city TEXT, state TEXT, zip TEXT);";
+
+    private SQLiteDatabase db;
+    private final List<String> progress = new ArrayList<>();
+
+    @Before
+    public void createVersion1Database() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL(VERSION_1_SCHEMA);
+    }
+
+    @After
+    public void closeDatabase() {
+        db.close();
+    }
+
+    @Test
+    public void searchTableMigration_indexesExistingAndNewContacts() {
+        insertContact("Ada Lovelace");
+        migrate(new DatabaseMigrations.SearchTableMigration());
+
+        insertContact("Grace Hopper");
+
+        assertEquals(1, countMatches("lov*"));
+        assertEquals(1, countMatches("hop*"));
+    }
+
+    @Test
+    public void phoneKeyMigration_backfillsExistingContacts() {
+        insertContact("Ada Lovelace");
+        db.execSQL("UPDATE " + Contact.TABLE_NAME + " SET " + Contact.COLUMN_PHONE + " = '555-010-0000'");
+        insertContact("Grace Hopper");
+        DatabaseMigrations migrations = migrate(new DatabaseMigrations.PhoneKeyMigration());
+        migrations.runPendingBackfills(db);
+
+        assertEquals("0000010555", DatabaseUtils.stringForQuery(db, "SELECT " + Contact.COLUMN_PHONE_KEY +
+                " FROM " + Contact.TABLE_NAME + " WHERE " + Contact.COLUMN_NAME + " = 'Ada Lovelace'", null));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, Contact.TABLE_NAME,
+                Contact.COLUMN_PHONE_KEY + " IS NULL"));
+    }
+
+    @Test
+    public void upgrade_reportsEveryMigrationInOrder() {
+        migrate(new RecordingMigration(2), new RecordingMigration(3));
+
+        assertEquals("migrated 2", progress.get(0));
+        assertEquals("migrated 3", progress.get(1));
+    }
+
+    @Test
+    public void upgrade_skipsMigrationsAtOrBelowTheOldVersion() {
+        DatabaseMigrations migrations = new DatabaseMigrations(recorder,
+                new DatabaseMigration[]{new RecordingMigration(2), new RecordingMigration(3)});
+        migrations.upgrade(db, 2, 3);
+
+        assertEquals(1, progress.size());
+        assertEquals("migrated 3", progress.get(0));
+    }
+
+    @Test
+    public void runPendingBackfills_processesEveryRowInChunks() {
+        int rows = DatabaseMigrations.BACKFILL_CHUNK_SIZE * 2 + 1;
+        for (int i = 0; i < rows; i++)
+            insertContact("Contact " + i);
+
+        RecordingMigration migration = new RecordingMigration(2);
+        DatabaseMigrations migrations = migrate(migration);
+        migrations.runPendingBackfills(db);
+
+        assertEquals(rows, migration.backfilledRows);
+        assertEquals(3, migration.chunks);
+        assertEquals("backfilled 2", progress.get(progress.size() - 1));
+
+        //a finished backfill does not run again.
+        migrations.runPendingBackfills(db);
+        assertEquals(rows, migration.backfilledRows);
+    }
+
+    //runs the migrations on the version 1 database and returns the DatabaseMigrations used.
+    private DatabaseMigrations migrate(DatabaseMigration... migrationSteps) {
+        DatabaseMigrations migrations = new DatabaseMigrations(recorder, migrationSteps);
+        migrations.upgrade(db, 1, migrationSteps[migrationSteps.length - 1].version);
+        return migrations;
+    }
+
+    private void insertContact(String name) {
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, name);
+        db.insertOrThrow(Contact.TABLE_NAME, null, values);
+    }
+
+    private long countMatches(String matchQuery) {
+        return DatabaseUtils.longForQuery(db, "SELECT count(*) FROM " +
+                AddressBookDatabaseHelper.FTS_TABLE_NAME + " WHERE " +
+                AddressBookDatabaseHelper.FTS_TABLE_NAME + " MATCH ?", new String[]{matchQuery});
+    }
+
+    //recorder writes the migrations' progress reports into progress.
+    private final DatabaseMigrations.ProgressListener recorder = new DatabaseMigrations.ProgressListener() {
+        @Override
+        public void onMigrationFinished(DatabaseMigration migration, long elapsedMillis) {
+            progress.add("migrated " + migration.version);
+        }
+
+        @Override
+        public void onBackfillProgress(DatabaseMigration migration, int rowsDone, int rowsTotal) {
+            progress.add(rowsDone + "/" + rowsTotal);
+        }
+
+        @Override
+        public void onBackfillFinished(DatabaseMigration migration, long elapsedMillis) {
+            progress.add("backfilled " + migration.version);
+        }
+    };
+
+    //RecordingMigration changes nothing and has a backfill that counts the rows and chunks it sees.
+    private static final class RecordingMigration extends DatabaseMigration {
+        int backfilledRows;
+        int chunks;
+
+        RecordingMigration(int version) {
+            super(version, "recording migration");
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+        }
+
+        @Override
+        Backfill createBackfill() {
+            return new Backfill() {
+                @Override
+                int countRemaining(SQLiteDatabase db, long afterId) {
+                    return (int) DatabaseUtils.queryNumEntries(db, Contact.TABLE_NAME,
+                            Contact._ID + " > " + afterId);
+                }
+
+                @Override
+                long backfill(SQLiteDatabase db, long afterId, int limit) {
+                    long lastId = DatabaseUtils.longForQuery(db, "SELECT ifnull(max(_id), -1) FROM " +
+                            "(SELECT _id FROM contacts WHERE _id > ? ORDER BY _id LIMIT " + limit + ")",
+                            new String[]{String.valueOf(afterId)});
+                    if (lastId >= 0) {
+                        backfilledRows += DatabaseUtils.queryNumEntries(db, Contact.TABLE_NAME,
+                                Contact._ID + " > " + afterId + " AND " + Contact._ID + " <= " + lastId);
+                        chunks++;
+                    }
+                    return lastId;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.deitel.addressbook;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+//SeedContactsReceiver fills the address book with generated contacts for the flows of the
+//:macrobenchmark module, which need a list long enough to scroll. It is only part of the benchmark
+//build type, and only the shell may send to it:
+//  adb shell am broadcast -n com.deitel.addressbook/.SeedContactsReceiver --ei count 5000
+//Contacts are added until the address book holds count of them, in chunks of
+//ContactImporter.CHUNK_SIZE. The same index always generates the same contact, so every run
+//scrolls the same list. The contacts are inserted on a background thread, and "am broadcast"
+//waits until they are; the result data is the number of contacts added.
+
+public class SeedContactsReceiver extends BroadcastReceiver {
+
+
+    static final String EXTRA_COUNT = "count";
+    private static final int DEFAULT_COUNT = 5000;
+
+    private static final String[] FIRST_NAMES = {"Ada", "Alan", "Barbara", "Charles", "Donald", "Edsger",
+            "Frances", "Grace", "Hedy", "John", "Katherine", "Linus", "Margaret", "Niklaus", "Radia", "Tim"};
+    private static final String[] LAST_NAMES = {"Lovelace", "Turing", "Liskov", "Babbage", "Knuth",
+            "Dijkstra", "Allen", "Hopper", "Lamarr", "McCarthy", "Johnson", "Torvalds", "Hamilton", "Wirth",
+            "Perlman", "Berners-Lee", "\u00c5str\u00f6m", "O'Neil"};
+    private static final String[] CITIES = {"Boston", "London", "Springfield", "Austin"};
+
+
+    @Override
+    public void onReceive(final Context context, Intent intent) {
+        final int count = intent.getIntExtra(EXTRA_COUNT, DEFAULT_COUNT);
+        final PendingResult result = goAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int added = seed(context.getContentResolver(), count);
+                    result.setResult(Activity.RESULT_OK, String.valueOf(added), null);
+                }
+                finally {
+                    result.finish();
+                }
+            }
+        }, "SeedContacts").start();
+    }
+
+
+    //seed adds generated contacts until there are count of them, and returns how many it added.
+    private static int seed(ContentResolver resolver, int count){
+        int existing;
+        Cursor cursor = resolver.query(Contact.CONTENT_URI, new String[]{Contact._ID}, null, null, null);
+        try {
+            existing = (cursor != null) ? cursor.getCount() : 0;
+        }
+        finally {
+            if (cursor != null)
+                cursor.close();
+        }
+
+        for (int start = existing; start < count; start += ContactImporter.CHUNK_SIZE){
+            ContentValues[] chunk = new ContentValues[Math.min(ContactImporter.CHUNK_SIZE, count - start)];
+            for (int i = 0; i < chunk.length; i++)
+                chunk[i] = generate(start + i);
+            resolver.bulkInsert(Contact.CONTENT_URI, chunk);
+        }
+        return Math.max(0, count - existing);
+    }
+
+
+    //generate returns the contact with index i.
+    private static ContentValues generate(int i){
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, FIRST_NAMES[i % FIRST_NAMES.length] + " " +
+                LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length]);
+        values.put(Contact.COLUMN_PHONE, String.format("+1 (%03d) %03d-%04d",
+                200 + i % 800, (i / 10000) % 1000, i % 10000));
+        values.put(Contact.COLUMN_EMAIL, "contact" + i + "@example.com");
+        values.put(Contact.COLUMN_STREET, (1 + i % 997) + " Main Street");
+        values.put(Contact.COLUMN_CITY, CITIES[i % CITIES.length]);
+        values.put(Contact.COLUMN_STATE, "MA");
+        values.put(Contact.COLUMN_ZIP, String.format("%05d", i % 100000));
+        return values;
+    }
+}
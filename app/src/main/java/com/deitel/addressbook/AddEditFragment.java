@@ -1,8 +1,8 @@
 package com.deitel.addressbook;
 
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
@@ -12,7 +12,6 @@ import android.support.design.widget.Snackbar;
 import android.support.design.widget.TextInputLayout;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -21,14 +20,15 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
 
+import com.deitel.addressbook.core.ContactRecord;
 import com.deitel.addressbook.data.DatabaseDescription.Contact;
 
 //The AddEditFragment class provides a GUI for adding new contacts or editing
 //existing ones.
-//The class implements LoaderManager.LoaderCallbacks<Cursor> interface to respond
+//The class implements LoaderManager.LoaderCallbacks<ContactRecord> interface to respond
 //to LoaderManager events.
 
-public class AddEditFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class AddEditFragment extends Fragment implements LoaderManager.LoaderCallbacks<ContactRecord> {
 
 
     //AddEditFragmentListener nested interface contains the callback method onAddEditCompleted.
@@ -209,70 +209,90 @@ public class AddEditFragment extends Fragment implements LoaderManager.LoaderCal
         contentValues.put(Contact.COLUMN_ZIP, zipTextInputLayout.getEditText().getText().toString());
 
 
+        //The write itself happens on the ContactWriteQueue's background thread, so the UI stays
+        //responsive while the database saves the contact. We hide the FAB so the same contact
+        //can't be saved twice while the write is in progress; saveFinished shows the result.
+        saveContactFAB.hide();
+        ContactWriteQueue writeQueue = ContactWriteQueue.getInstance(getActivity());
+
         //if the addingNewContact is true, we are adding a new contact to the DB,
-        if (addingNewContact){
-
-            //so we use ContentResolver method 'insert' to invoke 'insert' on the AddressBookCP
-            //and place the new contact into the database.
-            Uri newContactUri = getActivity().getContentResolver().insert(Contact.CONTENT_URI, contentValues);
-
-            //if the insert is successful it will yield us a non-null URI.
-            if (newContactUri != null){
-                //so we display a SnackBar indicating the add was successful
-                Snackbar.make(coordinatorLayout, R.string.contact_added, Snackbar.LENGTH_LONG).show();
-                //and notify AddEditFragmentListener of the new contact.
-                listener.onAddEditCompleted(newContactUri);
-            }
-            else {
-                //if add not successful
-                Snackbar.make(coordinatorLayout, R.string.contact_not_added, Snackbar.LENGTH_LONG).show();
-            }
-        }
-        //if addingNewContact is false, we are editing an existing contact
-        else {
-            //we use the Activity's ContentResolver to invoke 'update' on the AddressBookCP
-            //and store the edited contact's data.
-            int updatedRows = getActivity().getContentResolver().update(contactUri,contentValues,null,null);
-
-            //a successful update will yield an integer greater than zero.
-
-            //If update is successful,
-            if (updatedRows > 0){
-                //we notfiy AddEditFragmentListener with the contact that was edited
-                listener.onAddEditCompleted(contactUri);
-                //and display a Snackbar indicating a successful update.
-                Snackbar.make(coordinatorLayout,R.string.contact_updated, Snackbar.LENGTH_LONG).show();
+        //so we queue an 'insert' which invokes 'insert' on the AddressBookCP
+        //and places the new contact into the database.
+        if (addingNewContact)
+            writeQueue.insert(Contact.CONTENT_URI, contentValues, saveFinished);
+        //if addingNewContact is false, we are editing an existing contact,
+        //so we queue an 'update' which invokes 'update' on the AddressBookCP
+        //and stores the edited contact's data.
+        else
+            writeQueue.update(contactUri, contentValues, saveFinished);
+    }
+
+
+
+    //saveFinished is called on the UI thread once the ContactWriteQueue has applied the save.
+    private final ContactWriteQueue.Callback saveFinished = new ContactWriteQueue.Callback() {
+        @Override
+        public void onWriteFinished(ContentProviderResult result) {
+
+            //if the user left the AddEditFragment while the contact was being saved, there is
+            //nothing left to update. The contact list still shows the change.
+            if (listener == null)
+                return;
+
+            if (addingNewContact){
+
+                //if the insert is successful it will yield us a non-null URI.
+                if (result != null && result.uri != null){
+                    //so we display a SnackBar indicating the add was successful
+                    Snackbar.make(coordinatorLayout, R.string.contact_added, Snackbar.LENGTH_LONG).show();
+                    //and notify AddEditFragmentListener of the new contact.
+                    listener.onAddEditCompleted(result.uri);
+                }
+                else {
+                    //if add not successful
+                    Snackbar.make(coordinatorLayout, R.string.contact_not_added, Snackbar.LENGTH_LONG).show();
+                    updateSaveButtonFAB();
+                }
             }
             else {
-                //if update was NOT successful.
-                Snackbar.make(coordinatorLayout,R.string.contact_not_updated, Snackbar.LENGTH_LONG).show();
+                //a successful update will yield a count greater than zero.
+
+                //If update is successful,
+                if (result != null && result.count != null && result.count > 0){
+                    //we notfiy AddEditFragmentListener with the contact that was edited
+                    listener.onAddEditCompleted(contactUri);
+                    //and display a Snackbar indicating a successful update.
+                    Snackbar.make(coordinatorLayout,R.string.contact_updated, Snackbar.LENGTH_LONG).show();
+                }
+                else {
+                    //if update was NOT successful.
+                    Snackbar.make(coordinatorLayout,R.string.contact_not_updated, Snackbar.LENGTH_LONG).show();
+                    updateSaveButtonFAB();
+                }
             }
         }
-    }
+    };
 
 
 
 
-    //Now we begin implementing LoaderManager.LoaderCallbacks<Cursor> interface.
+    //Now we begin implementing LoaderManager.LoaderCallbacks<ContactRecord> interface.
     //These methods are used only in AddEditFragment only when the user is editing
     //an existing contact..
 
 
-    //onCreateLoader creates a CursorLoader for the specific contact being editing.
+    //onCreateLoader creates a ContactLoader for the specific contact being editing.
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+    public Loader<ContactRecord> onCreateLoader(int id, Bundle args) {
 
 
-        //Create a CursorLoader based on the id argument. Since only one Loader a switch
-        //isnt needed but its good practice.
+        //Create a ContactLoader based on the id argument. Since only one Loader a switch
+        //isnt needed but its good practice. The contact usually was just shown in the
+        //DetailFragment, so the ContactLoader finds it in the ContactCache.
         switch (id){
             case CONTACT_LOADER:
-                return new CursorLoader(getActivity(), //content in which Loader lifecycle is being managed
-                        contactUri,                    //Uri of contact to display
-                        null,                          //null projection to return all columns
-                        null,                          //null selection to return all rows
-                        null,                          //no selection arguments
-                        null);                         //no sort order.
+                return new ContactLoader(getActivity(), //content in which Loader lifecycle is being managed
+                        contactUri);                    //Uri of contact to edit
             default:
                 return null;
         }
@@ -281,33 +301,23 @@ public class AddEditFragment extends Fragment implements LoaderManager.LoaderCal
 
 
     //onLoadFinished is called by LoaderManager when a Loader finishes loading its data, so you
-    //can process the results in the Cursor argument.
+    //can process the results in the ContactRecord argument.
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-
+    public void onLoadFinished(Loader<ContactRecord> loader, ContactRecord data) {
 
-        //onLoadFinished checks whether the cursor is non-null, which is how it checks
-        //if the contact exists in the database. If cursor is non-null we call its
-        //moveToFirst method which moves the cursor the first row.
-        if (data != null && data.moveToFirst()){
 
-            //Then we get the column index for each data item.
-            int nameIndex = data.getColumnIndex(Contact.COLUMN_NAME);
-            int phoneIndex = data.getColumnIndex(Contact.COLUMN_PHONE);
-            int emailIndex = data.getColumnIndex(Contact.COLUMN_EMAIL);
-            int streetIndex = data.getColumnIndex(Contact.COLUMN_STREET);
-            int cityIndex = data.getColumnIndex(Contact.COLUMN_CITY);
-            int stateIndex = data.getColumnIndex(Contact.COLUMN_STATE);
-            int zipIndex = data.getColumnIndex(Contact.COLUMN_ZIP);
+        //onLoadFinished checks whether the contact is non-null, which is how it checks
+        //if the contact exists in the database.
+        if (data != null){
 
             //fill our EditTexts with the retrieved data.
-            nameTextInputLayout.getEditText().setText(data.getString(nameIndex));
-            phoneTextInputLayout.getEditText().setText(data.getString(phoneIndex));
-            emailTextInputLayout.getEditText().setText(data.getString(emailIndex));
-            streetTextInputLayout.getEditText().setText(data.getString(streetIndex));
-            cityTextInputLayout.getEditText().setText(data.getString(cityIndex));
-            stateTextInputLayout.getEditText().setText(data.getString(stateIndex));
-            zipTextInputLayout.getEditText().setText(data.getString(zipIndex));
+            nameTextInputLayout.getEditText().setText(data.name);
+            phoneTextInputLayout.getEditText().setText(data.phone);
+            emailTextInputLayout.getEditText().setText(data.email);
+            streetTextInputLayout.getEditText().setText(data.street);
+            cityTextInputLayout.getEditText().setText(data.city);
+            stateTextInputLayout.getEditText().setText(data.state);
+            zipTextInputLayout.getEditText().setText(data.zip);
 
             //hide or show the save button depending if Name field is empty or not.
             updateSaveButtonFAB();
@@ -318,7 +328,7 @@ public class AddEditFragment extends Fragment implements LoaderManager.LoaderCal
     //onLoaderReset is called by the LoaderManager when a Loader is reset its data no longer available.
     //At this point the app should immediately disconnect from the data.
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<ContactRecord> loader) {
 
     }
 
@@ -0,0 +1,298 @@
+package com.deitel.addressbook;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+import com.deitel.addressbook.core.VCardParser;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+//ContactImporter adds the contacts of a vCard (.vcf) file to the AddressBookContentProvider.
+//The file is parsed as it is read, by VCardParser, and the contacts are inserted CHUNK_SIZE at a
+//time with bulkInsert, which the provider runs as one transaction per chunk. So importing a file
+//of any size needs memory for one chunk only, and the contact list is updated once per chunk
+//rather than once per contact.
+
+//An import can be cancelled at any time. It then stops after the current chunk; the chunks that
+//were already inserted stay in the address book.
+
+//Only one import runs at a time, and it outlives the Fragment that started it: getRunning returns
+//it until it ends, so a Fragment recreated after a rotation can show its progress again (or cancel
+//it) by setting its own Listener. The Fragment sets the Listener to null when its view is
+//destroyed, so the import never keeps a destroyed Fragment alive.
+
+class ContactImporter {
+
+
+    private static final String TAG = "ContactImporter";
+
+    //the number of contacts inserted per bulkInsert (and per transaction).
+    static final int CHUNK_SIZE = 500;
+
+
+    //Listener is told about the progress and the end of an import.
+    interface Listener{
+
+        //called after each chunk. totalBytes is -1 if the size of the file is unknown.
+        void onImportProgress(int imported, long bytesRead, long totalBytes);
+
+        //called once when the import ends, whether it succeeded, failed or was cancelled.
+        void onImportFinished(Result result);
+    }
+
+
+    //Result describes how an import ended.
+    static final class Result{
+        final int imported;  //the number of contacts added to the address book
+        final int skipped;   //the number of cards without a name, which were not added
+        final boolean cancelled;
+        final Exception error; //why the import failed, or null
+
+        Result(int imported, int skipped, boolean cancelled, Exception error){
+            this.imported = imported;
+            this.skipped = skipped;
+            this.cancelled = cancelled;
+            this.error = error;
+        }
+    }
+
+
+    //the import started by start that has not ended yet, or null. Only used on the UI thread.
+    private static ContactImporter running;
+
+
+    private final ContentResolver contentResolver;
+    private volatile boolean cancelled;
+
+    //the Listener of an import started by start, or null while no one is listening, and the
+    //latest progress it was told about. Only used on the UI thread.
+    private Listener listener;
+    private int imported;
+    private long bytesRead;
+    private long totalBytes = -1;
+
+
+    //constructor. contentResolver should be the application's, since a running import outlives
+    //the Activity that started it.
+    ContactImporter(ContentResolver contentResolver){
+        this.contentResolver = contentResolver;
+    }
+
+
+    //getRunning returns the import started by start that has not ended yet, or null.
+    //Call it on the UI thread.
+    static ContactImporter getRunning(){
+        return running;
+    }
+
+
+    //setListener replaces the Listener of an import started by start; null stops the callbacks.
+    //A new Listener is told about the progress so far right away. Call it on the UI thread.
+    void setListener(Listener listener){
+        this.listener = listener;
+        if (listener != null && running == this)
+            listener.onImportProgress(imported, bytesRead, totalBytes);
+    }
+
+
+    //cancel stops the import after the chunk being inserted.
+    void cancel(){
+        cancelled = true;
+    }
+
+
+    //start imports the file at uri on a background thread and makes this the running import, or
+    //returns false and does nothing if another import is running. listener (see setListener) is
+    //called on the UI thread. Call it on the UI thread.
+    boolean start(final Uri uri, Listener listener){
+
+        if (running != null)
+            return false; //one import at a time
+        running = this;
+        this.listener = listener;
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        //forwards the callbacks of the background thread to the UI thread, to whichever Listener
+        //is set by then.
+        final Listener mainThreadListener = new Listener() {
+            @Override
+            public void onImportProgress(final int imported, final long bytesRead, final long totalBytes) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        ContactImporter.this.imported = imported;
+                        ContactImporter.this.bytesRead = bytesRead;
+                        ContactImporter.this.totalBytes = totalBytes;
+                        if (ContactImporter.this.listener != null)
+                            ContactImporter.this.listener.onImportProgress(imported, bytesRead, totalBytes);
+                    }
+                });
+            }
+
+            @Override
+            public void onImportFinished(final Result result) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        running = null;
+                        Listener finishedListener = ContactImporter.this.listener;
+                        ContactImporter.this.listener = null;
+                        if (finishedListener != null)
+                            finishedListener.onImportFinished(result);
+                    }
+                });
+            }
+        };
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                AssetFileDescriptor file;
+                try {
+                    file = contentResolver.openAssetFileDescriptor(uri, "r");
+                    if (file == null)
+                        throw new IOException("Cannot open " + uri);
+                }
+                catch (IOException | SecurityException e){
+                    Log.w(TAG, "Import failed", e);
+                    mainThreadListener.onImportFinished(new Result(0, 0, false, e));
+                    return;
+                }
+
+                try {
+                    //getLength is UNKNOWN_LENGTH (-1) if the provider of the file does not know it.
+                    long length = file.getLength();
+                    importFrom(file.createInputStream(), length, mainThreadListener);
+                }
+                catch (IOException e){
+                    Log.w(TAG, "Import failed", e);
+                    mainThreadListener.onImportFinished(new Result(0, 0, false, e));
+                }
+                finally {
+                    try {
+                        file.close();
+                    }
+                    catch (IOException ignored){
+                    }
+                }
+            }
+        }, "ContactImporter").start();
+        return true;
+    }
+
+
+    //importFrom imports the vCards read from in, which it closes, and returns the Result it also
+    //passes to listener. listener is called on the calling thread, which must not be the UI thread.
+    Result importFrom(InputStream in, long totalBytes, Listener listener){
+
+        CountingInputStream counter = new CountingInputStream(in);
+        List<ContentValues> chunk = new ArrayList<>(CHUNK_SIZE);
+        int imported = 0;
+        int skipped = 0;
+        Exception error = null;
+
+        //vCard 4.0 files are always UTF-8, and UTF-8 is what other apps export.
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(counter, "UTF-8"))){
+            VCardParser parser = new VCardParser(reader);
+
+            VCardParser.Card card;
+            while (!cancelled && (card = parser.next()) != null){
+
+                //a contact needs a name, see AddEditFragment.
+                if (card.name == null){
+                    skipped++;
+                    continue;
+                }
+
+                chunk.add(toContentValues(card));
+                if (chunk.size() == CHUNK_SIZE){
+                    imported += insert(chunk);
+                    listener.onImportProgress(imported, counter.count, totalBytes);
+                }
+            }
+
+            if (!cancelled && !chunk.isEmpty()){
+                imported += insert(chunk);
+                listener.onImportProgress(imported, counter.count, totalBytes);
+            }
+        }
+        catch (IOException | RuntimeException e){
+            //a failed chunk was rolled back; the chunks before it stay.
+            Log.w(TAG, "Import failed after " + imported + " contacts", e);
+            error = e;
+        }
+
+        Result result = new Result(imported, skipped, cancelled, error);
+        listener.onImportFinished(result);
+        return result;
+    }
+
+
+    //insert adds the contacts of chunk in one transaction and empties it.
+    private int insert(List<ContentValues> chunk){
+        int inserted = contentResolver.bulkInsert(Contact.CONTENT_URI,
+                chunk.toArray(new ContentValues[chunk.size()]));
+        chunk.clear();
+        return inserted;
+    }
+
+
+    //toContentValues maps a card to the columns of the contacts table.
+    static ContentValues toContentValues(VCardParser.Card card){
+        ContentValues values = new ContentValues(7);
+        values.put(Contact.COLUMN_NAME, card.name);
+        values.put(Contact.COLUMN_PHONE, card.phone);
+        values.put(Contact.COLUMN_EMAIL, card.email);
+        values.put(Contact.COLUMN_STREET, card.street);
+        values.put(Contact.COLUMN_CITY, card.city);
+        values.put(Contact.COLUMN_STATE, card.state);
+        values.put(Contact.COLUMN_ZIP, card.zip);
+        return values;
+    }
+
+
+    //CountingInputStream counts the bytes read, to report the progress of the import.
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in){
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.deitel.addressbook;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.support.v4.content.CursorLoader;
+import android.support.v7.util.DiffUtil;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+//ContactListLoader is the CursorLoader ContactsFragment uses to load the first page of the contact
+//list. Like any CursorLoader it loads the page again whenever the provider reports a change, but it
+//also compares the new page with the one it delivered before, on the loader's background thread.
+//ContactPageList uses that diff to update only the rows that changed.
+
+//With every page it also reads the list's SectionIndex, which the fast-scroll rail uses to jump to
+//a letter. The index comes from the section counts the AddressBookCP keeps up to date as contacts
+//change, so reading it costs a few dozen rows rather than a walk over the whole list.
+
+class ContactListLoader extends CursorLoader {
+
+
+    //Result is the Cursor delivered by ContactListLoader. It holds the page's snapshot and the
+    //differences from the previously delivered snapshot (from), or a null diff for the first load,
+    //and the sections of the whole list.
+    static final class Result extends CursorWrapper {
+        final PageSnapshot from;
+        final PageSnapshot snapshot;
+        final DiffUtil.DiffResult diff;
+        final SectionIndex sections;
+
+        Result(Cursor cursor, PageSnapshot from, PageSnapshot snapshot, DiffUtil.DiffResult diff,
+               SectionIndex sections){
+            super(cursor);
+            this.from = from;
+            this.snapshot = snapshot;
+            this.diff = diff;
+            this.sections = sections;
+        }
+    }
+
+
+    //the snapshot of the last page delivered to ContactsFragment. It is written on the UI thread
+    //and read on the loader's background thread.
+    private volatile PageSnapshot delivered;
+
+    //the async trace section of a load, from forceLoad to the delivery of its page (see Tracer).
+    private final Tracer.AsyncSection loadSection = new Tracer.AsyncSection("ContactListLoader load");
+
+
+    //constructor
+    ContactListLoader(Context context){
+        super(context,
+                Contact.buildPageUri(null, null, ContactPageList.PAGE_SIZE), //URI of first page
+                Contact.LIST_PROJECTION, //only the columns the list needs
+                null,                //null selection returns all rows of the page
+                null,                //no selection arguments
+                null);               //paged queries are sorted by Contact.PAGE_SORT_ORDER
+    }
+
+
+    //onForceLoad starts a load on the background thread, and its trace section.
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        loadSection.begin();
+    }
+
+
+    //loadInBackground queries the first page and diffs it against the delivered page, then reads
+    //the sections of the list. Each step is a trace section of its own.
+    @Override
+    public Cursor loadInBackground() {
+
+        Tracer.beginSection("ContactListLoader.loadInBackground");
+        try {
+            Cursor cursor = super.loadInBackground();
+            if (cursor == null)
+                return null;
+
+            Tracer.beginSection("PageSnapshot.diff");
+            PageSnapshot from = delivered;
+            PageSnapshot snapshot;
+            DiffUtil.DiffResult diff;
+            try {
+                snapshot = PageSnapshot.read(cursor);
+                diff = (from != null) ? PageSnapshot.diff(from, snapshot) : null;
+            }
+            finally {
+                Tracer.endSection();
+            }
+            return new Result(cursor, from, snapshot, diff, loadSections());
+        }
+        finally {
+            Tracer.endSection();
+        }
+    }
+
+
+    //loadSections reads the SectionIndex of the list. The page Cursor is already registered for
+    //change notifications, so the sections Cursor is closed right away.
+    private SectionIndex loadSections(){
+        Tracer.beginSection("ContactListLoader.loadSections");
+        Cursor cursor = getContext().getContentResolver().query(Contact.buildSectionsUri(),
+                null, null, null, null);
+        try {
+            return SectionIndex.read(cursor);
+        }
+        finally {
+            if (cursor != null)
+                cursor.close();
+            Tracer.endSection();
+        }
+    }
+
+
+    //deliverResult remembers the snapshot of the page being delivered, so the next load is
+    //compared with it, and ends the load's trace section.
+    @Override
+    public void deliverResult(Cursor cursor) {
+        delivered = (cursor instanceof Result) ? ((Result) cursor).snapshot : null;
+        super.deliverResult(cursor);
+        loadSection.end();
+    }
+
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        loadSection.end();
+    }
+}
@@ -0,0 +1,108 @@
+package com.deitel.addressbook;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.deitel.addressbook.data.ContactCache;
+import com.deitel.addressbook.core.ContactRecord;
+
+//ContactLoader loads one contact for DetailFragment and AddEditFragment. If the contact is in the
+//ContactCache it is delivered right away, without a database query or a background thread.
+//Otherwise it is read on a background thread and cached, so the next screen finds it there.
+//Like a CursorLoader, it loads the contact again when the AddressBookContentProvider reports that
+//the contact changed. A deleted contact is delivered as null.
+
+class ContactLoader extends AsyncTaskLoader<ContactRecord> {
+
+
+    private final Uri contactUri;
+    private final long id;
+
+    //observer calls onContentChanged when the provider notifies a change of the contact.
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+    private boolean observing;
+
+    //the contact delivered last.
+    private ContactRecord contact;
+
+    //the async trace section of a load, from forceLoad to the delivery of the contact (see Tracer).
+    private final Tracer.AsyncSection loadSection = new Tracer.AsyncSection("ContactLoader load");
+
+
+    //constructor
+    ContactLoader(Context context, Uri contactUri){
+        super(context);
+        this.contactUri = contactUri;
+        this.id = ContentUris.parseId(contactUri);
+    }
+
+
+    //loadInBackground reads the contact from the database and caches it.
+    @Override
+    public ContactRecord loadInBackground() {
+        Tracer.beginSection("ContactLoader.loadInBackground");
+        try {
+            return ContactCache.getInstance().load(getContext().getContentResolver(), id);
+        }
+        finally {
+            Tracer.endSection();
+        }
+    }
+
+
+    //onForceLoad starts a load on the background thread, and its trace section.
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        loadSection.begin();
+    }
+
+
+    @Override
+    public void deliverResult(ContactRecord data) {
+        contact = data;
+        if (isStarted())
+            super.deliverResult(data);
+        loadSection.end();
+    }
+
+
+    //onStartLoading delivers the contact we already have, or the cached one, and loads it
+    //from the database only if neither exists or the contact changed while we were stopped.
+    @Override
+    protected void onStartLoading() {
+
+        if (!observing){
+            getContext().getContentResolver().registerContentObserver(contactUri, false, observer);
+            observing = true;
+        }
+
+        if (contact == null)
+            contact = ContactCache.getInstance().get(id);
+        if (contact != null)
+            deliverResult(contact);
+
+        if (takeContentChanged() || contact == null)
+            forceLoad();
+    }
+
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+
+    @Override
+    protected void onReset() {
+        onStopLoading();
+        loadSection.end();
+        if (observing){
+            getContext().getContentResolver().unregisterContentObserver(observer);
+            observing = false;
+        }
+        contact = null;
+    }
+}
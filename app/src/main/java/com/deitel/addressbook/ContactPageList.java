@@ -0,0 +1,553 @@
+package com.deitel.addressbook;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+//ContactPageList holds the contact list shown by ContactsAdapter as a chain of pages that are
+//fetched from the AddressBookContentProvider with keyset pagination (see Contact.buildPageUri).
+//Instead of one Cursor holding every contact, each page holds about PAGE_SIZE rows and only
+//MAX_RESIDENT_PAGES pages keep their Cursor open. The next page is fetched on a background thread
+//when the RecyclerView binds a row near the end of the loaded rows, and pages that scrolled far
+//away are closed and fetched again (by their keys) if the user scrolls back to them.
+
+//The first page is not fetched here; it comes from ContactsFragment's ContactListLoader, so the list
+//is still reloaded when the provider reports a change. When a page is loaded again, its new rows are
+//compared with a PageSnapshot of the old ones on a background thread and the listener receives the
+//differences, so only the rows that changed are rebound. All methods must be called on the UI thread.
+
+//fastForward loads every page up to a list position in one background task, for the fast-scroll
+//rail's jumps. The skipped pages are kept as snapshots only (their Cursors are closed as soon as
+//they are read) and the RecyclerView is told about all their rows at once, so it lays out the rows
+//at the target position and never binds the rows in between.
+
+class ContactPageList {
+
+
+    //The number of rows fetched per page.
+    static final int PAGE_SIZE = 100;
+
+    //The maximum number of pages whose Cursor is kept open at a time.
+    private static final int MAX_RESIDENT_PAGES = 5;
+
+    //The next page is requested when a row this close to the end of the loaded rows is bound.
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+
+
+    //Listener is implemented by ContactsAdapter so it can tell the RecyclerView which rows changed.
+    interface Listener{
+
+        //called when rows [positionStart, positionStart + itemCount) were appended to the list.
+        void onRowsInserted(int positionStart, int itemCount);
+
+        //called when rows [positionStart, positionStart + itemCount) were removed from the list.
+        void onRowsRemoved(int positionStart, int itemCount);
+
+        //called when the page starting at positionStart was loaded again. The positions in diff
+        //are relative to positionStart.
+        void onPageChanged(int positionStart, DiffUtil.DiffResult diff);
+
+        //called when the whole list was replaced.
+        void onListReset();
+    }
+
+
+    //Page describes one page of the contact list. A page contains the rows after the untilKey
+    //of the previous page (or from the start of the list for the first page) up to and including
+    //its own untilKey. The last page's untilKey is null once the end of the list has been reached.
+    private static final class Page{
+        String untilKey;   //page key of the last row the page may contain
+        int start;         //list position of the page's first row
+        int count;         //number of rows in the page
+        Cursor cursor;     //the page's rows, or null if the page was evicted
+        PageSnapshot snapshot; //the IDs and content hashes of the rows, kept when the page is evicted
+        boolean stale;     //true if the rows may be out of date and must be fetched again
+        int version;       //incremented every time a fetch is started for this page
+        boolean loading;   //true while a fetch of this page is running
+    }
+
+
+    //pages are fetched one at a time on a single background thread.
+    private static final Executor executor = Executors.newSingleThreadExecutor();
+
+    private final ContentResolver contentResolver;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final ArrayList<Page> pages = new ArrayList<>();
+    private boolean appending;
+
+    //generation is incremented when the list is cleared, so results of older fetches are ignored.
+    private int generation;
+
+    //the position of the most recently bound row, used to pick which pages to evict.
+    private int lastPosition;
+
+    //the position a running fastForward must reach and the Runnable to run when it is loaded. A
+    //jump requested while another is running replaces them, so only the latest one is completed.
+    private int fastForwardPosition = -1;
+    private Runnable fastForwardCallback;
+
+
+    //constructor
+    ContactPageList(ContentResolver contentResolver, Listener listener){
+        this.contentResolver = contentResolver;
+        this.listener = listener;
+    }
+
+
+    //isEndReached returns true if the last page reaches the end of the list, in which case
+    //its untilKey is null.
+    private boolean isEndReached(){
+        return !pages.isEmpty() && pages.get(pages.size() - 1).untilKey == null;
+    }
+
+
+    //getCount returns the number of rows loaded so far.
+    int getCount(){
+        if (pages.isEmpty())
+            return 0;
+        Page last = pages.get(pages.size() - 1);
+        return last.start + last.count;
+    }
+
+
+    //getRowId returns the row ID of the contact at position without loading its page.
+    //The IDs of a page are kept after its Cursor is evicted, so this works for every loaded row.
+    long getRowId(int position){
+        Page page = pages.get(findPage(position));
+        return page.snapshot.ids[position - page.start];
+    }
+
+
+    //getCursor returns a Cursor moved to the row at position, or null if that row's page is not
+    //in memory yet. In that case the page is fetched and the listener is told when it arrives.
+    //Binding a row near the end of the loaded rows also starts fetching the next page.
+    Cursor getCursor(int position){
+
+        lastPosition = position;
+
+        if (!isEndReached() && position >= getCount() - PREFETCH_DISTANCE)
+            appendPage();
+
+        Page page = pages.get(findPage(position));
+        if (page.cursor == null || page.stale)
+            reloadPage(page);
+        if (page.cursor == null)
+            return null;
+
+        page.cursor.moveToPosition(position - page.start);
+        return page.cursor;
+    }
+
+
+    //setFirstPage replaces the first page with a Cursor loaded by ContactsFragment's ContactListLoader.
+    //The loader owns that Cursor, so this class never closes it.
+    void setFirstPage(Cursor cursor){
+
+        //a null Cursor means the loader was reset, so we drop every page.
+        if (cursor == null){
+            clear();
+            listener.onListReset();
+            return;
+        }
+
+        int count = cursor.getCount();
+        String untilKey = (count == PAGE_SIZE) ? getLastKey(cursor) : null;
+
+        //the loader compared the page with the last page it delivered. If that is not the page
+        //we display (or the Cursor did not come from the loader), we start over from the new page.
+        ContactListLoader.Result result = (cursor instanceof ContactListLoader.Result) ?
+                (ContactListLoader.Result) cursor : null;
+        if (pages.isEmpty() || result == null || result.diff == null ||
+                result.from != pages.get(0).snapshot){
+            clear();
+            Page page = new Page();
+            page.cursor = cursor;
+            page.snapshot = (result != null) ? result.snapshot : PageSnapshot.read(cursor);
+            page.count = count;
+            page.untilKey = untilKey;
+            pages.add(page);
+            listener.onListReset();
+            return;
+        }
+
+        Page first = pages.get(0);
+        first.cursor = cursor;
+        first.snapshot = result.snapshot;
+        first.count = count;
+        first.untilKey = untilKey;
+        first.stale = false;
+        first.version++;
+        int laterRows = 0;
+        for (int i = 1; i < pages.size(); i++)
+            laterRows += pages.get(i).count;
+        updateStarts();
+        listener.onPageChanged(0, result.diff);
+
+        if (untilKey == null){
+            //the first page is now the whole list, so the later pages are dropped.
+            removePagesAfter(0);
+            if (laterRows > 0)
+                listener.onRowsRemoved(count, laterRows);
+        }
+        else {
+            //otherwise we keep the keys of the later pages. The rows they contain may have changed,
+            //so the pages are marked stale and fetched again when they are displayed.
+            for (int i = 1; i < pages.size(); i++)
+                pages.get(i).stale = true;
+        }
+        evictPages();
+    }
+
+
+    //removePagesAfter closes and removes every page after the page at index. Fetches of the
+    //removed pages that are still running are ignored when they finish.
+    private void removePagesAfter(int index){
+        while (pages.size() > index + 1){
+            Page page = pages.remove(pages.size() - 1);
+            closeCursor(page);
+            page.version++;
+        }
+    }
+
+
+    //clear closes every page we fetched ourselves and empties the list.
+    private void clear(){
+        removePagesAfter(0);
+        pages.clear();
+        appending = false;
+        fastForwardPosition = -1;
+        fastForwardCallback = null;
+        generation++;
+    }
+
+
+    //release closes every page we fetched ourselves when the list's view is destroyed. The first
+    //page belongs to the loader, which outlives the view, so it is left open. Every page's version
+    //and the generation move on, so the fetches still running close their Cursors when they finish.
+    void release(){
+        for (Page page : pages)
+            page.version++;
+        clear();
+    }
+
+
+    //appendPage fetches the page following the last loaded page.
+    private void appendPage(){
+
+        if (appending || pages.isEmpty())
+            return;
+        appending = true;
+
+        final String afterKey = pages.get(pages.size() - 1).untilKey;
+        final int expectedGeneration = generation;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Cursor cursor = fetch(afterKey, null, PAGE_SIZE);
+                final PageSnapshot snapshot = PageSnapshot.read(cursor);
+                final String untilKey = (cursor != null && cursor.getCount() == PAGE_SIZE) ?
+                        getLastKey(cursor) : null;
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //the list was cleared while we were fetching, so the page no longer fits.
+                        if (generation != expectedGeneration){
+                            closeCursor(cursor);
+                            return;
+                        }
+                        appending = false;
+
+                        //the first page was reloaded with a different last row, so the page may
+                        //overlap it. We drop it and the next bind fetches it again.
+                        if (!afterKey.equals(pages.get(pages.size() - 1).untilKey)){
+                            closeCursor(cursor);
+                            return;
+                        }
+                        onPageAppended(cursor, snapshot, untilKey);
+                    }
+                });
+            }
+        });
+    }
+
+
+    //fastForward loads the rows up to position and then runs onLoaded, at once if they are already
+    //loaded. If the list ends before position, onLoaded runs once the last row is loaded.
+    void fastForward(int position, Runnable onLoaded){
+
+        if (position < getCount() || isEndReached() || pages.isEmpty()){
+            onLoaded.run();
+            return;
+        }
+
+        //a running fast-forward picks up the new target when it finishes.
+        boolean running = fastForwardPosition != -1;
+        fastForwardPosition = position;
+        fastForwardCallback = onLoaded;
+        if (!running)
+            fetchUpTo(position);
+    }
+
+
+    //fetchUpTo fetches the pages following the last loaded page until position is covered or the
+    //end of the list is reached. Every page but the last is closed as soon as its snapshot is read.
+    private void fetchUpTo(final int position){
+
+        final String afterKey = pages.get(pages.size() - 1).untilKey;
+        final int rowsNeeded = position + 1 - getCount();
+        final int expectedGeneration = generation;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<Page> fetched = new ArrayList<>();
+                String key = afterKey;
+                int rows = 0;
+                while (key != null && rows < rowsNeeded){
+                    Cursor cursor = fetch(key, null, PAGE_SIZE);
+                    Page page = new Page();
+                    page.snapshot = PageSnapshot.read(cursor);
+                    page.count = page.snapshot.size();
+                    page.untilKey = (page.count == PAGE_SIZE) ? getLastKey(cursor) : null;
+                    rows += page.count;
+                    key = page.untilKey;
+
+                    if (page.count > 0 && (key == null || rows >= rowsNeeded))
+                        page.cursor = cursor;
+                    else
+                        closeCursor(cursor);
+                    fetched.add(page);
+                }
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFastForwarded(afterKey, expectedGeneration, fetched);
+                    }
+                });
+            }
+        });
+    }
+
+
+    //onFastForwarded adds the pages fetched by fetchUpTo to the end of the list and completes the
+    //latest fast-forward, or fetches again if its target is still not loaded.
+    private void onFastForwarded(String afterKey, int expectedGeneration, ArrayList<Page> fetched){
+
+        //the list was cleared while we were fetching, which also cancelled the fast-forward.
+        if (generation != expectedGeneration){
+            for (Page page : fetched)
+                closeCursor(page);
+            return;
+        }
+
+        //if another page was appended while we were fetching, the pages may no longer follow the
+        //last one. We drop them and start again from the new end of the list.
+        if (afterKey.equals(pages.get(pages.size() - 1).untilKey)){
+            int start = getCount();
+            for (Page page : fetched){
+                if (page.count == 0){
+                    //there are no more rows: the last page we have becomes the end of the list.
+                    pages.get(pages.size() - 1).untilKey = null;
+                    break;
+                }
+                page.start = getCount();
+                pages.add(page);
+            }
+            if (getCount() > start)
+                listener.onRowsInserted(start, getCount() - start);
+        }
+        else {
+            for (Page page : fetched)
+                closeCursor(page);
+        }
+
+        int position = fastForwardPosition;
+        if (position >= getCount() && !isEndReached()){
+            fetchUpTo(position);
+            return;
+        }
+        Runnable onLoaded = fastForwardCallback;
+        fastForwardPosition = -1;
+        fastForwardCallback = null;
+
+        lastPosition = Math.min(position, getCount() - 1);
+        evictPages();
+        onLoaded.run();
+    }
+
+
+    //onPageAppended adds a fetched page to the end of the list.
+    private void onPageAppended(Cursor cursor, PageSnapshot snapshot, String untilKey){
+
+        //if there are no more rows, the last page we have becomes the end of the list.
+        int count = (cursor != null) ? cursor.getCount() : 0;
+        if (count == 0){
+            closeCursor(cursor);
+            pages.get(pages.size() - 1).untilKey = null;
+            return;
+        }
+
+        Page page = new Page();
+        page.cursor = cursor;
+        page.snapshot = snapshot;
+        page.count = count;
+        page.untilKey = untilKey;
+        page.start = getCount();
+        pages.add(page);
+
+        listener.onRowsInserted(page.start, count);
+        evictPages();
+    }
+
+
+    //reloadPage fetches a page that was evicted or is stale, using the keys that bound it, and
+    //compares the fetched rows with the page's snapshot on the background thread.
+    private void reloadPage(final Page page){
+
+        //the first page is reloaded by the CursorLoader, not by us.
+        int index = pages.indexOf(page);
+        if (page.loading || index == 0)
+            return;
+        page.loading = true;
+
+        final String afterKey = pages.get(index - 1).untilKey;
+        final String untilKey = page.untilKey;
+        final PageSnapshot oldSnapshot = page.snapshot;
+        final int version = ++page.version;
+        final int expectedGeneration = generation;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Cursor cursor = fetch(afterKey, untilKey, 0);
+                final PageSnapshot snapshot = PageSnapshot.read(cursor);
+                final DiffUtil.DiffResult diff = PageSnapshot.diff(oldSnapshot, snapshot);
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //drop the result if the list was cleared or the page was fetched again.
+                        if (generation != expectedGeneration || page.version != version){
+                            closeCursor(cursor);
+                            return;
+                        }
+                        page.loading = false;
+                        onPageReloaded(page, cursor, snapshot, diff);
+                    }
+                });
+            }
+        });
+    }
+
+
+    //onPageReloaded swaps the fetched rows into the page, shifts the positions of later pages
+    //if the number of rows in the page changed and passes the differences to the listener.
+    private void onPageReloaded(Page page, Cursor cursor, PageSnapshot snapshot, DiffUtil.DiffResult diff){
+
+        closeCursor(page);
+        page.cursor = cursor;
+        page.snapshot = snapshot;
+        page.count = snapshot.size();
+        page.stale = false;
+        updateStarts();
+
+        listener.onPageChanged(page.start, diff);
+        evictPages();
+    }
+
+
+    //evictPages closes the Cursors of the pages farthest from the last bound row until at most
+    //MAX_RESIDENT_PAGES pages are in memory. Their keys are kept so they can be fetched again.
+    private void evictPages(){
+
+        int current = pages.isEmpty() ? 0 : findPage(Math.min(lastPosition, getCount() - 1));
+        int resident = 0;
+        for (Page page : pages)
+            if (page.cursor != null)
+                resident++;
+
+        //the first page (index 0) belongs to the CursorLoader and is never evicted.
+        while (resident > MAX_RESIDENT_PAGES){
+            int farthest = -1;
+            for (int i = 1; i < pages.size(); i++){
+                if (pages.get(i).cursor != null &&
+                        (farthest == -1 || Math.abs(i - current) > Math.abs(farthest - current)))
+                    farthest = i;
+            }
+            if (farthest == -1)
+                break;
+            closeCursor(pages.get(farthest));
+            resident--;
+        }
+    }
+
+
+    //findPage returns the index of the page containing position, using a binary search
+    //over the pages' start positions.
+    private int findPage(int position){
+        int low = 0;
+        int high = pages.size() - 1;
+        while (low < high){
+            int middle = (low + high + 1) >>> 1;
+            if (pages.get(middle).start <= position)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        return low;
+    }
+
+
+    //updateStarts recomputes every page's start position after a page changed size.
+    private void updateStarts(){
+        int start = 0;
+        for (Page page : pages){
+            page.start = start;
+            start += page.count;
+        }
+    }
+
+
+    //fetch runs a paged query on the background thread. getCount fills the Cursor's window
+    //so the rows are read from the database here and not when the row is bound.
+    private Cursor fetch(String afterKey, String untilKey, int limit){
+        Cursor cursor = contentResolver.query(Contact.buildPageUri(afterKey, untilKey, limit),
+                Contact.LIST_PROJECTION, null, null, null);
+        if (cursor != null)
+            cursor.getCount();
+        return cursor;
+    }
+
+
+    //getLastKey returns the page key of the last row in cursor.
+    private static String getLastKey(Cursor cursor){
+        cursor.moveToLast();
+        return Contact.buildPageKey(
+                cursor.getString(cursor.getColumnIndex(Contact.COLUMN_SORT_KEY)),
+                cursor.getLong(cursor.getColumnIndex(Contact._ID)));
+    }
+
+
+    private static void closeCursor(Page page){
+        closeCursor(page.cursor);
+        page.cursor = null;
+    }
+
+    private static void closeCursor(Cursor cursor){
+        if (cursor != null)
+            cursor.close();
+    }
+}
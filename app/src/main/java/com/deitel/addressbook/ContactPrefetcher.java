@@ -0,0 +1,129 @@
+package com.deitel.addressbook;
+
+import android.content.ContentResolver;
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.deitel.addressbook.data.ContactCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//ContactPrefetcher loads the details of the contacts around the visible rows of the contact list
+//into the ContactCache, on a background thread. When the user then taps a contact, its
+//DetailFragment finds it in the cache and shows it right away instead of waiting for a query.
+
+//It follows the list's scrolling: more rows are loaded ahead of the scroll direction than
+//behind it. While the list moves faster than FLING_VELOCITY the rows only fly past, so nothing is
+//loaded, and prefetches that were queued but have not started yet are cancelled.
+
+class ContactPrefetcher extends RecyclerView.OnScrollListener {
+
+
+    //the number of rows around the visible rows to prefetch, ahead of and behind the scroll direction.
+    private static final int ROWS_AHEAD = 20;
+    private static final int ROWS_BEHIND = 5;
+
+    //scrolling faster than this (in pixels per second) is too fast to stop on a row.
+    private static final float FLING_VELOCITY = 3000;
+
+    //a new prefetch is started only once the first visible row moved by this many rows.
+    private static final int MIN_ROWS_MOVED = 5;
+
+
+    //prefetches run one at a time on a single background thread.
+    private static final Executor executor = Executors.newSingleThreadExecutor();
+
+    private final ContentResolver contentResolver;
+
+    //generation is incremented for every prefetch and on a fling, so a queued prefetch that is
+    //no longer the latest one is skipped.
+    private final AtomicInteger generation = new AtomicInteger();
+
+    //the first visible row of the last prefetch, or RecyclerView.NO_POSITION for none.
+    private int lastFirstPosition = RecyclerView.NO_POSITION;
+
+    //used to measure the scrolling velocity.
+    private long lastScrollTime;
+    private boolean scrollingForward = true;
+
+
+    //constructor
+    ContactPrefetcher(ContentResolver contentResolver){
+        this.contentResolver = contentResolver;
+    }
+
+
+    //onScrolled measures the velocity of the scroll and prefetches around the visible rows,
+    //unless the list moves too fast.
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+
+        long now = SystemClock.uptimeMillis();
+        float velocity = (lastScrollTime != 0 && now > lastScrollTime) ?
+                dy * 1000f / (now - lastScrollTime) : 0;
+        lastScrollTime = now;
+        if (dy != 0)
+            scrollingForward = dy > 0;
+
+        if (Math.abs(velocity) > FLING_VELOCITY){
+            generation.incrementAndGet();
+            lastFirstPosition = RecyclerView.NO_POSITION;
+            return;
+        }
+        prefetch(recyclerView, false);
+    }
+
+
+    //when the list stops, we prefetch around the rows it stopped on.
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE){
+            lastScrollTime = 0;
+            prefetch(recyclerView, true);
+        }
+    }
+
+
+    //prefetch queues the loading of the contacts around the visible rows of recyclerView.
+    //Unless force is true, nothing is queued if the list has hardly moved since the last prefetch.
+    void prefetch(RecyclerView recyclerView, boolean force){
+
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        RecyclerView.Adapter adapter = recyclerView.getAdapter();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (adapter == null || first == RecyclerView.NO_POSITION)
+            return;
+        if (!force && lastFirstPosition != RecyclerView.NO_POSITION &&
+                Math.abs(first - lastFirstPosition) < MIN_ROWS_MOVED)
+            return;
+        lastFirstPosition = first;
+
+        int from = Math.max(0, first - (scrollingForward ? ROWS_BEHIND : ROWS_AHEAD));
+        int to = Math.min(adapter.getItemCount() - 1, last + (scrollingForward ? ROWS_AHEAD : ROWS_BEHIND));
+
+        //the adapter's stable IDs are the contacts' row IDs.
+        final List<Long> ids = new ArrayList<>(to - from + 1);
+        for (int position = from; position <= to; position++){
+            long id = adapter.getItemId(position);
+            if (id != RecyclerView.NO_ID)
+                ids.add(id);
+        }
+
+        final int expectedGeneration = generation.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                //a later prefetch or a fling made this one stale.
+                if (generation.get() != expectedGeneration)
+                    return;
+                ContactCache.getInstance().prefetch(contentResolver, ids);
+            }
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.deitel.addressbook;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+//ContactPurgeJobService is the background job that removes deleted contacts for good once they
+//are older than Contact.TOMBSTONE_RETENTION_MILLIS (see Contact.COLUMN_DELETED_AT).
+//JobScheduler runs it about once every PURGE_INTERVAL_MILLIS while the device is idle and charging,
+//so it never competes with the user for the database.
+
+//The job calls Contact.METHOD_PURGE until there is nothing left to purge. Each call removes at most
+//Contact.PURGE_BATCH_SIZE contacts in its own short transaction, so other writes wait at most one
+//batch, and the job can stop between two batches when JobScheduler asks it to.
+
+public class ContactPurgeJobService extends JobService {
+
+
+    private static final String TAG = "ContactPurgeJobService";
+
+    //the ID of the purge job, unique within the app.
+    private static final int JOB_ID = 1;
+
+    //how often the purge job runs.
+    private static final long PURGE_INTERVAL_MILLIS = 24 * 60 * 60 * 1000;
+
+
+    //set when JobScheduler stops the job before it finished.
+    private volatile boolean stopped;
+
+
+    //schedule schedules the purge job, unless it is already scheduled. Scheduling it again would
+    //restart its interval every time the app starts.
+    static void schedule(Context context){
+
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs())
+            if (job.getId() == JOB_ID)
+                return;
+
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, ContactPurgeJobService.class))
+                .setPeriodic(PURGE_INTERVAL_MILLIS)
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build());
+    }
+
+
+    //onStartJob is called on the main thread, so we purge on a thread of our own and return true
+    //to tell JobScheduler the job is still running.
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+
+        stopped = false;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int purged = 0;
+                try {
+                    int batch;
+                    do {
+                        Bundle result = getContentResolver().call(Contact.CONTENT_URI,
+                                Contact.METHOD_PURGE, null, null);
+                        batch = result.getInt(Contact.EXTRA_PURGED_COUNT);
+                        purged += batch;
+                    } while (batch == Contact.PURGE_BATCH_SIZE && !stopped);
+                }
+                catch (RuntimeException e){
+                    Log.w(TAG, "Purge failed", e);
+                }
+                Log.i(TAG, "Purged " + purged + " deleted contacts");
+
+                //a stopped job is rescheduled by onStopJob's return value instead.
+                if (!stopped)
+                    jobFinished(params, false);
+            }
+        }, "ContactPurge").start();
+        return true;
+    }
+
+
+    //onStopJob is called when the job's conditions no longer hold (the user picked up the device).
+    //The purge stops after its current batch, and we return true so it runs again later.
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        stopped = true;
+        return true;
+    }
+}
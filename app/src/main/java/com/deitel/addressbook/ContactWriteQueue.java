@@ -0,0 +1,190 @@
+package com.deitel.addressbook;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.deitel.addressbook.data.DatabaseDescription;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//ContactWriteQueue writes contacts to the AddressBookContentProvider on a single background
+//thread, so the UI thread never waits for the database (or for a disk sync) when the user saves
+//or deletes a contact. Writes are applied one batch at a time, in the order they were queued.
+//Writes queued within BATCH_WINDOW_MILLIS of each other are sent together in one applyBatch call,
+//which the provider runs as a single transaction. The result of each write is delivered to its
+//Callback on the UI thread.
+
+final class ContactWriteQueue {
+
+
+    private static final String TAG = "ContactWriteQueue";
+
+    //how long the queue waits after the first write of a batch for more writes to arrive.
+    private static final long BATCH_WINDOW_MILLIS = 20;
+
+
+    //Callback is notified on the UI thread when a write has been applied.
+    interface Callback{
+
+        //result holds the new contact's Uri for an insert, or the number of rows changed for
+        //an update or delete. result is null if the write failed.
+        void onWriteFinished(ContentProviderResult result);
+    }
+
+
+    //Write is one queued operation and the Callback to notify when it has been applied.
+    private static final class Write{
+        final ContentProviderOperation operation;
+        final Callback callback;
+
+        Write(ContentProviderOperation operation, Callback callback){
+            this.operation = operation;
+            this.callback = callback;
+        }
+    }
+
+
+    //the app has a single write queue, so all writes are serialized on one thread.
+    private static ContactWriteQueue instance;
+
+    private final ContentResolver contentResolver;
+    private final Handler writeHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    //the writes waiting for the next batch. Guarded by pending itself.
+    private final ArrayList<Write> pending = new ArrayList<>();
+
+
+    //getInstance returns the app's ContactWriteQueue, creating it on first use.
+    static synchronized ContactWriteQueue getInstance(Context context){
+        if (instance == null)
+            instance = new ContactWriteQueue(context.getApplicationContext().getContentResolver());
+        return instance;
+    }
+
+
+    //constructor
+    private ContactWriteQueue(ContentResolver contentResolver){
+        this.contentResolver = contentResolver;
+
+        HandlerThread thread = new HandlerThread("ContactWriter");
+        thread.start();
+        writeHandler = new Handler(thread.getLooper());
+    }
+
+
+    //insert queues the insertion of a new contact into the table at uri.
+    void insert(Uri uri, ContentValues values, Callback callback){
+        enqueue(ContentProviderOperation.newInsert(uri).withValues(values).build(), callback);
+    }
+
+    //update queues an update of the contact at uri.
+    void update(Uri uri, ContentValues values, Callback callback){
+        enqueue(ContentProviderOperation.newUpdate(uri).withValues(values).build(), callback);
+    }
+
+    //delete queues the deletion of the contact at uri.
+    void delete(Uri uri, Callback callback){
+        enqueue(ContentProviderOperation.newDelete(uri).build(), callback);
+    }
+
+    //restore queues the undoing of the delete of the contacts with row IDs ids (see
+    //Contact.METHOD_RESTORE). A restore is not an operation applyBatch can run, so it runs on its
+    //own, after the writes queued before it: a delete that is still waiting for its batch is
+    //applied first.
+    void restore(final long... ids){
+        writeHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                applyPending.run();
+
+                Bundle extras = new Bundle();
+                extras.putLongArray(Contact.EXTRA_IDS, ids);
+                try {
+                    contentResolver.call(Contact.CONTENT_URI, Contact.METHOD_RESTORE, null, extras);
+                }
+                catch (RuntimeException e){
+                    Log.w(TAG, "Restoring " + ids.length + " contacts failed", e);
+                }
+            }
+        });
+    }
+
+
+    //enqueue adds a write to the next batch. The first write of a batch schedules the batch.
+    private void enqueue(ContentProviderOperation operation, Callback callback){
+        synchronized (pending){
+            boolean startBatch = pending.isEmpty();
+            pending.add(new Write(operation, callback));
+            if (startBatch)
+                writeHandler.postDelayed(applyPending, BATCH_WINDOW_MILLIS);
+        }
+    }
+
+
+    //applyPending applies the writes queued so far and posts their results to the UI thread.
+    private final Runnable applyPending = new Runnable() {
+        @Override
+        public void run() {
+            final List<Write> batch;
+            synchronized (pending){
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+            //a restore may have applied the batch already.
+            if (batch.isEmpty())
+                return;
+
+            final ContentProviderResult[] results = apply(batch);
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < batch.size(); i++){
+                        Callback callback = batch.get(i).callback;
+                        if (callback != null)
+                            callback.onWriteFinished(results[i]);
+                    }
+                }
+            });
+        }
+    };
+
+
+    //apply runs writes as one batch. If the batch fails, nothing in it was written (the provider
+    //rolls back the transaction), so we apply the writes one by one: one bad write must not make
+    //the others fail. Returns the result of each write, null for the writes that failed.
+    private ContentProviderResult[] apply(List<Write> writes){
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(writes.size());
+        for (Write write : writes)
+            operations.add(write.operation);
+
+        try {
+            return contentResolver.applyBatch(DatabaseDescription.AUTHORITY, operations);
+        }
+        catch (RemoteException | OperationApplicationException | RuntimeException e){
+            Log.w(TAG, "Batch of " + writes.size() + " writes failed", e);
+
+            ContentProviderResult[] results = new ContentProviderResult[writes.size()];
+            if (writes.size() > 1){
+                for (int i = 0; i < writes.size(); i++)
+                    results[i] = apply(writes.subList(i, i + 1))[0];
+            }
+            return results;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.deitel.addressbook;
 
+import android.content.ContentResolver;
 import android.database.Cursor;
 import android.net.Uri;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -10,7 +13,12 @@ import android.widget.TextView;
 
 import com.deitel.addressbook.data.DatabaseDescription.Contact;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 //ContactsAdapter is subclass of RecyclerView.Adapter that binds contacts to RecyclerView.
+//The contacts are read page by page through a ContactPageList, so only the pages around the
+//rows being displayed are held in memory.
 
 public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHolder> {
 
@@ -25,6 +33,15 @@ public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHo
     }
 
 
+    //SelectionListener is notified when the user selects or deselects contacts. A long touch on a
+    //contact selects it and starts the selection mode; while contacts are selected, a touch selects
+    //or deselects a contact instead of opening it. count is the number of selected contacts, and
+    //the selection mode ends when it drops to zero.
+    public interface SelectionListener{
+        void onSelectionChanged(int count);
+    }
+
+
 
 
 
@@ -45,10 +62,27 @@ public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHo
             textView = (TextView) itemView.findViewById(android.R.id.text1);
 
             //attach a listener to itemView.
+            //rows whose page is still loading have no row ID yet, so they ignore clicks.
             itemView.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    clickListener.onClick(Contact.buildContactUri(rowID));
+                    if (rowID == NO_ROW_ID)
+                        return;
+                    if (!selectedIds.isEmpty())
+                        toggleSelection(ViewHolder.this);
+                    else
+                        clickListener.onClick(Contact.buildContactUri(rowID));
+                }
+            });
+
+            //a long touch selects the contact, which starts the selection mode.
+            itemView.setOnLongClickListener(new View.OnLongClickListener() {
+                @Override
+                public boolean onLongClick(View v) {
+                    if (rowID == NO_ROW_ID || selectionListener == null)
+                        return false;
+                    toggleSelection(ViewHolder.this);
+                    return true;
                 }
             });
         }
@@ -62,15 +96,89 @@ public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHo
 
 
 
+    //the row ID of a ViewHolder whose contact has not been loaded yet.
+    private static final long NO_ROW_ID = -1;
+
     //ContactsAdapter instance variables
-    private Cursor cursor = null;
+    private final ContactPageList pageList;
     private final ContactClickListener clickListener;
 
+    //the row IDs of the selected contacts, in the order they were selected. We keep IDs rather than
+    //positions: positions shift whenever a contact is added or deleted above them.
+    private final Set<Long> selectedIds = new LinkedHashSet<>();
+    private SelectionListener selectionListener;
 
+    //the column numbers of the _ID and name columns. Every page is queried with the same projection,
+    //so we look them up once per Cursor in swapCursor instead of on every bind.
+    private int idIndex;
+    private int nameIndex;
 
-    //constructor.
-    public ContactsAdapter(ContactClickListener clickListener){
+
+
+    //constructor. The ContentResolver is used to fetch the pages that follow the first one.
+    public ContactsAdapter(ContentResolver contentResolver, ContactClickListener clickListener){
         this.clickListener = clickListener;
+        this.pageList = new ContactPageList(contentResolver, pageListener);
+
+        //every row has a unique, stable ID (the contact's row ID), so the RecyclerView can keep track
+        //of rows across updates and reuse their ViewHolders instead of rebinding every row.
+        setHasStableIds(true);
+    }
+
+
+    //pageListener tells the RecyclerView exactly which rows were inserted, removed, moved or changed,
+    //so it only rebinds those rows and animates the change instead of rebinding the whole list.
+    private final ContactPageList.Listener pageListener = new ContactPageList.Listener() {
+        @Override
+        public void onRowsInserted(int positionStart, int itemCount) {
+            notifyItemRangeInserted(positionStart, itemCount);
+        }
+
+        @Override
+        public void onRowsRemoved(int positionStart, int itemCount) {
+            notifyItemRangeRemoved(positionStart, itemCount);
+        }
+
+        @Override
+        public void onPageChanged(int positionStart, DiffUtil.DiffResult diff) {
+            diff.dispatchUpdatesTo(new PageUpdateCallback(positionStart));
+        }
+
+        @Override
+        public void onListReset() {
+            notifyDataSetChanged();
+        }
+    };
+
+
+    //PageUpdateCallback passes the updates of a page's diff on to the RecyclerView, moving
+    //their positions from the page to the list.
+    private final class PageUpdateCallback implements ListUpdateCallback {
+        private final int offset;
+
+        PageUpdateCallback(int offset){
+            this.offset = offset;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(offset + position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(offset + position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(offset + fromPosition, offset + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(offset + position, count, payload);
+        }
     }
 
 
@@ -84,11 +192,11 @@ public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHo
 
 
         //here we inflate the GUI for a ViewHolder object. In our case we used the
-        //predefined layout android.R.layout.simple_list_item_1 which defines a layout containing
-        //one TextView named text1.
+        //predefined layout android.R.layout.simple_list_item_activated_1 which defines a layout
+        //containing one TextView named text1, highlighted while the item is activated (selected).
 
         View view = LayoutInflater.from(parent.getContext()).inflate(
-                android.R.layout.simple_list_item_1, parent, false);
+                android.R.layout.simple_list_item_activated_1, parent, false);
         return new ViewHolder(view);
     }
 
@@ -98,39 +206,133 @@ public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHo
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
 
+        //binding is a trace section, so slow binds show up under the frame that waited for them.
+        Tracer.beginSection("ContactsAdapter.onBindViewHolder");
+        try {
+            bindRow(holder, position);
+        }
+        finally {
+            Tracer.endSection();
+        }
+    }
+
 
-        //We use moveToPosition to move to the contact that corresponds to the current RV'item's position.
-        cursor.moveToPosition(position);
+    //bindRow does the work of onBindViewHolder.
+    private void bindRow(ViewHolder holder, int position) {
 
-        //Then we set the ViewHolder's rowID by using Cursor method getColumnIndex to look up the column number
-        // of the Contact._ID column. We then pass this number Cursor getLong method to get the contact's row ID.
-        holder.setRowID(cursor.getLong(cursor.getColumnIndex(Contact._ID)));
+
+        //We ask the ContactPageList for a Cursor moved to the contact that corresponds to the
+        //current RV'item's position. If that contact's page is not loaded yet we show an empty row;
+        //it is bound again once the page arrives.
+        Cursor cursor = pageList.getCursor(position);
+        if (cursor == null){
+            holder.setRowID(NO_ROW_ID);
+            holder.textView.setText(null);
+            holder.itemView.setActivated(false);
+            return;
+        }
+
+        //Then we set the ViewHolder's rowID by passing the column number of the Contact._ID column
+        //(looked up in swapCursor) to Cursor method getLong to get the contact's row ID.
+        long rowID = cursor.getLong(idIndex);
+        holder.setRowID(rowID);
+        holder.itemView.setActivated(selectedIds.contains(rowID));
 
         //Lastly we set the text for ViewHolder's TextView using a similar process as setting the row ID.
-        //we look up the column number for the COLUMN_NAME column, and call getString to get the contacts name.
-        holder.textView.setText(cursor.getString(cursor.getColumnIndex(Contact.COLUMN_NAME)));
+        //we use the column number of the COLUMN_NAME column, and call getString to get the contacts name.
+        holder.textView.setText(cursor.getString(nameIndex));
+    }
+
+
+
+
+    //setSelectionListener sets the listener notified of selection changes. Without one, a long
+    //touch does not select contacts.
+    public void setSelectionListener(SelectionListener selectionListener){
+        this.selectionListener = selectionListener;
     }
 
 
+    //toggleSelection selects the contact of holder, or deselects it if it is selected.
+    private void toggleSelection(ViewHolder holder){
+        if (!selectedIds.remove(holder.rowID))
+            selectedIds.add(holder.rowID);
+        holder.itemView.setActivated(selectedIds.contains(holder.rowID));
+        if (selectionListener != null)
+            selectionListener.onSelectionChanged(selectedIds.size());
+    }
+
+
+    //getSelectedIds returns the row IDs of the selected contacts.
+    public long[] getSelectedIds(){
+        long[] ids = new long[selectedIds.size()];
+        int i = 0;
+        for (long id : selectedIds)
+            ids[i++] = id;
+        return ids;
+    }
+
+
+    //clearSelection deselects every contact. The listener is not notified: it is called when the
+    //selection mode ends. Only the rows that were selected are rebound.
+    public void clearSelection(){
+        if (selectedIds.isEmpty())
+            return;
+        for (int position = 0; position < getItemCount(); position++){
+            if (selectedIds.contains(getItemId(position)))
+                notifyItemChanged(position);
+        }
+        selectedIds.clear();
+    }
+
+
+
+    //fastForward loads the contacts up to position without binding them, then runs onLoaded. The
+    //fast-scroll rail uses it to jump past the rows loaded so far.
+    public void fastForward(int position, Runnable onLoaded){
+        pageList.fastForward(position, onLoaded);
+    }
+
+
+
+    //release closes the pages the adapter fetched itself (see ContactPageList.release). It is
+    //called when the RecyclerView is destroyed; the adapter must not be used afterwards.
+    public void release(){
+        pageList.release();
+    }
+
+
+
+    //getItemId returns the stable ID of the item at position: the contact's row ID.
+    @Override
+    public long getItemId(int position) {
+        return pageList.getRowId(position);
+    }
+
 
 
     //getItemCount returns the number of items that the adapter binds.
     @Override
     public int getItemCount() {
 
-        //We return the total number of rows in the Cursor or Zero if the Cursor is null.
-        return (cursor != null) ? cursor.getCount() : 0;
+        //We return the number of rows loaded so far, which grows as the user scrolls.
+        return pageList.getCount();
     }
 
 
 
-    //We create swapCursor method to replace the adapter's current Cursor and notify the
-    //adapter its data has changed.
+    //We create swapCursor method to replace the first page of contacts. The ContactPageList
+    //tells the adapter which rows changed through pageListener.
     //swapCursor is called from the ContactFragment's onLoadFinished and onLoaderReset methods.
     public void swapCursor(Cursor cursor){
 
-        this.cursor = cursor;
-        notifyDataSetChanged();
+        //look up the column numbers once for all pages.
+        if (cursor != null){
+            idIndex = cursor.getColumnIndex(Contact._ID);
+            nameIndex = cursor.getColumnIndex(Contact.COLUMN_NAME);
+        }
+
+        pageList.setFirstPage(cursor);
     }
 
 }
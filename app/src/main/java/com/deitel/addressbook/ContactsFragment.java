@@ -1,23 +1,44 @@
 package com.deitel.addressbook;
 
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.ProgressDialog;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.DialogInterface;
+import android.content.Intent;
 import android.support.annotation.Nullable;
 import android.support.design.widget.FloatingActionButton;
+import android.support.design.widget.Snackbar;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.view.ActionMode;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 
 import com.deitel.addressbook.data.DatabaseDescription.Contact;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 //ContactsFragment displays the contact list in a RecyclerView and provides
 //a FAB that the user can touch to add a new contact.
 //It uses a Loader to query the AddressBookCP to receive a Cursor
@@ -46,11 +67,34 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
     //to manipulate in the LoaderManager.LoaderCallback callback methods.
     private static final int CONTACTS_LOADER = 0;
 
+    private static final String TAG = "ContactsFragment";
+
+    //the request codes of the Intents that let the user pick a vCard file to import, and the
+    //file to export the contacts to.
+    private static final int IMPORT_REQUEST = 1;
+    private static final int EXPORT_REQUEST = 2;
+
+    //the MIME types of vCard files. Some apps still use the older text/x-vcard.
+    private static final String[] VCARD_MIME_TYPES = {"text/vcard", "text/x-vcard", "text/directory"};
+
     //The listener variable will refer to the object that implements the interface (MainActivity).
     //Used to inform the MainActivity when a contact is selected.
     private ContactsFragmentListener listener;
     //The contactsAdapter variable will refer to the ContactsAdapter that binds data to our RV.
     private ContactsAdapter contactsAdapter;
+    //recyclerView displays the contacts, and prefetcher loads the details of the contacts
+    //around the visible rows so a selected contact can be displayed without waiting.
+    private RecyclerView recyclerView;
+    private LinearLayoutManager layoutManager;
+    private ContactPrefetcher prefetcher;
+    //the fast-scroll rail and the sections it displays, delivered with every load of the list.
+    private FastScrollRail fastScrollRail;
+    private SectionIndex sections = SectionIndex.EMPTY;
+    //the contextual action bar shown while contacts are selected, or null.
+    private ActionMode actionMode;
+    //the dialog that shows the progress of the running import (see ContactImporter.getRunning),
+    //or null.
+    private ProgressDialog importDialog;
 
 
 
@@ -68,16 +112,17 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
 
         //inflate GUI and get reference to the RecyclerView.
         View view = inflater.inflate(R.layout.fragment_contacts, container, false);
-        RecyclerView recyclerView = (RecyclerView) view.findViewById(R.id.recyclerView);
+        recyclerView = (RecyclerView) view.findViewById(R.id.recyclerView);
         //recyclerView should display items in a vertical list.
-        recyclerView.setLayoutManager(new LinearLayoutManager(getActivity().getBaseContext()));
+        layoutManager = new LinearLayoutManager(getActivity().getBaseContext());
+        recyclerView.setLayoutManager(layoutManager);
 
 
         //create the ContactsAdapter that will populate the RecyclerView.
         //The argument to this constructor is an implementation of ContactsAdapter.ContactClickListener interface
         //specifying that when a user touches a contact, the ContactFragmentListener's onContactSelected
         //should be called with the Uri of the contact to display in DetailFragment.
-        contactsAdapter = new ContactsAdapter(
+        contactsAdapter = new ContactsAdapter(getActivity().getContentResolver(),
                 new ContactsAdapter.ContactClickListener(){
                     @Override
                     public void onClick(Uri contactUri){
@@ -87,16 +132,46 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
         );
 
 
+        //a long touch on a contact starts the selection mode: the contextual action bar replaces
+        //the app bar and shows how many contacts are selected. It ends when none are left.
+        contactsAdapter.setSelectionListener(new ContactsAdapter.SelectionListener() {
+            @Override
+            public void onSelectionChanged(int count) {
+                if (count == 0){
+                    if (actionMode != null)
+                        actionMode.finish();
+                    return;
+                }
+                if (actionMode == null)
+                    actionMode = ((AppCompatActivity) getActivity()).startSupportActionMode(selectionMode);
+                actionMode.setTitle(getString(R.string.selected_count, count));
+            }
+        });
+
+
         // then we set the adapter.
         recyclerView.setAdapter(contactsAdapter);
         //attach a custom ItemDecorator to draw dividers between list items.
         recyclerView.addItemDecoration(new ItemDivider(getContext()));
         //setHasFixedSize to true, which improves performance if RV layout size never changes.
         recyclerView.setHasFixedSize(true);
+        //prefetch contact details as the user scrolls.
+        prefetcher = new ContactPrefetcher(getActivity().getContentResolver());
+        recyclerView.addOnScrollListener(prefetcher);
 
 
 
 
+        //touching a letter on the fast-scroll rail jumps to the first contact of its section.
+        fastScrollRail = (FastScrollRail) view.findViewById(R.id.fastScrollRail);
+        fastScrollRail.setListener(new FastScrollRail.Listener() {
+            @Override
+            public void onSectionSelected(int section) {
+                scrollToPosition(sections.getPositionForSection(section));
+            }
+        });
+
+
         //get our FAB add button.
         FloatingActionButton addButton = (FloatingActionButton) view.findViewById(R.id.addButton);
         //configure the FAB button listener to display the AddEditFragment if its clicked.
@@ -108,12 +183,308 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
         });
 
 
+        //an import started before the fragment was recreated (e.g. by a rotation) is still running;
+        //show its progress again.
+        ContactImporter runningImport = ContactImporter.getRunning();
+        if (runningImport != null)
+            showImportProgress(runningImport);
+
+
         //lastly return our view.
         return view;
     }
 
 
 
+    //onCreateOptionsMenu adds the fragment's menu items to the app bar's overflow menu.
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        super.onCreateOptionsMenu(menu, inflater);
+        inflater.inflate(R.menu.fragment_contacts_menu, menu);
+    }
+
+
+    //onOptionsItemSelected lets the user pick a vCard file when "Import contacts" is touched, or
+    //create one when "Export contacts" is touched. ACTION_OPEN_DOCUMENT and ACTION_CREATE_DOCUMENT
+    //show the system's file picker, so the app needs no storage permission.
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()){
+            case R.id.action_import:
+                Intent openIntent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                openIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                openIntent.setType("*/*");
+                openIntent.putExtra(Intent.EXTRA_MIME_TYPES, VCARD_MIME_TYPES);
+                startActivityForResult(openIntent, IMPORT_REQUEST);
+                return true;
+            case R.id.action_export:
+                Intent createIntent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                createIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                createIntent.setType(Contact.MIME_TYPE_VCARD);
+                createIntent.putExtra(Intent.EXTRA_TITLE, getString(R.string.export_file_name));
+                startActivityForResult(createIntent, EXPORT_REQUEST);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+
+    //selectionMode is the contextual action bar of the selection mode. Its items delete the selected
+    //contacts or set their state. Each is a single write of the set of selected contacts (see
+    //Contact.buildContactsUri), which the AddressBookCP runs as one transaction with one change
+    //notification, so the list reloads once however many contacts change.
+    private final ActionMode.Callback selectionMode = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.contacts_selection_menu, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            switch (item.getItemId()){
+                case R.id.action_delete_selected:
+                    deleteContacts(contactsAdapter.getSelectedIds());
+                    mode.finish();
+                    return true;
+                case R.id.action_set_state:
+                    setState(contactsAdapter.getSelectedIds());
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            actionMode = null;
+            contactsAdapter.clearSelection();
+        }
+    };
+
+
+    //deleteContacts deletes the contacts with row IDs ids and shows a Snackbar whose Undo action
+    //restores them.
+    private void deleteContacts(final long[] ids){
+        final ContactWriteQueue writeQueue = ContactWriteQueue.getInstance(getActivity());
+        writeQueue.delete(Contact.buildContactsUri(ids), null);
+
+        Snackbar.make(getView(), getString(R.string.contacts_deleted, ids.length), Snackbar.LENGTH_LONG)
+                .setAction(R.string.button_undo, new View.OnClickListener() {
+                    @Override
+                    public void onClick(View view) {
+                        writeQueue.restore(ids);
+                    }
+                })
+                .show();
+    }
+
+
+    //setState asks for a state and sets it for the contacts with row IDs ids. The selection mode
+    //ends once the state is saved.
+    private void setState(final long[] ids){
+        final EditText stateEditText = new EditText(getActivity());
+        stateEditText.setHint(R.string.hint_state);
+        stateEditText.setSingleLine();
+
+        new AlertDialog.Builder(getActivity())
+                .setTitle(R.string.menuitem_set_state)
+                .setView(stateEditText)
+                .setPositiveButton(R.string.button_save, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        ContentValues values = new ContentValues();
+                        values.put(Contact.COLUMN_STATE, stateEditText.getText().toString());
+                        ContactWriteQueue.getInstance(getActivity()).update(Contact.buildContactsUri(ids),
+                                values, new ContactWriteQueue.Callback() {
+                                    @Override
+                                    public void onWriteFinished(ContentProviderResult result) {
+                                        //the fragment may have been destroyed during the update.
+                                        if (getView() == null)
+                                            return;
+                                        if (result != null)
+                                            Snackbar.make(getView(), getString(R.string.contacts_updated,
+                                                    result.count), Snackbar.LENGTH_LONG).show();
+                                        else
+                                            Snackbar.make(getView(), R.string.contact_not_updated,
+                                                    Snackbar.LENGTH_LONG).show();
+                                    }
+                                });
+                        if (actionMode != null)
+                            actionMode.finish();
+                    }
+                })
+                .setNegativeButton(R.string.button_cancel, null)
+                .show();
+    }
+
+
+    //scrollToPosition shows the contact at position at the top of the list. If its page is not loaded
+    //yet, the pages up to it are loaded first without binding their rows, and the RecyclerView lays
+    //out only the rows around position, however far away it is.
+    private void scrollToPosition(final int position){
+        contactsAdapter.fastForward(position, new Runnable() {
+            @Override
+            public void run() {
+                //the view may have been destroyed, or the list shortened, while the pages loaded.
+                int count = contactsAdapter.getItemCount();
+                if (getView() != null && count > 0)
+                    layoutManager.scrollToPositionWithOffset(Math.min(position, count - 1), 0);
+            }
+        });
+    }
+
+
+    //onActivityResult receives the file the user picked and starts importing or exporting.
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == IMPORT_REQUEST || requestCode == EXPORT_REQUEST){
+            if (resultCode != Activity.RESULT_OK || data == null || data.getData() == null)
+                return;
+            if (requestCode == IMPORT_REQUEST)
+                importContacts(data.getData());
+            else
+                exportContacts(data.getData());
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
+    }
+
+
+    //exportContacts copies the AddressBookCP's vCard export (see Contact.buildExportUri) into the
+    //file at destination, on a background thread. The export is streamed from the provider, so
+    //only the copy buffer is ever in memory.
+    private void exportContacts(final Uri destination){
+
+        final ContentResolver contentResolver = getActivity().getContentResolver();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean exported = false;
+                try (InputStream in = contentResolver.openInputStream(Contact.buildExportUri(Contact.FORMAT_VCARD));
+                     OutputStream out = contentResolver.openOutputStream(destination, "w")){
+                    if (in == null || out == null)
+                        throw new IOException("Cannot open " + destination);
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = in.read(buffer)) != -1)
+                        out.write(buffer, 0, n);
+                    exported = true;
+                }
+                catch (IOException | SecurityException e){
+                    Log.w(TAG, "Export failed", e);
+                }
+
+                final boolean success = exported;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //the fragment may have been destroyed during the export.
+                        if (getView() != null)
+                            Snackbar.make(getView(), success ? R.string.export_finished : R.string.export_failed,
+                                    Snackbar.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, "ContactExport").start();
+    }
+
+
+    //importContacts imports the vCard file at uri in the background and shows the progress in a
+    //dialog, whose Cancel button stops the import. Nothing needs to be done with the contacts list:
+    //the AddressBookCP notifies its Loader after every chunk of contacts it inserts. The import
+    //uses the application's ContentResolver, since it goes on if the Activity is recreated.
+    private void importContacts(Uri uri){
+
+        ContactImporter importer = new ContactImporter(
+                getActivity().getApplicationContext().getContentResolver());
+        if (!importer.start(uri, null))
+            return; //one import at a time
+
+        showImportProgress(importer);
+    }
+
+
+    //showImportProgress shows the dialog with the progress of importer and listens to it until
+    //the import ends or the view is destroyed.
+    private void showImportProgress(final ContactImporter importer){
+
+        importDialog = new ProgressDialog(getActivity());
+        importDialog.setTitle(R.string.import_title);
+        importDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        importDialog.setIndeterminate(true);
+        importDialog.setProgressNumberFormat(null);
+        importDialog.setCancelable(false);
+        importDialog.setButton(DialogInterface.BUTTON_NEGATIVE, getString(R.string.button_cancel),
+                new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        importer.cancel();
+                    }
+                });
+        importDialog.show();
+
+        importer.setListener(importListener);
+    }
+
+
+    //importListener updates the progress dialog while the view exists (see onDestroyView).
+    private final ContactImporter.Listener importListener = new ContactImporter.Listener() {
+        @Override
+        public void onImportProgress(int imported, long bytesRead, long totalBytes) {
+            if (importDialog == null)
+                return;
+            //the dialog shows the percentage of the file read, if we know its size.
+            if (totalBytes > 0){
+                importDialog.setIndeterminate(false);
+                importDialog.setProgress((int) Math.min(100, bytesRead * 100 / totalBytes));
+            }
+            importDialog.setMessage(getString(R.string.import_finished, imported));
+        }
+
+        @Override
+        public void onImportFinished(ContactImporter.Result result) {
+            if (importDialog != null){
+                importDialog.dismiss();
+                importDialog = null;
+            }
+            if (getView() == null)
+                return;
+
+            int message = result.error != null ? R.string.import_failed :
+                    result.cancelled ? R.string.import_cancelled : R.string.import_finished;
+            Snackbar.make(getView(), getString(message, result.imported), Snackbar.LENGTH_LONG).show();
+        }
+    };
+
+
+    //onDestroyView closes the progress dialog, stops listening to the import and ends the selection
+    //mode. The import itself goes on in the background, and the next view shows its progress again.
+    //The loader survives the view, so it never resets the adapter; we close the pages the adapter
+    //fetched itself here, since onCreateView builds a new adapter.
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (actionMode != null)
+            actionMode.finish();
+        contactsAdapter.release();
+        ContactImporter runningImport = ContactImporter.getRunning();
+        if (runningImport != null)
+            runningImport.setListener(null);
+        if (importDialog != null){
+            importDialog.dismiss();
+            importDialog = null;
+        }
+    }
+
+
+
     //ContactFragment overrides Fragment lifecycle methods onAttach and onDetach to set
     //instance variable 'listener'. listener is set to the host Activity when ContactsFragment
     //is attached and is set to null when ContactsFragment is detached.
@@ -155,11 +526,9 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
     }
 
 
-    //We create the updateContactList method to notify the ContactsAdapter when the data changes.
-    //This method is called when new contacts are added and when existing contacts are updated/deleted.
-    public void updateContactList(){
-        contactsAdapter.notifyDataSetChanged();
-    }
+    //There is no need to tell the ContactsAdapter when contacts are added, updated or deleted:
+    //the AddressBookCP notifies the Loader, which loads the list again at most once per
+    //notification window, and the ContactsAdapter updates only the rows that differ.
 
 
 
@@ -174,18 +543,15 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
 
         //We only use one Loader so a switch state is unnecessary but its good practice.
-        //As you see we create a CursorLoader based on the id arguement, that queries the AddressBookCP
-        //to get the list of contacts then make the results available as a Cursor.
+        //As you see we create a ContactListLoader (a CursorLoader) based on the id arguement, that
+        //queries the AddressBookCP to get the first page of the contacts list then make the results
+        //available as a Cursor, along with the differences from the page it loaded before.
+        //The ContactsAdapter fetches the following pages itself as the user scrolls.
 
 
         switch (id){
             case CONTACTS_LOADER:
-                return new CursorLoader(getActivity(), //context in which Loader lifecycle is managed.
-                        Contact.CONTENT_URI, //URI of contacts table
-                        null,                //null projection returns all columns
-                        null,                //null selection returns all rows
-                        null,                //no selection arguments
-                        Contact.COLUMN_NAME + " COLLATE NOCASE ASC"); //sort order ascending/alphabetical
+                return new ContactListLoader(getActivity()); //context in which Loader lifecycle is managed.
             default:
                 return null;
         }
@@ -200,6 +566,19 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
         //In our case we call ContactAdapter's swapCursor method with the Cursor as its argument
         //so the ContactsAdapter can refresh the RV based on the new Cursor contents.
         contactsAdapter.swapCursor(data);
+
+        //the loader also read the list's sections, which the fast-scroll rail displays.
+        sections = (data instanceof ContactListLoader.Result) ?
+                ((ContactListLoader.Result) data).sections : SectionIndex.EMPTY;
+        fastScrollRail.setSections(sections);
+
+        //once the new rows are laid out, we prefetch the details of the contacts on screen.
+        recyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                prefetcher.prefetch(recyclerView, true);
+            }
+        });
     }
 
     //onLoaderReset is called by the LoaderManager when a Loader is reset its data no longer available.
@@ -209,6 +588,8 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
         //In our case we call the ContactAdapter's swapCursor method with the null argument
         //to indicate there is no data to bind to the RV.
         contactsAdapter.swapCursor(null);
+        sections = SectionIndex.EMPTY;
+        fastScrollRail.setSections(sections);
     }
 
 
@@ -7,13 +7,11 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -23,13 +21,13 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
-import com.deitel.addressbook.data.DatabaseDescription.Contact;
+import com.deitel.addressbook.core.ContactRecord;
 
 //The DetailFragment class displays one contact's information and provides menu items on
 //the app bar that enable the user to edit or delete that contact.
-//It implements the LoaderManager.LoaderCallbacks<Cursor> interface to respond to LoaderManager events.
+//It implements the LoaderManager.LoaderCallbacks<ContactRecord> interface to respond to LoaderManager events.
 
-public class DetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class DetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<ContactRecord> {
 
 
     //nested interface DetailFragmentListener contains callback methods that MainActivity implements
@@ -37,8 +35,9 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     //to edit a contact.
     public interface DetailFragmentListener{
 
-        //called when a contact is deleted.
-        void onContactDeleted();
+        //called when a contact is deleted. contactUri is the deleted contact's Uri, which can be
+        //used to undo the delete.
+        void onContactDeleted(Uri contactUri);
 
         //pass Uri of contact to edit to the DetailFragmentListener.
         void onEditContact(Uri contactUri);
@@ -179,14 +178,15 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             builder.setPositiveButton(R.string.button_delete, new DialogInterface.OnClickListener() {
                 @Override
                 public void onClick(DialogInterface dialog, int which) {
-                    //The delete method receives the Uri of the content to delete.
-                    //The last 2 args are the WHERE clause and we leave them null because
-                    //the rowID of the contact to delete is embedded in the Uri, and that row ID
-                    //is extracted from the Uri by the AddressBookCP delete method.
-                    getActivity().getContentResolver().delete(contactUri,null,null);
+                    //The delete receives the Uri of the content to delete. The rowID of the contact
+                    //to delete is embedded in the Uri, and that row ID is extracted from the Uri by
+                    //the AddressBookCP delete method. It is queued on the ContactWriteQueue so the
+                    //database work happens on a background thread. The AddressBookCP only marks
+                    //the contact as deleted, so the delete can still be undone.
+                    ContactWriteQueue.getInstance(getActivity()).delete(contactUri, null);
                     //Then we call the DetailFragmentListener's onContacteleted method so MA
-                    //can remove the DetailFragment from the screen.
-                    listener.onContactDeleted();
+                    //can remove the DetailFragment from the screen and offer to undo the delete.
+                    listener.onContactDeleted(contactUri);
                 }
             });
             builder.setNegativeButton(R.string.button_cancel, null);
@@ -197,65 +197,55 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
 
 
-    //Now we implement LoaderManager.LoaderCallbacks<Cursor> interface methods.
+    //Now we implement LoaderManager.LoaderCallbacks<ContactRecord> interface methods.
 
 
     //LoaderManager calls onCreateLoader to create and return a new Loader for the specified ID,
     //which the LoaderManager manages in the context of the Fragment's or Activity's lifecycle.
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+    public Loader<ContactRecord> onCreateLoader(int id, Bundle args) {
 
-        //onCreateLoader creates a CursorLoader for the specific contact being displayed,
-        //based on id argument.
-        CursorLoader cursorLoader;
+        //onCreateLoader creates a ContactLoader for the specific contact being displayed,
+        //based on id argument. The ContactLoader serves the contact from the ContactCache
+        //when it is there and queries the AddressBookCP only when it is not.
+        ContactLoader contactLoader;
 
 
         switch (id){
             case CONTACT_LOADER:
-                cursorLoader = new CursorLoader(getActivity(), //context in which Loader lifecycle is being managed
-                        contactUri,                            //Uri of contact to display
-                        null,                                  //null projection returns all columns
-                        null,                                  //null selection returns all rows
-                        null,                                  //no selection args
-                        null);                                 //no sort order.
+                contactLoader = new ContactLoader(getActivity(), //context in which Loader lifecycle is being managed
+                        contactUri);                             //Uri of contact to display
                 break;
             default:
-                cursorLoader = null;
+                contactLoader = null;
                 break;
         }
-        return cursorLoader;
+        return contactLoader;
 
     }
 
 
 
     //onLoadFinished is called by LoaderManager when a Loader finishes loading its data, so you
-    //can process the results in the Cursor argument.
+    //can process the results in the ContactRecord argument.
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+    public void onLoadFinished(Loader<ContactRecord> loader, ContactRecord data) {
 
+        Tracer.beginSection("DetailFragment.onLoadFinished");
 
         //we check if the contact is non-null, if this is true then a contact
         //matching the contactUri was found in the database
-        if (data != null && data.moveToFirst()){
-            //so we get the contacts info from the Cursor,
-            //by getting the column index for each item.
-            int nameIndex = data.getColumnIndex(Contact.COLUMN_NAME);
-            int phoneIndex = data.getColumnIndex(Contact.COLUMN_PHONE);
-            int emailIndex = data.getColumnIndex(Contact.COLUMN_EMAIL);
-            int streetIndex = data.getColumnIndex(Contact.COLUMN_STREET);
-            int cityIndex = data.getColumnIndex(Contact.COLUMN_CITY);
-            int stateIndex = data.getColumnIndex(Contact.COLUMN_STATE);
-            int zipIndex = data.getColumnIndex(Contact.COLUMN_ZIP);
-            //and display it in the GUI.
-            nameTextView.setText(data.getString(nameIndex));
-            phoneTextView.setText(data.getString(phoneIndex));
-            emailTextView.setText(data.getString(emailIndex));
-            streetTextView.setText(data.getString(streetIndex));
-            cityTextView.setText(data.getString(cityIndex));
-            stateTextView.setText(data.getString(stateIndex));
-            zipTextView.setText(data.getString(zipIndex));
+        if (data != null){
+            //so we display the contact's info in the GUI.
+            nameTextView.setText(data.name);
+            phoneTextView.setText(data.phone);
+            emailTextView.setText(data.email);
+            streetTextView.setText(data.street);
+            cityTextView.setText(data.city);
+            stateTextView.setText(data.state);
+            zipTextView.setText(data.zip);
         }
+        Tracer.endSection();
 
     }
 
@@ -263,7 +253,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     //onLoaderReset is called by the LoaderManager when a Loader is reset its data no longer available.
     //At this point the app should immediately disconnect from the data.
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<ContactRecord> loader) {
 
         //method onLoaderReset is not needed in DetailFragment so it does nothing.
 
@@ -0,0 +1,104 @@
+package com.deitel.addressbook;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+//FastScrollRail is the column of section labels (A, B, C...) at the edge of the contact list.
+//Touching or dragging over a label tells the listener which section was picked, and ContactsFragment
+//jumps the list straight to that section's first contact. The labels come from a SectionIndex.
+
+public class FastScrollRail extends View {
+
+
+    //Listener is implemented by ContactsFragment to be told which section the user picked.
+    public interface Listener{
+        void onSectionSelected(int section);
+    }
+
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private String[] labels = new String[0];
+    private Listener listener;
+
+    //the section picked by the current touch, so dragging within a label picks it only once.
+    private int touchedSection = -1;
+
+
+    //constructor used when the rail is inflated from a layout.
+    public FastScrollRail(Context context, AttributeSet attrs){
+        super(context, attrs);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(getResources().getDimension(R.dimen.fast_scroll_text_size));
+        paint.setColor(ContextCompat.getColor(context, R.color.colorPrimary));
+    }
+
+
+    public void setListener(Listener listener){
+        this.listener = listener;
+    }
+
+
+    //setSections displays the labels of sections. The rail is hidden when there are fewer than two
+    //sections, since there is nowhere to jump to.
+    public void setSections(SectionIndex sections){
+        labels = sections.getSections();
+        setVisibility(labels.length < 2 ? GONE : VISIBLE);
+        invalidate();
+    }
+
+
+    //onDraw draws the labels from top to bottom, each centered in an equal share of the rail.
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (labels.length == 0)
+            return;
+
+        float slot = (float) (getHeight() - getPaddingTop() - getPaddingBottom()) / labels.length;
+        float x = getWidth() / 2f;
+        float baseline = (slot - paint.ascent() - paint.descent()) / 2;
+        for (int i = 0; i < labels.length; i++)
+            canvas.drawText(labels[i], x, getPaddingTop() + i * slot + baseline, paint);
+    }
+
+
+    //onTouchEvent picks the section under the finger while it is down. The parent is asked not to
+    //intercept the touch, so dragging along the rail does not scroll the list.
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()){
+            case MotionEvent.ACTION_DOWN:
+                getParent().requestDisallowInterceptTouchEvent(true);
+                touchedSection = -1;
+                //fall through
+            case MotionEvent.ACTION_MOVE:
+                selectSectionAt(event.getY());
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                touchedSection = -1;
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+
+    //selectSectionAt tells the listener about the section at height y, unless it was already picked.
+    private void selectSectionAt(float y){
+        if (labels.length == 0)
+            return;
+        float height = getHeight() - getPaddingTop() - getPaddingBottom();
+        int section = (int) ((y - getPaddingTop()) / height * labels.length);
+        section = Math.max(0, Math.min(section, labels.length - 1));
+        if (section == touchedSection)
+            return;
+        touchedSection = section;
+        if (listener != null)
+            listener.onSectionSelected(section);
+    }
+}
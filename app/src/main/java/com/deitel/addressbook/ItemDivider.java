@@ -24,6 +24,7 @@ class ItemDivider extends RecyclerView.ItemDecoration {
     public void onDrawOver(Canvas c, RecyclerView parent,
                            RecyclerView.State state) {
         super.onDrawOver(c, parent, state);
+        Tracer.beginSection("ItemDivider.onDrawOver");
 
         // calculate left/right x-coordinates for all dividers
         int left = parent.getPaddingLeft();
@@ -42,5 +43,6 @@ class ItemDivider extends RecyclerView.ItemDecoration {
             divider.setBounds(left, top, right, bottom);
             divider.draw(c);
         }
+        Tracer.endSection();
     }
 }
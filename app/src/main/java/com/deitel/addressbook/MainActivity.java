@@ -1,10 +1,14 @@
 package com.deitel.addressbook;
 
+import android.content.ContentUris;
 import android.os.Bundle;
+import android.os.StrictMode;
+import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.net.Uri;
 import android.support.v4.app.FragmentTransaction;
+import android.view.View;
 
 
 //MainActivity manages the app's fragments and coordinates the interactions between them.
@@ -34,19 +38,27 @@ public class MainActivity extends AppCompatActivity implements
     public static final String CONTACT_URI = "contact_uri";
 
 
-    //contactsFragment is used to tell ContactsFragment to update the displayed list of contacts
-    //after a contact is added or deleted.
+    //contactsFragment refers to the ContactsFragment that displays the list of contacts.
     private ContactsFragment contactsFragment;
 
 
     //onCreate is used to inflate MA's GUI.
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+
+        //in debug builds StrictMode reports any disk access on the UI thread, so we can see that
+        //every query and write happens in the background.
+        if (BuildConfig.DEBUG)
+            enableStrictMode();
+
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
+        //deleted contacts are removed for good by a background job (see ContactPurgeJobService).
+        ContactPurgeJobService.schedule(this);
+
         //if layout contains fragmentContainer then use the phone layout.
         if (savedInstanceState != null && findViewById(R.id.fragmentContainer) != null){
 
@@ -68,6 +80,22 @@ public class MainActivity extends AppCompatActivity implements
     }
 
 
+    //enableStrictMode makes StrictMode log disk reads and writes on the UI thread, and
+    //database cursors and other resources that are never closed.
+    private static void enableStrictMode(){
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .penaltyLog()
+                .build());
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectLeakedSqlLiteObjects()
+                .detectLeakedClosableObjects()
+                .penaltyLog()
+                .build());
+    }
+
+
     //Now we implement ContactsFragmentListener interface methods onContactSelected and onAddContact.
 
     //onContactSelected is called by ContactsFragment to notify MainActivity when the user selects
@@ -184,12 +212,22 @@ public class MainActivity extends AppCompatActivity implements
     //Method onContactDeleted is called by DetailFragment to notify the MainActivity when the user
     //deletes a contact.
     @Override
-    public void onContactDeleted(){
+    public void onContactDeleted(final Uri contactUri){
         //We pop(remove) the DetailFragment from the back stack so that the now
         //deleted contact's info is no longer displayed.
         getSupportFragmentManager().popBackStack();
-        //and we call ContactFragments updateContactList to refresh the contacts list.
-        contactsFragment.updateContactList();
+        //The contacts list refreshes itself: the AddressBookCP notifies its Loader of the deletion.
+
+        //Then we display a Snackbar whose Undo action restores the contact. The Snackbar is shown on
+        //the activity's CoordinatorLayout since the DetailFragment is going away.
+        Snackbar.make(findViewById(R.id.coordinatorLayout), R.string.contact_deleted, Snackbar.LENGTH_LONG)
+                .setAction(R.string.button_undo, new View.OnClickListener() {
+                    @Override
+                    public void onClick(View view) {
+                        ContactWriteQueue.getInstance(MainActivity.this).restore(ContentUris.parseId(contactUri));
+                    }
+                })
+                .show();
     }
 
     //Method onEditContact is called by the DetailFragment to notify MA when the user touches
@@ -218,8 +256,7 @@ public class MainActivity extends AppCompatActivity implements
         //We do this by popping (removing) the AddEditFragment from the back stack so it is no
         //longer visible.
         getSupportFragmentManager().popBackStack();
-        //then we call ContactsFragment updateContactList to refresh the contacts list.
-        contactsFragment.updateContactList();
+        //The contacts list refreshes itself: the AddressBookCP notifies its Loader of the change.
 
 
         //if the app is running on a tablet then fragmentContainer is null,
@@ -0,0 +1,95 @@
+package com.deitel.addressbook;
+
+import android.database.Cursor;
+import android.support.v7.util.DiffUtil;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+//PageSnapshot records what a page of the contact list looks like: the row ID of every row and a
+//hash of the columns the row displays. Two snapshots of the same page are compared with DiffUtil
+//to find the rows that were inserted, removed, moved or changed, so ContactsAdapter can tell the
+//RecyclerView exactly which rows to update instead of rebinding the whole list.
+
+//A snapshot never changes after it is created, so it can be read and compared on any thread.
+
+final class PageSnapshot {
+
+
+    //an empty page.
+    static final PageSnapshot EMPTY = new PageSnapshot(new long[0], new int[0]);
+
+    final long[] ids;       //the row ID of each row, in list order
+    final int[] hashes;     //the content hash of each row
+
+
+    //constructor
+    PageSnapshot(long[] ids, int[] hashes){
+        this.ids = ids;
+        this.hashes = hashes;
+    }
+
+
+    int size(){
+        return ids.length;
+    }
+
+
+    //read returns the snapshot of every row in cursor. A row's content hash combines all of its
+    //columns except the row ID, so a change to anything the row displays changes the hash.
+    //A null cursor is an empty page.
+    static PageSnapshot read(Cursor cursor){
+
+        if (cursor == null)
+            return EMPTY;
+
+        int count = cursor.getCount();
+        long[] ids = new long[count];
+        int[] hashes = new int[count];
+        int idIndex = cursor.getColumnIndex(Contact._ID);
+        int columnCount = cursor.getColumnCount();
+
+        for (int i = 0; cursor.moveToPosition(i); i++){
+            ids[i] = cursor.getLong(idIndex);
+
+            int hash = 1;
+            for (int column = 0; column < columnCount; column++){
+                if (column == idIndex)
+                    continue;
+                String value = cursor.getString(column);
+                hash = 31 * hash + (value == null ? 0 : value.hashCode());
+            }
+            hashes[i] = hash;
+        }
+        return new PageSnapshot(ids, hashes);
+    }
+
+
+    //diff compares oldSnapshot with newSnapshot. Rows are matched by row ID and are changed if their
+    //content hash differs. Moves are detected too, since renaming a contact moves it in the list.
+    //DiffUtil's cost grows with the size of the page and the number of differences, so this is
+    //called on a background thread.
+    static DiffUtil.DiffResult diff(final PageSnapshot oldSnapshot, final PageSnapshot newSnapshot){
+
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldSnapshot.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newSnapshot.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return oldSnapshot.ids[oldPosition] == newSnapshot.ids[newPosition];
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return oldSnapshot.hashes[oldPosition] == newSnapshot.hashes[newPosition];
+            }
+        }, true);
+    }
+}
@@ -0,0 +1,107 @@
+package com.deitel.addressbook;
+
+import android.database.Cursor;
+import android.widget.SectionIndexer;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+//SectionIndex maps the sections of the contact list (one per initial letter) to the list position
+//of their first contact, and back. It is read from the AddressBookCP's sections Uri (see
+//Contact.buildSectionsUri), which returns one row per section with the number of contacts in it,
+//so building the index reads a few dozen rows whatever the size of the list.
+
+//Sections whose sort keys start with anything but a letter from a to z (digits, symbols, other
+//scripts, no name at all) are labelled "#". Neighbouring sections with the same label are joined.
+//A SectionIndex never changes after it is created, so it can be built on any thread.
+
+class SectionIndex implements SectionIndexer {
+
+
+    //the label of the sections that do not start with a letter from a to z.
+    static final String OTHER_LABEL = "#";
+
+    //an index without sections, used until the first one is loaded.
+    static final SectionIndex EMPTY = new SectionIndex(new String[0], new int[0]);
+
+
+    private final String[] labels;
+    private final int[] starts;  //list position of the first contact of each section
+
+
+    private SectionIndex(String[] labels, int[] starts){
+        this.labels = labels;
+        this.starts = starts;
+    }
+
+
+    //read returns the index of the sections in cursor, a query of the sections Uri.
+    //A null cursor is an empty index.
+    static SectionIndex read(Cursor cursor){
+
+        if (cursor == null)
+            return EMPTY;
+
+        int sectionIndex = cursor.getColumnIndex(Contact.COLUMN_SECTION);
+        int countIndex = cursor.getColumnIndex(Contact.COLUMN_SECTION_COUNT);
+        ArrayList<String> labels = new ArrayList<>();
+        int[] starts = new int[cursor.getCount()];
+        int count = 0;
+
+        while (cursor.moveToNext()){
+            String label = getLabel(cursor.getString(sectionIndex));
+            if (labels.isEmpty() || !labels.get(labels.size() - 1).equals(label)){
+                starts[labels.size()] = count;
+                labels.add(label);
+            }
+            count += cursor.getInt(countIndex);
+        }
+        return new SectionIndex(labels.toArray(new String[labels.size()]),
+                Arrays.copyOf(starts, labels.size()));
+    }
+
+
+    //getLabel returns the label of a section: its letter in upper case, or OTHER_LABEL.
+    private static String getLabel(String section){
+        if (section == null || section.length() != 1 || section.charAt(0) < 'a' || section.charAt(0) > 'z')
+            return OTHER_LABEL;
+        return section.toUpperCase(Locale.ROOT);
+    }
+
+
+    //getSections returns the labels of the sections, in list order.
+    @Override
+    public String[] getSections() {
+        return labels;
+    }
+
+
+    //getPositionForSection returns the list position of the first contact of section. Sections out
+    //of range are clamped to the first or last section.
+    @Override
+    public int getPositionForSection(int section) {
+        if (labels.length == 0)
+            return 0;
+        return starts[Math.max(0, Math.min(section, labels.length - 1))];
+    }
+
+
+    //getSectionForPosition returns the section containing the contact at position, using a binary
+    //search over the sections' start positions.
+    @Override
+    public int getSectionForPosition(int position) {
+        int low = 0;
+        int high = labels.length - 1;
+        while (low < high){
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= position)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        return Math.max(low, 0);
+    }
+}
@@ -0,0 +1,120 @@
+package com.deitel.addressbook;
+
+import android.os.Trace;
+import android.util.Log;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Tracer adds the app's own sections to a system trace (systrace, or Perfetto on newer devices), so
+//a slow frame can be attributed to the work that caused it: loading the contact list, binding its
+//rows, drawing its dividers or showing a contact. The sections only appear when the app is traced,
+//e.g. by "atrace -a com.deitel.addressbook" or a Perfetto config listing the app.
+
+//A section begun with beginSection must be ended with endSection on the same thread, so it can
+//only measure work done within one call. Work that spans threads and callbacks, such as a loader's
+//load, is measured with an AsyncSection, which shows up as its own track in the trace.
+
+//Every method does nothing unless BuildConfig.TRACE_ENABLED is set, which it is in the debug and
+//benchmark build types only. The flag is a compile-time constant, so in a release build the
+//bodies are compiled away and a call costs no more than an empty method.
+
+final class Tracer {
+
+
+    private static final String TAG = "Tracer";
+
+    //the tag of the sections apps add, Trace.TRACE_TAG_APP.
+    private static final long TRACE_TAG_APP = 1L << 12;
+
+    //Trace's methods for async sections are public only from API level 29, so we look up the
+    //hidden ones older versions have, as the support library's TraceCompat does. They are null if
+    //they cannot be found, and then async sections are not traced.
+    private static final Method asyncTraceBegin;
+    private static final Method asyncTraceEnd;
+
+    //every AsyncSection gets its own cookie, which tells the sections of the same name apart.
+    private static final AtomicInteger nextCookie = new AtomicInteger();
+
+    static {
+        Method begin = null;
+        Method end = null;
+        if (BuildConfig.TRACE_ENABLED){
+            try {
+                begin = Trace.class.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+                end = Trace.class.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+            }
+            catch (NoSuchMethodException e){
+                Log.w(TAG, "Async trace sections are not available", e);
+                begin = null;
+                end = null;
+            }
+        }
+        asyncTraceBegin = begin;
+        asyncTraceEnd = end;
+    }
+
+
+    private Tracer(){
+    }
+
+
+    //beginSection begins a section called name on the current thread.
+    static void beginSection(String name){
+        if (BuildConfig.TRACE_ENABLED)
+            Trace.beginSection(name);
+    }
+
+
+    //endSection ends the section the current thread began last.
+    static void endSection(){
+        if (BuildConfig.TRACE_ENABLED)
+            Trace.endSection();
+    }
+
+
+    //AsyncSection is a section that may begin and end on different threads. Its owner begins it
+    //when work starts and ends it when the work is done; beginning it while it is open ends the
+    //open one first, so work that is superseded before it is done (a load restarted by a change)
+    //ends where its replacement begins. An AsyncSection is used from one thread at a time.
+    static final class AsyncSection {
+
+        private final String name;
+        private final int cookie;
+        private boolean open;
+
+        AsyncSection(String name){
+            this.name = name;
+            this.cookie = nextCookie.getAndIncrement();
+        }
+
+        void begin(){
+            if (!BuildConfig.TRACE_ENABLED)
+                return;
+            end();
+            invoke(asyncTraceBegin, name, cookie);
+            open = true;
+        }
+
+        void end(){
+            if (!BuildConfig.TRACE_ENABLED || !open)
+                return;
+            invoke(asyncTraceEnd, name, cookie);
+            open = false;
+        }
+    }
+
+
+    //invoke calls one of Trace's hidden async section methods, if it was found.
+    private static void invoke(Method method, String name, int cookie){
+        if (method == null)
+            return;
+        try {
+            method.invoke(null, TRACE_TAG_APP, name, cookie);
+        }
+        catch (IllegalAccessException | InvocationTargetException e){
+            Log.w(TAG, "Cannot trace " + name, e);
+        }
+    }
+}
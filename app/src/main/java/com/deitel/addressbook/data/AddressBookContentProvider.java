@@ -1,16 +1,39 @@
 package com.deitel.addressbook.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.content.UriMatcher;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.text.TextUtils;
 
 import com.deitel.addressbook.R;
+import com.deitel.addressbook.core.ContactBook;
+import com.deitel.addressbook.core.MatchQueries;
+import com.deitel.addressbook.core.PhoneKeys;
+import com.deitel.addressbook.core.SortKeys;
 import com.deitel.addressbook.data.DatabaseDescription.Contact;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 //AddressBookContentProvider is a subclass of ContentProvider that
 //defines query/insert/update/delete operations on our database.
 
@@ -20,6 +43,17 @@ public class AddressBookContentProvider extends ContentProvider {
     //We will use it to enable this ContentProvider to get readable/writable access to our DB.
     private AddressBookDatabaseHelper dbHelper;
 
+    //changeNotifier merges the change notifications of a burst of writes (see ChangeNotifier).
+    private ChangeNotifier changeNotifier;
+
+    //contactBook finds and merges duplicate contacts. Its logic lives in the core module, which
+    //works on our database through a SQLiteContactStore.
+    private ContactBook contactBook;
+
+    //metrics records the latency and row count of every query, insert, update and delete
+    //(see ProviderMetrics and Contact.METHOD_METRICS).
+    private final ProviderMetrics metrics = new ProviderMetrics(PATTERN_NAMES);
+
 
     //Then we define variable "uriMatcher" which is a UriMatcher object.
     //A ContentProvider uses a UriMatcher to help determine which operation to perform
@@ -31,6 +65,33 @@ public class AddressBookContentProvider extends ContentProvider {
     //The ContentProvider will use these constants in switch statements in its operation methods.
     private static final int ONE_CONTACT = 1; //manipulate one contact
     private static final int CONTACTS = 2;    //manipulate contacts table
+    private static final int SEARCH = 3;      //full-text search the contacts table
+    private static final int EXPORT = 4;      //export the contacts table as a file
+    private static final int DUPLICATES = 5;  //the groups of duplicate contacts
+    private static final int PHONE_LOOKUP = 6; //find the contacts with a phone number
+    private static final int SOME_CONTACTS = 7; //manipulate a set of contacts
+    private static final int SECTIONS = 8;    //the sections of the contact list
+
+    //the names of the Uri patterns in the operation metrics, indexed by the constants above.
+    private static final String[] PATTERN_NAMES = {"unknown", "contact", "contacts", "search", "export",
+            "duplicates", "phone_lookup", "contact_set", "sections"};
+
+
+    //the number of rows read per query when a query has to read the whole contacts table.
+    private static final int SCAN_CHUNK_SIZE = 2000;
+
+
+    //INTERNAL_COLUMNS are maintained by the provider alone: the keys are derived from the name and
+    //phone number (see withDerivedKeys), and the tombstone is set by delete and cleared by restore.
+    //A caller that could write them could make the sort key disagree with the name, which breaks
+    //paging and the section counts, or delete and restore contacts behind the provider's back.
+    private static final String[] INTERNAL_COLUMNS =
+            {Contact.COLUMN_SORT_KEY, Contact.COLUMN_PHONE_KEY, Contact.COLUMN_DELETED_AT};
+
+
+    //batchChanges is set on the thread running applyBatch. Instead of sending a notifyChange per
+    //operation, it collects the Uris that changed and they are sent once the batch is committed.
+    private final ThreadLocal<Set<Uri>> batchChanges = new ThreadLocal<>();
 
 
     //We configure a static block that adds Uris to the UriMatcher. This block executes once
@@ -54,8 +115,88 @@ public class AddressBookContentProvider extends ContentProvider {
         //which represents the entire contacts table. When a Uri matches this format,
         //the UriMatcher returns the constant CONTACTS aka the entire table.
         uriMatcher.addURI(DatabaseDescription.AUTHORITY, Contact.TABLE_NAME, CONTACTS);
+
+        //we add a Uri in the form content://com.deitel.addressbook.data/contacts/search/query
+        //* is a wildcard that matches any string, in our case the text to search for.
+        //When a Uri matches this format, the UriMatcher returns the constant SEARCH.
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+                Contact.TABLE_NAME + "/" + Contact.PATH_SEARCH + "/*", SEARCH);
+
+        //we add a Uri in the form content://com.deitel.addressbook.data/contacts/export
+        //When a Uri matches this format, the UriMatcher returns the constant EXPORT.
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+                Contact.TABLE_NAME + "/" + Contact.PATH_EXPORT, EXPORT);
+
+        //we add a Uri in the form content://com.deitel.addressbook.data/contacts/duplicates
+        //When a Uri matches this format, the UriMatcher returns the constant DUPLICATES.
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+                Contact.TABLE_NAME + "/" + Contact.PATH_DUPLICATES, DUPLICATES);
+
+        //we add a Uri in the form content://com.deitel.addressbook.data/contacts/phone_lookup/number
+        //When a Uri matches this format, the UriMatcher returns the constant PHONE_LOOKUP.
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+                Contact.TABLE_NAME + "/" + Contact.PATH_PHONE_LOOKUP + "/*", PHONE_LOOKUP);
+
+        //we add a Uri in the form content://com.deitel.addressbook.data/contacts/ids/3,5,8
+        //When a Uri matches this format, the UriMatcher returns the constant SOME_CONTACTS.
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+                Contact.TABLE_NAME + "/" + Contact.PATH_IDS + "/*", SOME_CONTACTS);
+
+        //we add a Uri in the form content://com.deitel.addressbook.data/contacts/sections
+        //When a Uri matches this format, the UriMatcher returns the constant SECTIONS.
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+                Contact.TABLE_NAME + "/" + Contact.PATH_SECTIONS, SECTIONS);
+    }
+
+
+    //CONTACT_PROJECTION_MAP lists the columns a query of the contacts table may ask for. The query
+    //builder rejects any other column (or expression) in a projection, so a client can only read
+    //the columns of the projection profiles in Contact (LIST_PROJECTION, DETAIL_PROJECTION).
+    private static final Map<String, String> CONTACT_PROJECTION_MAP = new HashMap<>();
+    static {
+        String[] columns = {Contact._ID, Contact.COLUMN_NAME, Contact.COLUMN_PHONE, Contact.COLUMN_EMAIL,
+                Contact.COLUMN_STREET, Contact.COLUMN_CITY, Contact.COLUMN_STATE, Contact.COLUMN_ZIP,
+                Contact.COLUMN_SORT_KEY};
+        for (String column : columns)
+            CONTACT_PROJECTION_MAP.put(column, column);
+    }
+
+
+    //Search queries join the contacts table with the FTS table, which has columns of the same names.
+    //SEARCH_PROJECTION_MAP maps each column a search query may ask for to the contacts table's column,
+    //plus the COLUMN_SEARCH_RANK column. offsets() returns "column term offset size" for each match,
+    //ordered by column, so its first number is the first (most important) column that matched.
+    //There are fewer than 10 indexed columns, so that number is always a single digit.
+    private static final Map<String, String> SEARCH_PROJECTION_MAP = new HashMap<>();
+    static {
+        String[] columns = {Contact._ID, Contact.COLUMN_NAME, Contact.COLUMN_PHONE, Contact.COLUMN_EMAIL,
+                Contact.COLUMN_STREET, Contact.COLUMN_CITY, Contact.COLUMN_STATE, Contact.COLUMN_ZIP,
+                Contact.COLUMN_SORT_KEY};
+        for (String column : columns)
+            SEARCH_PROJECTION_MAP.put(column, Contact.TABLE_NAME + "." + column + " AS " + column);
+
+        SEARCH_PROJECTION_MAP.put(Contact.COLUMN_SEARCH_RANK, "CAST(substr(offsets(" +
+                AddressBookDatabaseHelper.FTS_TABLE_NAME + "), 1, 1) AS INTEGER) AS " +
+                Contact.COLUMN_SEARCH_RANK);
+    }
+
+    //DUPLICATES_PROJECTION_MAP lists the columns a query of the duplicates Uri may ask for.
+    private static final Map<String, String> DUPLICATES_PROJECTION_MAP = new HashMap<>(CONTACT_PROJECTION_MAP);
+    static {
+        DUPLICATES_PROJECTION_MAP.put(Contact.COLUMN_DUPLICATE_GROUP, Contact.COLUMN_DUPLICATE_GROUP);
     }
 
+    //SECTIONS_PROJECTION_MAP lists the columns a query of the sections Uri may ask for.
+    private static final Map<String, String> SECTIONS_PROJECTION_MAP = new HashMap<>();
+    static {
+        SECTIONS_PROJECTION_MAP.put(Contact.COLUMN_SECTION, Contact.COLUMN_SECTION);
+        SECTIONS_PROJECTION_MAP.put(Contact.COLUMN_SECTION_COUNT, Contact.COLUMN_SECTION_COUNT);
+    }
+
+    //search results are sorted by rank, then alphabetically.
+    private static final String SEARCH_SORT_ORDER =
+            Contact.COLUMN_SEARCH_RANK + " ASC, " + Contact.PAGE_SORT_ORDER;
+
 
     //When a ContentProvider is created, Android calls its onCreate method to configure it.
     @Override
@@ -64,19 +205,73 @@ public class AddressBookContentProvider extends ContentProvider {
         //The first time the CP is invoked to write to the database, the AddressBookDatabaseHelper's onCreate
         //method will be called to create the database.
         dbHelper = new AddressBookDatabaseHelper(getContext());
+        contactBook = new ContactBook(new SQLiteContactStore(dbHelper), SCAN_CHUNK_SIZE);
+
+        //change notifications are merged over a window whose length is set in res/values/integers.xml.
+        changeNotifier = new ChangeNotifier(getContext().getContentResolver(),
+                getContext().getResources().getInteger(R.integer.change_notification_window_millis));
+
+        //After an upgrade, some migrations still have to fill in data for the existing rows.
+        //We do that on a background thread, in small transactions, so queries can run in between.
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dbHelper.runPendingBackfills();
+            }
+        }, "AddressBookBackfill").start();
+
         return true; //CP successfully created.
     }
 
 
-    //The getType method is a required CP method that simply returns null in this app. This method
-    //is typically used when creating and starting Intents for Uri's with specific MIME types.
+
+    //shutdown is called when the provider is no longer used, which only happens in tests. We stop
+    //the ChangeNotifier's thread, so every provider a test creates does not leave one behind.
+    @Override
+    public void shutdown() {
+        changeNotifier.shutdown();
+        super.shutdown();
+    }
+
+
+    //The getType method is a required CP method. This method is typically used when creating and
+    //starting Intents for Uri's with specific MIME types. In this app only export Uris have a
+    //MIME type, the type of the file they export. It returns null for any other Uri.
     @Override
     public String getType(Uri uri) {
-        // TODO: Implement this to handle requests for the MIME type of the data at the given URI.
+        if (uriMatcher.match(uri) == EXPORT)
+            return ContactExportWriter.getMimeType(uri.getQueryParameter(Contact.PARAM_FORMAT));
         return null;
     }
 
 
+    //The overridden CP method "openFile" opens the file an export Uri represents (see
+    //Contact.buildExportUri). Rather than writing the file to disk first, we create a pipe and
+    //return its read end. A ContactExportWriter running on its own thread writes the contacts into
+    //the other end while the client reads them, so neither side ever holds the whole file.
+    //We use a reliable pipe so the client gets an IOException if the export fails part way,
+    //instead of a file that looks complete.
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+
+        if (uriMatcher.match(uri) != EXPORT || !"r".equals(mode) ||
+                getType(uri) == null)
+            throw new FileNotFoundException(getContext().getString(R.string.invalid_export_uri) + uri);
+
+        ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createReliablePipe();
+        }
+        catch (IOException e){
+            throw new FileNotFoundException(e.getMessage());
+        }
+
+        new Thread(new ContactExportWriter(dbHelper.getReadableDatabase(),
+                uri.getQueryParameter(Contact.PARAM_FORMAT), pipe[1]), "AddressBookExport").start();
+        return pipe[0];
+    }
+
+
 
 
 
@@ -84,16 +279,33 @@ public class AddressBookContentProvider extends ContentProvider {
 
 
     //Here we override the CP method "query". It retrieves data from the provider's data source.
-    //The method returns a Cursor thats used to interact with he results. "query" receives 5 arguments.
+    //The work is done by queryContacts below; here we time it for the operation metrics. A Cursor
+    //from the database reads no rows until it is first asked for its count or moved, so we ask for
+    //the count: that fills its first CursorWindow, which the client would do next anyway, and
+    //gives the number of rows returned. The metrics keep the time spent filling separately.
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder) {
+
+        int match = uriMatcher.match(uri);
+        long start = System.nanoTime();
+        Cursor cursor = queryContacts(match, uri, projection, selection, selectionArgs, sortOrder);
+        long fillStart = System.nanoTime();
+        metrics.recordQuery(match, start, fillStart, cursor.getCount());
+        return cursor;
+    }
+
+
+    //queryContacts runs a query. It receives match, the UriMatcher constant of uri, and the 5
+    //arguments of "query". The method returns a Cursor thats used to interact with he results.
     //1) uri - A uri representing the data to retrieve.
     //2) projection - a String array representing the specific columns to retrieve.
     //If projection is null then all columns will be included in the result.
     //3) selection - a String containing the selection criteria. This is the SQL "Where" clause.
     //4) selectionArgs - a String array containing the args used to replace any argument placeholders(?) in selection.
     //5) sortOrder - a String representing the sort order. This is the SQL "Sort By" clause.
-    @Override
-    public Cursor query(Uri uri, String[] projection, String selection,
-                        String[] selectionArgs, String sortOrder) {
+    private Cursor queryContacts(int match, Uri uri, String[] projection, String selection,
+                                 String[] selectionArgs, String sortOrder) {
 
 
         //First we create a SQLiteQueryBuilder for building SQL queries that are submitted to the SQLite DB.
@@ -102,13 +314,23 @@ public class AddressBookContentProvider extends ContentProvider {
         queryBuilder.setTables(Contact.TABLE_NAME);
 
 
+        //limit is the SQL "LIMIT" clause, only used by paged queries.
+        String limit = null;
+
+        //notificationUri is the Uri whose changes the returned Cursor watches.
+        Uri notificationUri = uri;
+
+        //projectionMap holds the columns the query may return.
+        Map<String, String> projectionMap = CONTACT_PROJECTION_MAP;
+
+
         //Now we use our UriMatcher to determine the operation to perform. In this app we have 2 queries:
         //1) select a specific contact from the DB to display or edit its details.
         //2) select all contacts in DB to display their names in our ContactsFragment RecyclerView.
 
         //We use the UriMatcher method "match" to determine which query operation to perform. "match"
         //returns one of the constants that were registered with the UriMatcher.
-        switch (uriMatcher.match(uri)){
+        switch (match){
 
             //if ONE_CONTACT, only the contact with the ID specified in the Uri should be selected.
             case ONE_CONTACT:
@@ -118,9 +340,77 @@ public class AddressBookContentProvider extends ContentProvider {
                 queryBuilder.appendWhere(Contact._ID + "=" + uri.getLastPathSegment());
                 break;
 
+            //if SEARCH, we join the contacts with the rows of the FTS table that match the search text.
+            //The FTS index finds the matching contacts without reading every row of the contacts table.
+            case SEARCH:
+                queryBuilder.setTables(Contact.TABLE_NAME + " JOIN " + AddressBookDatabaseHelper.FTS_TABLE_NAME +
+                        " ON " + Contact.TABLE_NAME + "." + Contact._ID + " = " +
+                        AddressBookDatabaseHelper.FTS_TABLE_NAME + ".docid");
+                projectionMap = SEARCH_PROJECTION_MAP;
+
+                String matchQuery = MatchQueries.build(uri.getLastPathSegment());
+                if (matchQuery != null){
+                    queryBuilder.appendWhere(AddressBookDatabaseHelper.FTS_TABLE_NAME + " MATCH ");
+                    queryBuilder.appendWhereEscapeString(matchQuery);
+                }
+                else //the search text has no words, so nothing matches.
+                    queryBuilder.appendWhere("0");
+
+                if (sortOrder == null)
+                    sortOrder = SEARCH_SORT_ORDER;
+
+                //search results change whenever any contact changes.
+                notificationUri = Contact.CONTENT_URI;
+                break;
+
+            //if PHONE_LOOKUP, we select the contacts whose phone key matches the number's (see
+            //ContactQueries.appendPhoneLookup). The phone key index finds them with a short range scan
+            //instead of comparing the phone number of every contact.
+            case PHONE_LOOKUP:
+                String phoneKey = PhoneKeys.build(uri.getLastPathSegment());
+                if (phoneKey != null){
+                    ContactQueries.appendPhoneLookup(queryBuilder, phoneKey);
+                    if (sortOrder == null)
+                        sortOrder = ContactQueries.phoneLookupSortOrder(phoneKey);
+                }
+                else //the number has no digits, so nothing matches.
+                    queryBuilder.appendWhere("0");
+
+                //lookup results change whenever any contact changes.
+                notificationUri = Contact.CONTENT_URI;
+                break;
+
+            //if SECTIONS, we read the section counts table, which triggers keep up to date (see
+            //DatabaseMigrations.SectionCountsMigration). Sections whose contacts were all deleted
+            //keep a row with a zero count, which we skip. The rows are in list order because the
+            //list is sorted by the sort key, and a section is the sort key's first character.
+            case SECTIONS:
+                queryBuilder.setTables(AddressBookDatabaseHelper.SECTIONS_TABLE_NAME);
+                queryBuilder.setProjectionMap(SECTIONS_PROJECTION_MAP);
+                queryBuilder.setStrict(true);
+                validateProjection(projection, SECTIONS_PROJECTION_MAP);
+                queryBuilder.appendWhere(Contact.COLUMN_SECTION_COUNT + " > 0");
+                Cursor sections = queryBuilder.query(dbHelper.getReadableDatabase(), projection,
+                        selection, selectionArgs, null, null, Contact.COLUMN_SECTION + " ASC", null);
+
+                //the sections change whenever any contact changes.
+                sections.setNotificationUri(getContext().getContentResolver(), Contact.CONTENT_URI);
+                return sections;
+
+            //if DUPLICATES, the rows are computed by the ContactBook rather than selected by SQL.
+            case DUPLICATES:
+                return queryDuplicates(projection);
+
             //if CONTACTS, the switch terminates without adding anything to the query. Because there is
             //no WHERE clause then all the contacts will be selected.
+            //If the Uri carries paging parameters (see Contact.buildPageUri) we instead restrict the
+            //query to the rows between the page's keys and use the paging sort order.
             case CONTACTS:
+                if (isPagedQuery(uri)){
+                    appendPageBounds(queryBuilder, uri);
+                    sortOrder = Contact.PAGE_SORT_ORDER;
+                    limit = parseLimit(uri);
+                }
                 break;
             //For any Uri that isnt a match we throw an exception indicating it was invalid.
             default:
@@ -128,6 +418,23 @@ public class AddressBookContentProvider extends ContentProvider {
         }
 
 
+        //Deleted contacts (see Contact.COLUMN_DELETED_AT) are never returned. The condition goes into
+        //the selection, where the query planner sees it next to the caller's conditions and can
+        //use the indexes that leave deleted contacts out.
+        selection = DatabaseUtils.concatenateWhere(ContactQueries.NOT_DELETED, selection);
+
+
+        //Next we make sure the projection only names columns of projectionMap. A null projection
+        //returns the contact's details (Contact.DETAIL_PROJECTION) for contacts queries, and
+        //every column for search queries. In strict mode the query builder also refuses
+        //projection entries such as "name AS x" that are not in the map.
+        validateProjection(projection, projectionMap);
+        if (projection == null && projectionMap == CONTACT_PROJECTION_MAP)
+            projection = Contact.DETAIL_PROJECTION;
+        queryBuilder.setProjectionMap(projectionMap);
+        queryBuilder.setStrict(true);
+
+
         //To query our database we use SQLiteQueryBuilders query method to perform the query and get a Cursor
         //representing our results.
 
@@ -140,14 +447,15 @@ public class AddressBookContentProvider extends ContentProvider {
         //5) groupBy - the SQL GroupBy clause, if null then no grouping performed.
         //6) having - used with groupBy to specify which groups to include.
         //7) sortOrder - a String representing the sort order.
+        //8) limit - the maximum number of rows to return, null for all rows.
         Cursor cursor = queryBuilder.query(dbHelper.getReadableDatabase(),projection,selection,selectionArgs,
-                null,null,sortOrder);
+                null,null,sortOrder,limit);
 
         //Now that we have a Cursor with our results. We must register it to watch for content changes.
         //setNotificationUri indicates that the cursor should be updated if the data it refers to changes.
         //The 1st arg is the ContentResolver that invoked the ContentProvider.
         //The 2nd arg is the Uri used to invoke the ContentProvider.
-        cursor.setNotificationUri(getContext().getContentResolver(),uri);
+        cursor.setNotificationUri(getContext().getContentResolver(),notificationUri);
 
         //Lastly we return our Cursor containing the query results.
         return cursor;
@@ -161,6 +469,169 @@ public class AddressBookContentProvider extends ContentProvider {
 
 
 
+    //queryDuplicates returns the contacts that are probably duplicates (see ContactBook.findDuplicates)
+    //with the columns of projection, sorted by group. The ContactBook reads the whole table in chunks
+    //of row IDs, but only the row ID, name, phone and e-mail; the other columns are read afterwards,
+    //for the duplicates only.
+    private Cursor queryDuplicates(String[] projection){
+
+        validateProjection(projection, DUPLICATES_PROJECTION_MAP);
+        if (projection == null)
+            projection = Contact.DUPLICATES_PROJECTION;
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<long[]> groups = contactBook.findDuplicates();
+
+        //the columns to read for each duplicate: the projection without the group column.
+        List<String> columns = new ArrayList<>(Arrays.asList(projection));
+        columns.remove(Contact.COLUMN_DUPLICATE_GROUP);
+        columns.remove(Contact._ID);
+        columns.add(0, Contact._ID);
+
+        //we read the duplicates SCAN_CHUNK_SIZE at a time and add their rows in group order.
+        MatrixCursor duplicates = new MatrixCursor(projection);
+        List<long[]> chunk = new ArrayList<>();
+        int chunkSize = 0;
+        for (int g = 0; g <= groups.size(); g++){
+            if (g == groups.size() || (chunkSize + groups.get(g).length > SCAN_CHUNK_SIZE && chunkSize > 0)){
+                addDuplicateRows(db, duplicates, projection, columns, chunk);
+                chunk.clear();
+                chunkSize = 0;
+            }
+            if (g < groups.size()){
+                chunk.add(groups.get(g));
+                chunkSize += groups.get(g).length;
+            }
+        }
+
+        //the duplicates change whenever any contact changes.
+        duplicates.setNotificationUri(getContext().getContentResolver(), Contact.CONTENT_URI);
+        return duplicates;
+    }
+
+
+    //addDuplicateRows adds a row to cursor for each contact of groups, reading the contacts'
+    //columns with a single query. Contacts deleted since the ContactBook read the table, for good
+    //or with a tombstone, are left out.
+    private static void addDuplicateRows(SQLiteDatabase db, MatrixCursor cursor, String[] projection,
+                                         List<String> columns, List<long[]> groups){
+        if (groups.isEmpty())
+            return;
+
+        StringBuilder selection = new StringBuilder(Contact._ID + " IN (");
+        for (long[] group : groups)
+            for (long id : group)
+                selection.append(id).append(',');
+        selection.setCharAt(selection.length() - 1, ')');
+
+        Map<Long, Object[]> contacts = new HashMap<>();
+        Cursor contact = db.query(Contact.TABLE_NAME, columns.toArray(new String[columns.size()]),
+                DatabaseUtils.concatenateWhere(selection.toString(), ContactQueries.NOT_DELETED),
+                null, null, null, null);
+        try {
+            while (contact.moveToNext()){
+                Object[] values = new Object[columns.size()];
+                values[0] = contact.getLong(0);
+                for (int c = 1; c < values.length; c++)
+                    values[c] = contact.getString(c);
+                contacts.put(contact.getLong(0), values);
+            }
+        }
+        finally {
+            contact.close();
+        }
+
+        for (long[] group : groups){
+            for (long id : group){
+                Object[] values = contacts.get(id);
+                if (values == null)
+                    continue; //deleted since the ContactBook read the table
+                Object[] row = new Object[projection.length];
+                for (int c = 0; c < projection.length; c++)
+                    row[c] = projection[c].equals(Contact.COLUMN_DUPLICATE_GROUP) ?
+                            group[0] : values[columns.indexOf(projection[c])];
+                cursor.addRow(row);
+            }
+        }
+    }
+
+
+
+
+
+
+
+
+
+    //validateProjection throws an IllegalArgumentException naming the first column in projection
+    //that projectionMap does not contain.
+    private void validateProjection(String[] projection, Map<String, String> projectionMap){
+        if (projection == null)
+            return;
+        for (String column : projection){
+            if (!projectionMap.containsKey(column))
+                throw new IllegalArgumentException(getContext().getString(R.string.invalid_projection) + column);
+        }
+    }
+
+
+    //validateValues throws an IllegalArgumentException naming the first of the INTERNAL_COLUMNS
+    //a caller's values contain.
+    private void validateValues(ContentValues values){
+        if (values == null)
+            return;
+        for (String column : INTERNAL_COLUMNS){
+            if (values.containsKey(column))
+                throw new IllegalArgumentException(getContext().getString(R.string.invalid_values) + column);
+        }
+    }
+
+
+    //isPagedQuery returns true if the Uri carries any of the paging query parameters.
+    private static boolean isPagedQuery(Uri uri){
+        return uri.getQueryParameter(Contact.PARAM_AFTER) != null ||
+                uri.getQueryParameter(Contact.PARAM_UNTIL) != null ||
+                uri.getQueryParameter(Contact.PARAM_LIMIT) != null;
+    }
+
+
+    //appendPageBounds adds the keyset conditions of a paged query to the WHERE clause
+    //(see ContactQueries.appendPageBounds).
+    private void appendPageBounds(SQLiteQueryBuilder queryBuilder, Uri uri){
+        try {
+            ContactQueries.appendPageBounds(queryBuilder, uri.getQueryParameter(Contact.PARAM_AFTER),
+                    uri.getQueryParameter(Contact.PARAM_UNTIL));
+        }
+        catch (IllegalArgumentException e){
+            throw new IllegalArgumentException(getContext().getString(R.string.invalid_page_uri) + uri, e);
+        }
+    }
+
+
+    //parseLimit returns the LIMIT of a paged query, or null if the Uri has no limit.
+    private String parseLimit(Uri uri){
+
+        String limit = uri.getQueryParameter(Contact.PARAM_LIMIT);
+        if (limit == null)
+            return null;
+        try {
+            if (Integer.parseInt(limit) > 0)
+                return limit;
+        }
+        catch (NumberFormatException e){
+            //fall through to the exception below.
+        }
+        throw new IllegalArgumentException(getContext().getString(R.string.invalid_page_uri) + uri);
+    }
+
+
+
+
+
+
+
+
+
     //The overridden CP method insert adds a new record to the contacts table. It receives 2 args.
     //1) uri - a Uri representing the table in which the data will be inserted.
     //2) values - a ContentValues object containing key-value pairs in which the
@@ -168,7 +639,9 @@ public class AddressBookContentProvider extends ContentProvider {
     @Override
     public Uri insert(Uri uri, ContentValues values) {
 
+        long start = System.nanoTime();
         Uri newContactUri = null;
+        validateValues(values);
 
 
         //We use the UriMatcher method "match" to determine which query operation to perform. "match"
@@ -184,13 +657,15 @@ public class AddressBookContentProvider extends ContentProvider {
                 //Our table,nullColumnHack - which we leave null,the values to insert.
 
                 //a successful insert gives the new contact's row ID, and -1 if it isnt.
-                long rowId = dbHelper.getWritableDatabase().insert(Contact.TABLE_NAME, null, values);
+                long rowId = dbHelper.getWritableDatabase().insert(Contact.TABLE_NAME, null, withDerivedKeys(values));
 
                 //If the creation of the new contact is successful, we create a Uri representing the new contact,
                 //and notify the ContentResolver the DB has changed, so its code can respond to DB changes.
+                //We notify the new contact's Uri: the contact list watches everything under the
+                //contacts table, so it still sees the new contact.
                 if (rowId > 0){
                     newContactUri = Contact.buildContactUri(rowId);
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    notifyChange(newContactUri);
                 }
                 else //if not successful add then we throw an exception as the operation failed.
                     throw new SQLException(getContext().getString(R.string.insert_failed) + uri);
@@ -201,7 +676,8 @@ public class AddressBookContentProvider extends ContentProvider {
                         getContext().getString(R.string.invalid_insert_uri) + uri);
         }
 
-        //Finally we return Uri of our newly added contact.
+        //Finally we record the insert in the metrics and return Uri of our newly added contact.
+        metrics.record(ProviderMetrics.INSERT, CONTACTS, start, 1);
         return newContactUri;
     }
 
@@ -220,11 +696,15 @@ public class AddressBookContentProvider extends ContentProvider {
     public int update(Uri uri, ContentValues values, String selection,
                       String[] selectionArgs) {
 
+        long start = System.nanoTime();
+
         //create variable numberOfRowsUpdated. 1 if successful, 0 if not.
         int numberOfRowsUpdated;
+        validateValues(values);
 
-        //Updates are performed on a single specific contact. So we check only for ONE_CONTACT uri.
-        switch (uriMatcher.match(uri)){
+        //Updates are performed on a single specific contact or on a set of contacts.
+        int match = uriMatcher.match(uri);
+        switch (match){
 
             case ONE_CONTACT:
                 //if our Uri matches ONE_CONTACT, we get its last path segment
@@ -234,8 +714,24 @@ public class AddressBookContentProvider extends ContentProvider {
                 //Then we get a Writable DB object and call its update method to update the specified contact.
                 //The update method's args are our table, the values to update,
                 //the Where clause - in our case the ID of the row to update, and selection args.
+                //A deleted contact cannot be updated.
                 numberOfRowsUpdated = dbHelper.getWritableDatabase().update(
-                        Contact.TABLE_NAME, values, Contact._ID + "=" + id, selectionArgs);
+                        Contact.TABLE_NAME, withDerivedKeys(values),
+                        Contact._ID + "=" + id + " AND " + ContactQueries.NOT_DELETED, selectionArgs);
+                break;
+
+            //if SOME_CONTACTS, every contact of the set gets the same values, in one transaction.
+            //We notify the contacts table Uri once rather than every contact's Uri.
+            case SOME_CONTACTS:
+                final ContentValues keyedValues = withDerivedKeys(values);
+                numberOfRowsUpdated = updateEach(parseIds(uri), selection, selectionArgs, new RowsUpdate() {
+                    @Override
+                    public int apply(SQLiteDatabase db, String where, String[] whereArgs) {
+                        return db.update(Contact.TABLE_NAME, keyedValues,
+                                DatabaseUtils.concatenateWhere(ContactQueries.NOT_DELETED, where), whereArgs);
+                    }
+                });
+                uri = Contact.CONTENT_URI;
                 break;
 
 
@@ -249,11 +745,12 @@ public class AddressBookContentProvider extends ContentProvider {
         //if the update is successful we are returned the number of rows updated. Otherwise 0.
         //if successful we notify the ContentResolver that the DB has changed so its code can respond to changes.
         if (numberOfRowsUpdated != 0){
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
 
-        //Lastly we return the number of updated rows.
+        //Lastly we record the update in the metrics and return the number of updated rows.
+        metrics.record(ProviderMetrics.UPDATE, match, start, numberOfRowsUpdated);
         return numberOfRowsUpdated;
     }
 
@@ -274,11 +771,14 @@ public class AddressBookContentProvider extends ContentProvider {
     public int delete(Uri uri, String selection, String[] selectionArgs) {
 
 
+        long start = System.nanoTime();
+
         //variable to hold number of rows deleted. 1 if successful deletion, 0 if not.
         int numberOfRowsDeleted;
 
-        //We perform deletion on only a specific single contact. So we check if the Uri is ONE_CONTACT
-        switch (uriMatcher.match(uri)){
+        //We perform deletion on a specific single contact or on a set of contacts.
+        int match = uriMatcher.match(uri);
+        switch (match){
 
 
             case ONE_CONTACT:
@@ -286,13 +786,26 @@ public class AddressBookContentProvider extends ContentProvider {
                 String id = uri.getLastPathSegment();
 
 
-                //Then get a Writable DB object and call its "delete" method to delete the row.
-                //we specify the table name, the WHERE clause which is the ID of row to be deleted,
-                //and selectionArgs.
+                //Then we mark the row as deleted instead of removing it, so the delete can be undone
+                //(see Contact.COLUMN_DELETED_AT). It is a single-row update, as fast as a real delete,
+                //and the purge job removes the row later. A contact that is already deleted stays
+                //as it is.
 
                 //A successful delete returns an integer of 1, otherwise 0.
-                numberOfRowsDeleted = dbHelper.getWritableDatabase().delete(
-                        Contact.TABLE_NAME, Contact._ID + "=" + id, selectionArgs);
+                numberOfRowsDeleted = markDeleted(dbHelper.getWritableDatabase(),
+                        Contact._ID + "=" + id, selectionArgs);
+                break;
+
+            //if SOME_CONTACTS, every contact of the set is deleted the same way, in one transaction,
+            //with one notification for the contacts table Uri.
+            case SOME_CONTACTS:
+                numberOfRowsDeleted = updateEach(parseIds(uri), selection, selectionArgs, new RowsUpdate() {
+                    @Override
+                    public int apply(SQLiteDatabase db, String where, String[] whereArgs) {
+                        return markDeleted(db, where, whereArgs);
+                    }
+                });
+                uri = Contact.CONTENT_URI;
                 break;
 
             //if not for ONE_CONTACT then throw exception as operation failed.
@@ -304,13 +817,319 @@ public class AddressBookContentProvider extends ContentProvider {
         //if successful deletion, notify the ContentResolver that the DB has changed,
         //so its code can respond to changes.
         if (numberOfRowsDeleted != 0){
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
-        //Finally return the number of rows deleted.
+        //Finally record the delete in the metrics and return the number of rows deleted.
+        metrics.record(ProviderMetrics.DELETE, match, start, numberOfRowsDeleted);
         return numberOfRowsDeleted;
     }
 
 
 
+
+
+
+
+
+    //The overridden CP method "bulkInsert" adds many records to the contacts table at once.
+    //The default ContentProvider implementation simply calls insert() once per row, which commits
+    //(and syncs to disk) one transaction per contact and sends one notifyChange per contact.
+    //Instead we insert every row inside a single transaction and notify the ContentResolver once.
+    //It returns the number of rows inserted.
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+
+        long start = System.nanoTime();
+
+        //bulk inserts are only allowed on the contacts table.
+        switch (uriMatcher.match(uri)){
+
+            case CONTACTS:
+                SQLiteDatabase db = dbHelper.getWritableDatabase();
+                int numberOfRowsInserted = 0;
+
+                //The whole batch is one transaction: either every row is inserted or none is.
+                //We never yield the database in the middle, since a yield commits the rows so far
+                //and a later failure would then leave part of the batch behind. Callers with many
+                //rows keep the write lock short by sending them in chunks (see ContactImporter).
+                db.beginTransaction();
+                try {
+                    for (ContentValues contactValues : values){
+
+                        //just like insert(), a failed row aborts the operation. Throwing before
+                        //setTransactionSuccessful rolls back every row of the batch.
+                        validateValues(contactValues);
+                        long rowId = db.insert(Contact.TABLE_NAME, null, withDerivedKeys(contactValues));
+                        if (rowId <= 0)
+                            throw new SQLException(getContext().getString(R.string.insert_failed) + uri);
+                        numberOfRowsInserted++;
+                    }
+                    db.setTransactionSuccessful();
+                }
+                finally {
+                    db.endTransaction();
+                }
+
+                //one notification for the whole batch rather than one per row. A failed batch
+                //was rolled back and threw above, so it changes nothing and notifies nothing.
+                if (numberOfRowsInserted != 0)
+                    notifyChange(uri);
+                metrics.record(ProviderMetrics.BULK_INSERT, CONTACTS, start, numberOfRowsInserted);
+                return numberOfRowsInserted;
+
+            //If it is NOT for the contacts table we throw an exception.
+            default:
+                throw new UnsupportedOperationException(
+                        getContext().getString(R.string.invalid_insert_uri) + uri);
+        }
+    }
+
+
+
+
+
+
+
+    //The overridden CP method "applyBatch" runs a list of insert/update/delete operations.
+    //The default implementation applies each operation on its own, so every operation is its own
+    //transaction with its own notifyChange. We wrap the whole list in one transaction, honor the
+    //yield points the caller requested with ContentProviderOperation.Builder.withYieldAllowed,
+    //and send one coalesced notification when the batch ends.
+    //Only committed changes are notified: all of them if the batch commits, and if it fails, only
+    //those committed by a yield before the failure. A batch rolled back as a whole notifies nothing.
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        //while batchChanges is set, notifyChange only records which Uris changed.
+        Set<Uri> changes = new LinkedHashSet<>();
+        batchChanges.set(changes);
+        //the Uris whose changes have been committed, by a yield or by the end of the batch.
+        Set<Uri> committedChanges = new LinkedHashSet<>();
+        boolean successful = false;
+
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+            for (int i = 0; i < operations.size(); i++){
+                ContentProviderOperation operation = operations.get(i);
+
+                //commit the operations applied so far and let waiting readers in. yieldIfContendedSafely
+                //only commits if another thread is waiting for the database, and says if it did.
+                if (i > 0 && operation.isYieldAllowed() && db.yieldIfContendedSafely())
+                    committedChanges.addAll(changes);
+
+                //apply calls back into this provider's insert/update/delete, which join our transaction.
+                results[i] = operation.apply(this, results, i);
+            }
+            db.setTransactionSuccessful();
+            successful = true;
+            return results;
+        }
+        finally {
+            batchChanges.remove();
+            try {
+                db.endTransaction();
+                if (successful)
+                    committedChanges = changes;
+            }
+            finally {
+                //the committed changes go to the ChangeNotifier together, which merges them.
+                for (Uri uri : committedChanges)
+                    changeNotifier.notifyChange(uri);
+            }
+        }
+    }
+
+
+
+
+    //The overridden CP method "call" runs provider methods that are not a query, insert, update
+    //or delete. We support Contact.METHOD_MERGE, which merges duplicate contacts (see mergeContacts),
+    //Contact.METHOD_RESTORE, which undoes deletes (see restoreContacts), Contact.METHOD_PURGE,
+    //which removes old deleted contacts (see purgeDeleted), and Contact.METHOD_METRICS, which
+    //returns a snapshot of the operation metrics.
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+
+        Bundle result = new Bundle();
+        long[] ids = (extras != null) ? extras.getLongArray(Contact.EXTRA_IDS) : null;
+
+        if (Contact.METHOD_MERGE.equals(method)){
+            if (ids == null || ids.length < 2)
+                throw new IllegalArgumentException(
+                        getContext().getString(R.string.invalid_merge) + Arrays.toString(ids));
+            result.putInt(Contact.EXTRA_MERGED_COUNT, mergeContacts(ids));
+        }
+        else if (Contact.METHOD_RESTORE.equals(method)){
+            if (ids == null || ids.length == 0)
+                throw new IllegalArgumentException(
+                        getContext().getString(R.string.invalid_restore) + Arrays.toString(ids));
+            result.putInt(Contact.EXTRA_RESTORED_COUNT, restoreContacts(ids));
+        }
+        else if (Contact.METHOD_PURGE.equals(method))
+            result.putInt(Contact.EXTRA_PURGED_COUNT,
+                    purgeDeleted(System.currentTimeMillis() - Contact.TOMBSTONE_RETENTION_MILLIS));
+        else if (Contact.METHOD_METRICS.equals(method))
+            result = metrics.snapshot();
+        else
+            return super.call(method, arg, extras);
+
+        return result;
+    }
+
+
+    //RowsUpdate changes the contacts matching a WHERE clause and returns how many it changed.
+    private interface RowsUpdate{
+        int apply(SQLiteDatabase db, String where, String[] whereArgs);
+    }
+
+
+    //updateEach applies update to the contacts with row IDs ids that also match selection, in one
+    //transaction, and returns how many contacts it changed. The IDs go into "_id IN (...)"
+    //clauses of at most SCAN_CHUNK_SIZE IDs each, so a large set never makes a huge SQL statement.
+    private int updateEach(long[] ids, String selection, String[] selectionArgs, RowsUpdate update){
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int changed = 0;
+
+        db.beginTransaction();
+        try {
+            for (int start = 0; start < ids.length; start += SCAN_CHUNK_SIZE){
+                long[] chunk = Arrays.copyOfRange(ids, start, Math.min(ids.length, start + SCAN_CHUNK_SIZE));
+                String where = Contact._ID + " IN (" + TextUtils.join(",", toList(chunk)) + ")";
+                changed += update.apply(db, DatabaseUtils.concatenateWhere(where, selection), selectionArgs);
+            }
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+        }
+        return changed;
+    }
+
+
+    //parseIds returns the row IDs of a SOME_CONTACTS Uri (see Contact.buildContactsUri).
+    //Throws IllegalArgumentException if the Uri's ID list is malformed.
+    private long[] parseIds(Uri uri){
+        String[] idList = uri.getLastPathSegment().split(",");
+        long[] ids = new long[idList.length];
+        try {
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = Long.parseLong(idList[i]);
+        }
+        catch (NumberFormatException e){
+            throw new IllegalArgumentException(getContext().getString(R.string.invalid_ids_uri) + uri, e);
+        }
+        return ids;
+    }
+
+
+    //markDeleted marks the contacts matching selection that are not deleted yet as deleted now,
+    //and returns how many it marked.
+    static int markDeleted(SQLiteDatabase db, String selection, String[] selectionArgs){
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_DELETED_AT, System.currentTimeMillis());
+        return db.update(Contact.TABLE_NAME, values,
+                DatabaseUtils.concatenateWhere(ContactQueries.NOT_DELETED, selection), selectionArgs);
+    }
+
+
+    //restoreContacts undoes the delete of the contacts with row IDs ids and returns how many it
+    //restored. Contacts that are not deleted, or no longer exist, are ignored. Like the other writes
+    //of a set of contacts, the IDs are matched in chunks within one transaction, and the contacts
+    //table Uri is notified once.
+    private int restoreContacts(long[] ids){
+
+        final ContentValues values = new ContentValues();
+        values.putNull(Contact.COLUMN_DELETED_AT);
+        int restored = updateEach(ids, Contact.COLUMN_DELETED_AT + " IS NOT NULL", null, new RowsUpdate() {
+            @Override
+            public int apply(SQLiteDatabase db, String where, String[] whereArgs) {
+                return db.update(Contact.TABLE_NAME, values, where, whereArgs);
+            }
+        });
+
+        if (restored != 0)
+            notifyChange(Contact.CONTENT_URI);
+        return restored;
+    }
+
+
+    //purgeDeleted removes up to Contact.PURGE_BATCH_SIZE contacts deleted before the time
+    //deletedBefore (in milliseconds) and returns how many it removed. The batch is small, so the
+    //write lock is held only briefly; the deleted contacts index finds the batch without a scan.
+    //Deleted contacts are invisible already, so nobody needs to be notified.
+    private int purgeDeleted(long deletedBefore){
+        return dbHelper.getWritableDatabase().delete(Contact.TABLE_NAME,
+                Contact._ID + " IN (SELECT " + Contact._ID + " FROM " + Contact.TABLE_NAME +
+                        " WHERE " + Contact.COLUMN_DELETED_AT + " IS NOT NULL AND " +
+                        Contact.COLUMN_DELETED_AT + " < " + deletedBefore +
+                        " LIMIT " + Contact.PURGE_BATCH_SIZE + ")", null);
+    }
+
+
+    //mergeContacts merges the contacts with row IDs ids into the first one (see ContactBook.merge),
+    //and returns the number of contacts deleted, 0 if the first contact does not exist.
+    private int mergeContacts(long[] ids){
+
+        long[] deleted = contactBook.merge(ids);
+        if (deleted.length != 0){
+            notifyChange(Contact.buildContactUri(ids[0]));
+            for (long id : deleted)
+                notifyChange(Contact.buildContactUri(id));
+        }
+        return deleted.length;
+    }
+
+    private static List<Long> toList(long[] ids){
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids)
+            list.add(id);
+        return list;
+    }
+
+
+
+
+    //withDerivedKeys returns a copy of values with the sort key column set from the name column and
+    //the phone key column set from the phone column, so the keys always match the values they are
+    //made from. Callers cannot set the keys themselves (see validateValues). If values changes
+    //neither the name nor the phone number, it is returned unchanged.
+    static ContentValues withDerivedKeys(ContentValues values){
+
+        if (values == null ||
+                (!values.containsKey(Contact.COLUMN_NAME) && !values.containsKey(Contact.COLUMN_PHONE)))
+            return values;
+
+        ContentValues copy = new ContentValues(values);
+        if (values.containsKey(Contact.COLUMN_NAME))
+            copy.put(Contact.COLUMN_SORT_KEY, SortKeys.build(values.getAsString(Contact.COLUMN_NAME)));
+        if (values.containsKey(Contact.COLUMN_PHONE))
+            copy.put(Contact.COLUMN_PHONE_KEY, PhoneKeys.build(values.getAsString(Contact.COLUMN_PHONE)));
+        return copy;
+    }
+
+
+
+
+    //notifyChange tells the ContentResolver that the data at uri has changed, so its code
+    //(for example our CursorLoaders) can respond. uri is the Uri of the contact that changed, or
+    //the contacts table Uri if many contacts did. The ChangeNotifier sends the notification at the
+    //end of its window. Inside applyBatch the notification is deferred until the whole batch
+    //has been applied.
+    private void notifyChange(Uri uri){
+
+        Set<Uri> changes = batchChanges.get();
+        if (changes != null)
+            changes.add(uri);
+        else
+            changeNotifier.notifyChange(uri);
+    }
+
+
+
 }
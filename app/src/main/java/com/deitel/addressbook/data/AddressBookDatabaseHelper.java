@@ -2,7 +2,10 @@ package com.deitel.addressbook.data;
 
 import android.database.sqlite.SQLiteOpenHelper;
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+
+import com.deitel.addressbook.R;
 import com.deitel.addressbook.data.DatabaseDescription.Contact;
 
 /**
@@ -19,18 +22,92 @@ class AddressBookDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "AddressBook.db";
 
     //Then we define the Database version number starting at 1.
-    private static final int DATABASE_VERSION = 1;
+    //Every later version has a migration in DatabaseMigrations.MIGRATIONS.
+    //Version 2 added the full-text search table and its triggers.
+    //Version 3 added the sort key column and its index.
+    //Version 4 added the phone key column and its index.
+    //Version 5 added the tombstone column and made the indexes skip deleted contacts.
+    //Version 6 added the section counts table and its triggers.
+    //Version 7 limited the search table's update triggers to the columns it indexes.
+    private static final int DATABASE_VERSION = 7;
+
+
+    //FTS_TABLE_NAME is the full-text search (FTS4) virtual table used by contacts/search queries.
+    //It is an "external content" table: it stores only the search index and reads the column values
+    //from the contacts table, so the contact data is not stored twice. Its docid is the contact's _ID.
+    static final String FTS_TABLE_NAME = Contact.TABLE_NAME + "_fts";
+
+    //SECTIONS_TABLE_NAME holds the number of contacts in each section of the contact list (see
+    //Contact.PATH_SECTIONS), kept up to date by triggers on the contacts table.
+    static final String SECTIONS_TABLE_NAME = Contact.TABLE_NAME + "_sections";
+
+    //The contacts columns that are indexed for searching, in the FTS table's column order.
+    static final String[] FTS_COLUMNS = {Contact.COLUMN_NAME, Contact.COLUMN_EMAIL,
+            Contact.COLUMN_STREET, Contact.COLUMN_CITY, Contact.COLUMN_STATE, Contact.COLUMN_ZIP};
+
+
+
+    //The database uses write-ahead logging (WAL): a write is appended to a separate log file and
+    //readers keep reading the database file, so a save no longer blocks the CursorLoaders reading
+    //the list or a contact at the same moment. Every so often the log is copied back into the
+    //database (a checkpoint). We checkpoint automatically once the log holds
+    //WAL_AUTOCHECKPOINT_PAGES pages, SQLite's own default; Android lowers it to 100 pages, which
+    //checkpoints (and syncs) far more often during an import.
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    //After a checkpoint the log file is truncated to at most this many bytes, so one large
+    //import does not leave a large log file behind.
+    private static final long JOURNAL_SIZE_LIMIT_BYTES = 4 * 1024 * 1024;
+
+
+
+    //migrations runs the schema migrations and backfills of this database.
+    private final DatabaseMigrations migrations;
+
+    //relaxedSync is true if the database syncs to disk only at checkpoints (synchronous=NORMAL)
+    //instead of on every commit. See R.bool.database_relaxed_sync.
+    private final boolean relaxedSync;
 
 
 
     //Then we define our Constructor. Which simply calls the superclass constructor that takes 4 args.
+    //Migration progress is written to logcat.
     public AddressBookDatabaseHelper(Context context){
+        this(context, DatabaseMigrations.LOG_PROGRESS);
+    }
+
+    //This constructor reports migration progress to the given listener instead.
+    AddressBookDatabaseHelper(Context context, DatabaseMigrations.ProgressListener progressListener){
 
         //content = The Context in which the DB is being opened or created.
         //DB name - this can be null if you wish to use an in-memory database.
         //the CursorFactory to use - we put null to indicate that we wish to use the default SQLiteCursorFactory.
         //the DB version number.
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        migrations = new DatabaseMigrations(progressListener);
+        relaxedSync = context.getResources().getBoolean(R.bool.database_relaxed_sync);
+
+        //With WAL enabled, Android also opens a pool of read-only connections next to the one
+        //connection that writes, so queries on different threads (the loaders, the page fetches
+        //of ContactPageList) run in parallel with each other and with a write. The pool's size is
+        //chosen by the platform for the device.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+
+    //onConfigure is called every time the database is opened, before it is created or upgraded.
+    //Here we set the checkpoint policy and, if enabled, the relaxed sync mode.
+    //PRAGMA statements that return their new value must be run as queries.
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES, null);
+        DatabaseUtils.longForQuery(db, "PRAGMA journal_size_limit=" + JOURNAL_SIZE_LIMIT_BYTES, null);
+
+        //In WAL mode synchronous=NORMAL cannot corrupt the database, but a commit is only synced
+        //at the next checkpoint, so the last few saves can be lost if the device loses power.
+        //It is therefore opt-in.
+        if (relaxedSync)
+            db.execSQL("PRAGMA synchronous=NORMAL");
     }
 
 
@@ -55,14 +132,27 @@ class AddressBookDatabaseHelper extends SQLiteOpenHelper {
 
         //Finally we use the "execSQL" command to execute our just-created "CREATE TABLE" command.
         db.execSQL(CREATE_CONTACTS_TABLE);
+
+        //then we bring the new database up to the current version by running every migration,
+        //so new and upgraded databases always end up with exactly the same schema.
+        migrations.upgrade(db, 1, DATABASE_VERSION);
     }
 
 
     //The onUpgrade method is called if the Database on a device is newer version
     //and must be upgraded.
-    //It normally defines how to upgrade the DB when the schema changes. We leave it empty since we dont need to.
+    //It defines how to upgrade the DB when the schema changes. Each schema version has a
+    //DatabaseMigration, and we run the ones between the device's version and ours in order.
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        migrations.upgrade(db, oldVersion, newVersion);
+    }
+
 
+    //runPendingBackfills fills in data for the rows that existed before an upgrade, in small
+    //transactions (see DatabaseMigration.Backfill). It may take a while on large tables, so
+    //AddressBookContentProvider calls it on a background thread.
+    void runPendingBackfills(){
+        migrations.runPendingBackfills(getWritableDatabase());
     }
 }
@@ -0,0 +1,83 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+//ChangeNotifier sends AddressBookContentProvider's change notifications to the ContentResolver.
+//Instead of notifying every change right away, it collects the Uris that changed during a window
+//of windowMillis and then sends them together:
+//- if a single contact changed, only that contact's Uri is notified. The contact list watches the
+//  whole contacts table (and everything under it), so it reloads, but a DetailFragment showing a
+//  different contact does not.
+//- if several contacts (or the whole table) changed, the contacts table Uri is notified once.
+//So a burst of writes causes at most one reload of the contact list per window.
+//The in-memory ContactCache is not part of the window: it is invalidated immediately, so it
+//never serves a contact that was just changed.
+
+final class ChangeNotifier {
+
+
+    private final ContentResolver contentResolver;
+    private final long windowMillis;
+
+    //the Uris that changed since the last flush. Guarded by pending itself.
+    private final Set<Uri> pending = new LinkedHashSet<>();
+
+    //notifications are sent from a background thread, so writers and the UI never wait on them.
+    private final HandlerThread thread;
+    private final Handler handler;
+
+
+    //constructor. A windowMillis of 0 still merges the notifications that are queued before
+    //the notifier's thread gets to them.
+    ChangeNotifier(ContentResolver contentResolver, long windowMillis){
+        this.contentResolver = contentResolver;
+        this.windowMillis = windowMillis;
+
+        thread = new HandlerThread("AddressBookNotifier");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+
+    //notifyChange schedules a notification for uri, which is either Contact.CONTENT_URI or the
+    //Uri of one contact. The first change of a window starts the window.
+    void notifyChange(Uri uri){
+        ContactCache.getInstance().invalidate(uri);
+
+        synchronized (pending){
+            boolean startWindow = pending.isEmpty();
+            pending.add(uri);
+            if (startWindow)
+                handler.postDelayed(flush, windowMillis);
+        }
+    }
+
+
+    //shutdown stops the notifier's thread once the notifications already scheduled are sent.
+    //Changes after that are not notified. Called when the provider is shut down, e.g. by tests.
+    void shutdown(){
+        thread.quitSafely();
+    }
+
+
+    //flush sends the notifications collected during the window that just ended.
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            Uri uri;
+            synchronized (pending){
+                uri = (pending.size() == 1) ? pending.iterator().next() : Contact.CONTENT_URI;
+                pending.clear();
+            }
+            contentResolver.notifyChange(uri, null);
+        }
+    };
+}
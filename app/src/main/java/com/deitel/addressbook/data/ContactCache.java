@@ -0,0 +1,166 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.LruCache;
+
+import com.deitel.addressbook.core.ContactRecord;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//ContactCache keeps the ContactRecords of the most recently used contacts in memory, for the whole
+//process. DetailFragment and AddEditFragment show the same contact one after the other, so the
+//second screen (and any later visit) reads the contact from here instead of from SQLite.
+
+//The cache holds at most MAX_CONTACTS contacts and drops the least recently used one when full.
+//AddressBookContentProvider invalidates the cache as soon as it writes, through ChangeNotifier,
+//so a cached contact is never older than the database. All methods are thread-safe.
+
+public final class ContactCache {
+
+
+    //The maximum number of contacts in the cache. A ContactRecord is a few hundred bytes.
+    private static final int MAX_CONTACTS = 200;
+
+    //the cache shared by the whole process.
+    private static final ContactCache instance = new ContactCache();
+
+
+    //the cached contacts by row ID. LruCache counts the hits and misses of get().
+    private final LruCache<Long, ContactRecord> contacts = new LruCache<>(MAX_CONTACTS);
+
+    //invalidations is incremented by every invalidate. A contact read from the database is only
+    //cached if no invalidation happened while it was being read, since it might already be stale.
+    //The check and the put hold lock, which invalidate holds too, so an invalidation cannot slip in
+    //between them and leave a contact read before the write in the cache. Guarded by lock.
+    private final Object lock = new Object();
+    private int invalidations;
+
+
+    private ContactCache(){
+    }
+
+
+    //getInstance returns the process-wide ContactCache.
+    public static ContactCache getInstance(){
+        return instance;
+    }
+
+
+    //get returns the cached contact with row ID id, or null if it is not in the cache.
+    //Each call counts as a hit or a miss.
+    public ContactRecord get(long id){
+        return contacts.get(id);
+    }
+
+
+    //load reads the contact with row ID id from the AddressBookContentProvider and caches it.
+    //It does not look in the cache first. Returns null if there is no such contact.
+    //load queries the database, so it must not be called on the UI thread.
+    public ContactRecord load(ContentResolver contentResolver, long id){
+
+        int invalidationsBefore = invalidations();
+
+        ContactRecord contact = null;
+        Cursor cursor = contentResolver.query(Contact.buildContactUri(id), Contact.DETAIL_PROJECTION,
+                null, null, null);
+        if (cursor != null){
+            try {
+                if (cursor.moveToFirst())
+                    contact = ContactQueries.readRecord(cursor);
+            }
+            finally {
+                cursor.close();
+            }
+        }
+
+        if (contact != null){
+            synchronized (lock){
+                if (invalidations == invalidationsBefore)
+                    contacts.put(id, contact);
+            }
+        }
+        return contact;
+    }
+
+
+    //prefetch loads the contacts in ids that are not cached yet, with a single query, so they are
+    //in the cache before the user opens one of them. Unlike get, it does not count hits or misses.
+    //Returns the number of contacts loaded. It queries the database, so it must not be called on
+    //the UI thread.
+    public int prefetch(ContentResolver contentResolver, List<Long> ids){
+
+        //snapshot copies the cache, so checking it does not change the contacts' LRU order.
+        Map<Long, ContactRecord> cached = contacts.snapshot();
+        StringBuilder selection = new StringBuilder();
+        for (Long id : ids){
+            if (cached.containsKey(id))
+                continue;
+            selection.append(selection.length() == 0 ? Contact._ID + " IN (" : ",").append(id);
+        }
+        if (selection.length() == 0)
+            return 0;
+        selection.append(')');
+
+        int invalidationsBefore = invalidations();
+
+        List<ContactRecord> loaded = new ArrayList<>();
+        Cursor cursor = contentResolver.query(Contact.CONTENT_URI, Contact.DETAIL_PROJECTION,
+                selection.toString(), null, null);
+        if (cursor != null){
+            try {
+                while (cursor.moveToNext())
+                    loaded.add(ContactQueries.readRecord(cursor));
+            }
+            finally {
+                cursor.close();
+            }
+        }
+
+        synchronized (lock){
+            if (invalidations != invalidationsBefore)
+                return 0;
+            for (ContactRecord contact : loaded)
+                contacts.put(contact.id, contact);
+        }
+        return loaded.size();
+    }
+
+
+    //invalidate removes the contacts that changed at uri from the cache: one contact for a
+    //contact's Uri, every contact for the contacts table Uri.
+    void invalidate(Uri uri){
+        synchronized (lock){
+            invalidations++;
+
+            if (uri.getPathSegments().size() == 2 && Contact.TABLE_NAME.equals(uri.getPathSegments().get(0)))
+                contacts.remove(ContentUris.parseId(uri));
+            else
+                contacts.evictAll();
+        }
+    }
+
+
+    //invalidations returns the number of invalidations so far.
+    private int invalidations(){
+        synchronized (lock){
+            return invalidations;
+        }
+    }
+
+
+    //the number of get calls that found the contact in the cache.
+    public int getHitCount(){
+        return contacts.hitCount();
+    }
+
+    //the number of get calls that did not find the contact in the cache.
+    public int getMissCount(){
+        return contacts.missCount();
+    }
+}
@@ -0,0 +1,250 @@
+package com.deitel.addressbook.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+//ContactExportWriter writes every contact of the database to the write end of a pipe, as a CSV or
+//vCard 3.0 file. AddressBookContentProvider.openFile runs it on its own thread and hands the read
+//end of the pipe to the client, which reads the file as it is being written.
+
+//The contacts are read CHUNK_SIZE at a time, in row ID order, each chunk starting after the last
+//row ID of the previous one. Every chunk is a seek on the table's primary key and fits in one
+//CursorWindow, and each row is written straight into a small buffer in front of the pipe. So an
+//export of any size never holds more than one chunk in memory, and when the client reads slower
+//than we write, the full pipe simply blocks this thread until the client catches up.
+
+//Contacts added during the export have larger row IDs, so they are exported too. Deleted contacts
+//are not exported.
+
+final class ContactExportWriter implements Runnable {
+
+
+    private static final String TAG = "ContactExportWriter";
+
+    //the number of contacts read per query.
+    static final int CHUNK_SIZE = 500;
+
+    //the size of the buffer in front of the pipe.
+    private static final int BUFFER_SIZE = 8192;
+
+    //vCard lines longer than this many bytes are folded (RFC 2426).
+    private static final int VCARD_LINE_OCTETS = 75;
+
+    //the exported columns. _id is only read to find the next chunk.
+    private static final String[] PROJECTION = {Contact._ID, Contact.COLUMN_NAME, Contact.COLUMN_PHONE,
+            Contact.COLUMN_EMAIL, Contact.COLUMN_STREET, Contact.COLUMN_CITY, Contact.COLUMN_STATE,
+            Contact.COLUMN_ZIP};
+
+
+    private final SQLiteDatabase db;
+    private final String format;
+    private final ParcelFileDescriptor output;
+
+
+    //constructor. ContactExportWriter closes output when the export ends.
+    ContactExportWriter(SQLiteDatabase db, String format, ParcelFileDescriptor output){
+        this.db = db;
+        this.format = format;
+        this.output = output;
+    }
+
+
+    //getMimeType returns the MIME type of an export format, or null if the format is unknown.
+    static String getMimeType(String format){
+        if (Contact.FORMAT_CSV.equals(format))
+            return Contact.MIME_TYPE_CSV;
+        if (Contact.FORMAT_VCARD.equals(format))
+            return Contact.MIME_TYPE_VCARD;
+        return null;
+    }
+
+
+    //run writes the export into the pipe and closes it. If the export fails, the pipe is closed
+    //with an error, so the client gets an IOException instead of a file that looks complete.
+    @Override
+    public void run() {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(output.getFileDescriptor()), "UTF-8"), BUFFER_SIZE);
+            write(db, format, writer);
+            writer.flush();
+            output.close();
+        }
+        catch (IOException | RuntimeException e){
+            //an IOException is most likely the client closing the pipe before reading everything.
+            Log.w(TAG, "Export failed", e);
+            try {
+                output.closeWithError(String.valueOf(e.getMessage()));
+            }
+            catch (IOException ignored){
+            }
+        }
+    }
+
+
+    //write writes every contact of db to writer in format, which must be FORMAT_CSV or FORMAT_VCARD.
+    static void write(SQLiteDatabase db, String format, Writer writer) throws IOException {
+
+        boolean csv = Contact.FORMAT_CSV.equals(format);
+        if (csv)
+            writeCsvRecord(writer, new String[]{Contact.COLUMN_NAME, Contact.COLUMN_PHONE,
+                    Contact.COLUMN_EMAIL, Contact.COLUMN_STREET, Contact.COLUMN_CITY,
+                    Contact.COLUMN_STATE, Contact.COLUMN_ZIP});
+
+        String[] fields = new String[PROJECTION.length - 1];
+        long lastId = 0; //row IDs start at 1
+        while (true){
+            Cursor cursor = db.query(Contact.TABLE_NAME, PROJECTION,
+                    Contact._ID + " > " + lastId + " AND " + ContactQueries.NOT_DELETED,
+                    null, null, null, Contact._ID + " ASC", String.valueOf(CHUNK_SIZE));
+            int rows;
+            try {
+                rows = cursor.getCount();
+                while (cursor.moveToNext()){
+                    lastId = cursor.getLong(0);
+                    for (int i = 0; i < fields.length; i++)
+                        fields[i] = cursor.getString(i + 1);
+
+                    if (csv)
+                        writeCsvRecord(writer, fields);
+                    else
+                        writeVCard(writer, fields);
+                }
+            }
+            finally {
+                cursor.close();
+            }
+
+            if (rows < CHUNK_SIZE)
+                return;
+        }
+    }
+
+
+    //writeCsvRecord writes one line of a CSV file (RFC 4180). Fields containing a comma, a quote
+    //or a line break are quoted, and their quotes doubled. null is written as an empty field.
+    private static void writeCsvRecord(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++){
+            if (i != 0)
+                writer.write(',');
+
+            String field = fields[i];
+            if (field == null)
+                continue;
+            if (field.indexOf(',') == -1 && field.indexOf('"') == -1 &&
+                    field.indexOf('\r') == -1 && field.indexOf('\n') == -1){
+                writer.write(field);
+                continue;
+            }
+
+            writer.write('"');
+            for (int c = 0; c < field.length(); c++){
+                char ch = field.charAt(c);
+                if (ch == '"')
+                    writer.write('"');
+                writer.write(ch);
+            }
+            writer.write('"');
+        }
+        writer.write("\r\n");
+    }
+
+
+    //writeVCard writes a contact as a vCard 3.0. fields are the columns of PROJECTION after _id.
+    //The contacts table only has a full name, so N (which vCard 3.0 requires) holds the whole name
+    //as the family name; VCardParser reads FN first, so an exported file imports unchanged.
+    private static void writeVCard(Writer writer, String[] fields) throws IOException {
+        writer.write("BEGIN:VCARD\r\nVERSION:3.0\r\n");
+        writeProperty(writer, "FN", fields[0]);
+        writeProperty(writer, "N", new String[]{fields[0], null, null, null, null});
+        writeProperty(writer, "TEL", fields[1]);
+        writeProperty(writer, "EMAIL;TYPE=INTERNET", fields[2]);
+        if (fields[3] != null || fields[4] != null || fields[5] != null || fields[6] != null)
+            writeProperty(writer, "ADR", new String[]{null, null, fields[3], fields[4], fields[5], fields[6], null});
+        writer.write("END:VCARD\r\n");
+    }
+
+
+    //writeProperty writes a property with a single text value, unless the value is null or empty.
+    private static void writeProperty(Writer writer, String name, String value) throws IOException {
+        if (value != null && !value.isEmpty())
+            writeProperty(writer, name, new String[]{value});
+    }
+
+
+    //writeProperty writes a property whose value consists of ';'-separated fields, escaping the
+    //fields and folding the line every VCARD_LINE_OCTETS bytes. A fold never splits a character.
+    private static void writeProperty(Writer writer, String name, String[] values) throws IOException {
+        writer.write(name);
+        writer.write(':');
+        int octets = name.length() + 1;
+
+        for (int v = 0; v < values.length; v++){
+            if (v != 0)
+                octets = writeFolded(writer, ";", octets);
+            String value = values[v];
+            if (value == null)
+                continue;
+
+            for (int i = 0; i < value.length(); i++){
+                char c = value.charAt(i);
+                String text;
+                if (c == '\\' || c == ',' || c == ';')
+                    text = "\\" + c;
+                else if (c == '\n')
+                    text = "\\n";
+                else if (c == '\r')
+                    continue; //"\r\n" becomes "\n"
+                else if (Character.isHighSurrogate(c) && i + 1 < value.length()){
+                    text = value.substring(i, i + 2); //a surrogate pair is one character
+                    i++;
+                }
+                else
+                    text = String.valueOf(c);
+                octets = writeFolded(writer, text, octets);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+
+    //writeFolded writes text to a line that already holds octets bytes, first starting a folded
+    //continuation line if text would not fit. Returns the number of bytes now on the line.
+    private static int writeFolded(Writer writer, String text, int octets) throws IOException {
+        int length = utf8Length(text);
+        if (octets + length > VCARD_LINE_OCTETS){
+            writer.write("\r\n ");
+            octets = 1;
+        }
+        writer.write(text);
+        return octets + length;
+    }
+
+
+    //utf8Length returns the number of bytes text takes in UTF-8.
+    private static int utf8Length(String text){
+        int length = 0;
+        for (int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (c < 0x80)
+                length += 1;
+            else if (c < 0x800)
+                length += 2;
+            else if (Character.isSurrogate(c))
+                length += 2; //a surrogate pair takes 4 bytes
+            else
+                length += 3;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,125 @@
+package com.deitel.addressbook.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import com.deitel.addressbook.core.ContactRecord;
+import com.deitel.addressbook.core.PageKeys;
+import com.deitel.addressbook.core.PhoneKeys;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+//ContactQueries builds the parts of the contacts queries that AddressBookContentProvider and the
+//query plan tests have in common, so the tests check exactly the SQL the provider runs.
+
+final class ContactQueries {
+
+
+    //NOT_DELETED selects the contacts that have not been deleted (see Contact.COLUMN_DELETED_AT).
+    //The sort key and phone key indexes only hold these contacts, and SQLite uses such a partial
+    //index only if the query's WHERE clause contains this exact condition.
+    static final String NOT_DELETED = Contact.COLUMN_DELETED_AT + " IS NULL";
+
+
+    //sectionOf returns the SQL expression for the section (see Contact.COLUMN_SECTION) of a contact
+    //whose row is referred to by table, e.g. "new" in a trigger. A sort key that is still null
+    //(its backfill has not reached the contact yet) is in the same section as an empty one.
+    static String sectionOf(String table){
+        return "coalesce(substr(" + table + "." + Contact.COLUMN_SORT_KEY + ", 1, 1), '')";
+    }
+
+
+    private ContactQueries(){
+    }
+
+
+    //readRecord reads the contact in the row cursor is positioned on, which must contain the
+    //columns of Contact.DETAIL_PROJECTION.
+    static ContactRecord readRecord(Cursor cursor){
+        return new ContactRecord(
+                cursor.getLong(cursor.getColumnIndex(Contact._ID)),
+                cursor.getString(cursor.getColumnIndex(Contact.COLUMN_NAME)),
+                cursor.getString(cursor.getColumnIndex(Contact.COLUMN_PHONE)),
+                cursor.getString(cursor.getColumnIndex(Contact.COLUMN_EMAIL)),
+                cursor.getString(cursor.getColumnIndex(Contact.COLUMN_STREET)),
+                cursor.getString(cursor.getColumnIndex(Contact.COLUMN_CITY)),
+                cursor.getString(cursor.getColumnIndex(Contact.COLUMN_STATE)),
+                cursor.getString(cursor.getColumnIndex(Contact.COLUMN_ZIP)));
+    }
+
+
+    //appendPageBounds adds the keyset conditions of a paged query to the WHERE clause.
+    //afterKey and untilKey are page keys created by Contact.buildPageKey, or null for an open bound.
+    //Throws IllegalArgumentException if a key is malformed (see PageKeys).
+    static void appendPageBounds(SQLiteQueryBuilder queryBuilder, String afterKey, String untilKey){
+
+        if (afterKey != null)
+            appendKeyCondition(queryBuilder, afterKey, ">", ">");
+
+        if (untilKey != null){
+            if (afterKey != null)
+                queryBuilder.appendWhere(" AND ");
+            appendKeyCondition(queryBuilder, untilKey, "<", "<=");
+        }
+    }
+
+
+    //appendKeyCondition appends
+    //"sort_key <keyOp>= key.sortKey AND (sort_key <keyOp> key.sortKey OR _id <idOp> key.id)".
+    //A row is after the key (sortKey, id) if its sort key is greater, or if it has the same sort key
+    //and a larger row ID. The first condition alone is a range on the sort key index, which lets
+    //SQLite seek straight to the start of the page; the second removes the rows at the boundary
+    //that belong to the neighboring page. The sort key is escaped since it comes from a Uri.
+    private static void appendKeyCondition(SQLiteQueryBuilder queryBuilder, String key,
+                                           String keyOperator, String idOperator){
+
+        long id = PageKeys.idOf(key);
+        String sortKey = PageKeys.sortKeyOf(key);
+
+        queryBuilder.appendWhere("(" + Contact.COLUMN_SORT_KEY + " " + keyOperator + "= ");
+        queryBuilder.appendWhereEscapeString(sortKey);
+        queryBuilder.appendWhere(" AND (" + Contact.COLUMN_SORT_KEY + " " + keyOperator + " ");
+        queryBuilder.appendWhereEscapeString(sortKey);
+        queryBuilder.appendWhere(" OR " + Contact._ID + " " + idOperator + " " + id + "))");
+    }
+
+
+    //appendPhoneLookup adds the conditions of a phone number lookup to the WHERE clause. phoneKey is
+    //the PhoneKeys key of the looked-up number. A contact matches if one of the two numbers ends
+    //with the other: "555-010-0000" matches "+1 555 010 0000" and the other way around. Both keys
+    //must then have the same first PhoneKeys.MIN_MATCH_DIGITS digits, which is a range on the phone
+    //key index: "key >= 0000010 AND key < 000001:" (':' follows '9'). Keys shorter than
+    //MIN_MATCH_DIGITS only match exactly.
+    static void appendPhoneLookup(SQLiteQueryBuilder queryBuilder, String phoneKey){
+
+        if (phoneKey.length() < PhoneKeys.MIN_MATCH_DIGITS){
+            queryBuilder.appendWhere(Contact.COLUMN_PHONE_KEY + " = ");
+            queryBuilder.appendWhereEscapeString(phoneKey);
+            return;
+        }
+
+        String prefix = phoneKey.substring(0, PhoneKeys.MIN_MATCH_DIGITS);
+        String prefixEnd = prefix.substring(0, prefix.length() - 1) +
+                (char) (prefix.charAt(prefix.length() - 1) + 1);
+
+        queryBuilder.appendWhere(Contact.COLUMN_PHONE_KEY + " >= ");
+        queryBuilder.appendWhereEscapeString(prefix);
+        queryBuilder.appendWhere(" AND " + Contact.COLUMN_PHONE_KEY + " < ");
+        queryBuilder.appendWhereEscapeString(prefixEnd);
+
+        //within the range, the shorter key must be a prefix of the longer one.
+        queryBuilder.appendWhere(" AND (substr(" + Contact.COLUMN_PHONE_KEY + ", 1, " + phoneKey.length() + ") = ");
+        queryBuilder.appendWhereEscapeString(phoneKey);
+        queryBuilder.appendWhere(" OR " + Contact.COLUMN_PHONE_KEY + " = substr(");
+        queryBuilder.appendWhereEscapeString(phoneKey);
+        queryBuilder.appendWhere(", 1, length(" + Contact.COLUMN_PHONE_KEY + ")))");
+    }
+
+
+    //phoneLookupSortOrder returns the sort order of a phone lookup for phoneKey: the contacts whose
+    //number is exactly the looked-up one first, then the others in list order.
+    static String phoneLookupSortOrder(String phoneKey){
+        return "(" + Contact.COLUMN_PHONE_KEY + " = " + DatabaseUtils.sqlEscapeString(phoneKey) + ") DESC, " +
+                Contact.PAGE_SORT_ORDER;
+    }
+}
@@ -4,6 +4,8 @@ import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
+import com.deitel.addressbook.core.PageKeys;
+
 /**
  * Created by Yevgeniy on 6/30/2017.
  */
@@ -52,6 +54,134 @@ public class DatabaseDescription {
         public static final String COLUMN_STATE = "state";
         public static final String COLUMN_ZIP = "zip";
 
+        //COLUMN_SORT_KEY holds a normalized copy of the name that the contact list is sorted by:
+        //lower case, without accents and without a leading "The". The provider sets it whenever
+        //the name is inserted or updated.
+        public static final String COLUMN_SORT_KEY = "sort_key";
+
+        //COLUMN_PHONE_KEY holds the digits of the phone number in reverse order, so numbers that end
+        //in the same digits have keys that start with them. The provider sets it whenever the phone
+        //number is inserted or updated, and phone lookups (see buildPhoneLookupUri) search its index.
+        public static final String COLUMN_PHONE_KEY = "phone_key";
+
+        //COLUMN_DELETED_AT is null for a live contact. Deleting a contact only sets it to the time of
+        //the delete (a "tombstone"), and every query, update and export skips tombstoned contacts, so
+        //a delete can be undone with METHOD_RESTORE. METHOD_PURGE removes old tombstones for good.
+        public static final String COLUMN_DELETED_AT = "deleted_at";
+
+
+        //Query parameters that turn a query on CONTENT_URI into a paged (keyset) query.
+        //Rows are ordered by PAGE_SORT_ORDER and a page is described by the key of the row it starts
+        //after and, optionally, the key of the last row it may contain, instead of by an OFFSET.
+        //SQLite has to step over every skipped row to apply an OFFSET, so deep pages get slower as the
+        //table grows. A key lets it seek straight to the first row of the page.
+        public static final String PARAM_AFTER = "after"; //exclusive lower bound, a page key
+        public static final String PARAM_UNTIL = "until"; //inclusive upper bound, a page key
+        public static final String PARAM_LIMIT = "limit"; //maximum number of rows in the page
+
+        //The path segment of search Uris, see buildSearchUri.
+        public static final String PATH_SEARCH = "search";
+
+        //Search results contain an extra column, COLUMN_SEARCH_RANK, which is lower for better matches.
+        //It is the index of the first column the query matched in (0 for the name), so contacts
+        //matching by name come before contacts matching by e-mail or address.
+        public static final String COLUMN_SEARCH_RANK = "search_rank";
+
+        //The path segment of Uris that stand for a set of contacts, see buildContactsUri.
+        public static final String PATH_IDS = "ids";
+
+        //The path segment of the sections Uri, see buildSectionsUri. Its rows are the sections of the
+        //contact list, in list order: COLUMN_SECTION is the first character of the sort keys of the
+        //section's contacts (empty for contacts without a name) and COLUMN_SECTION_COUNT the number
+        //of contacts in it. A section's first list position is the sum of the counts before it.
+        public static final String PATH_SECTIONS = "sections";
+        public static final String COLUMN_SECTION = "section";
+        public static final String COLUMN_SECTION_COUNT = "section_count";
+
+        //The path segment of phone lookup Uris, see buildPhoneLookupUri.
+        public static final String PATH_PHONE_LOOKUP = "phone_lookup";
+
+        //The path segment of export Uris, see buildExportUri, and the formats they can export.
+        //Opening an export Uri with ContentResolver.openInputStream streams every contact in
+        //the chosen format, in the order the contacts were added.
+        public static final String PATH_EXPORT = "export";
+        public static final String PARAM_FORMAT = "format";
+        public static final String FORMAT_CSV = "csv";
+        public static final String FORMAT_VCARD = "vcf";
+
+        //the MIME types of the export formats, returned by ContentResolver.getType.
+        public static final String MIME_TYPE_CSV = "text/csv";
+        public static final String MIME_TYPE_VCARD = "text/vcard";
+
+        //The path segment of the duplicates Uri, see buildDuplicatesUri. Its rows are the contacts
+        //that are probably duplicates of each other, with an extra column, COLUMN_DUPLICATE_GROUP:
+        //the row ID of the first contact of the row's group of duplicates. Rows are sorted by group.
+        public static final String PATH_DUPLICATES = "duplicates";
+        public static final String COLUMN_DUPLICATE_GROUP = "duplicate_group";
+
+        //METHOD_MERGE is the ContentResolver.call method that merges duplicate contacts. Its extras
+        //hold the row IDs of the contacts to merge under EXTRA_IDS (a long[]). The first contact is
+        //kept and gets the details the others have and it lacks; the others are deleted. The result
+        //holds the number of contacts deleted under EXTRA_MERGED_COUNT.
+        public static final String METHOD_MERGE = "merge";
+        public static final String EXTRA_IDS = "ids";
+        public static final String EXTRA_MERGED_COUNT = "merged_count";
+
+        //METHOD_RESTORE is the ContentResolver.call method that undoes the delete of the contacts whose
+        //row IDs are in its extras under EXTRA_IDS. The result holds the number of contacts restored
+        //under EXTRA_RESTORED_COUNT; contacts whose tombstone was already purged cannot be restored.
+        public static final String METHOD_RESTORE = "restore";
+        public static final String EXTRA_RESTORED_COUNT = "restored_count";
+
+        //METHOD_PURGE is the ContentResolver.call method that removes up to PURGE_BATCH_SIZE contacts
+        //deleted more than TOMBSTONE_RETENTION_MILLIS ago, in one short transaction. The result holds
+        //the number of contacts removed under EXTRA_PURGED_COUNT; call it again until that is less
+        //than PURGE_BATCH_SIZE.
+        public static final String METHOD_PURGE = "purge";
+        public static final String EXTRA_PURGED_COUNT = "purged_count";
+        public static final int PURGE_BATCH_SIZE = 200;
+        public static final long TOMBSTONE_RETENTION_MILLIS = 24 * 60 * 60 * 1000;
+
+        //METHOD_METRICS is the ContentResolver.call method that returns the provider's operation
+        //metrics since it started. The result holds a Bundle for every operation that has run on a
+        //Uri pattern, under a key such as "query contacts" or "update contact_set". Each holds the
+        //number of operations under METRIC_COUNT, the rows they returned or changed under METRIC_ROWS
+        //and their latency percentiles, in microseconds, under the METRIC_LATENCY_ keys. Queries also
+        //hold the percentiles of the time spent filling their Cursor under the METRIC_FILL_ keys.
+        public static final String METHOD_METRICS = "metrics";
+        public static final String METRIC_COUNT = "count";
+        public static final String METRIC_ROWS = "rows";
+        public static final String METRIC_LATENCY_P50 = "latency_p50_us";
+        public static final String METRIC_LATENCY_P90 = "latency_p90_us";
+        public static final String METRIC_LATENCY_P99 = "latency_p99_us";
+        public static final String METRIC_LATENCY_MAX = "latency_max_us";
+        public static final String METRIC_FILL_P50 = "fill_p50_us";
+        public static final String METRIC_FILL_P90 = "fill_p90_us";
+        public static final String METRIC_FILL_P99 = "fill_p99_us";
+        public static final String METRIC_FILL_MAX = "fill_max_us";
+
+        //The sort order used by paged queries. _ID breaks ties between contacts with the same sort key
+        //so every row has a unique position in the list.
+        public static final String PAGE_SORT_ORDER = COLUMN_SORT_KEY + " ASC, " + _ID + " ASC";
+
+
+        //Projection profiles: the columns each screen reads. Queries should ask for one of these
+        //instead of a null projection, so no column is copied into the CursorWindow only to be ignored.
+
+        //LIST_PROJECTION is what the contact list displays, plus the sort key its page keys are made
+        //of. These columns are all in the sort key index, so a page is read from the index alone.
+        public static final String[] LIST_PROJECTION = {_ID, COLUMN_NAME, COLUMN_SORT_KEY};
+
+        //DETAIL_PROJECTION is every detail of a contact, as shown by the detail and edit screens.
+        //It is also what a query with a null projection returns.
+        public static final String[] DETAIL_PROJECTION = {_ID, COLUMN_NAME, COLUMN_PHONE, COLUMN_EMAIL,
+                COLUMN_STREET, COLUMN_CITY, COLUMN_STATE, COLUMN_ZIP};
+
+
+        //DUPLICATES_PROJECTION is what a query of the duplicates Uri with a null projection returns.
+        public static final String[] DUPLICATES_PROJECTION = {_ID, COLUMN_DUPLICATE_GROUP, COLUMN_NAME,
+                COLUMN_PHONE, COLUMN_EMAIL, COLUMN_STREET, COLUMN_CITY, COLUMN_STATE, COLUMN_ZIP};
+
 
         //We also create a method buildContactUri which will be used to create a Uri
         //for a specific contact in the database table.
@@ -62,6 +192,72 @@ public class DatabaseDescription {
             //in its first argument.
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
+
+
+        //buildContactsUri creates a Uri for the contacts with the given row IDs, e.g.
+        //content://com.deitel.addressbook.data/contacts/ids/3,5,8. Updating or deleting it changes
+        //all of them in one transaction, with one change notification for the whole set.
+        public static Uri buildContactsUri(long... ids){
+            StringBuilder idList = new StringBuilder();
+            for (long id : ids){
+                if (idList.length() != 0)
+                    idList.append(',');
+                idList.append(id);
+            }
+            return CONTENT_URI.buildUpon().appendPath(PATH_IDS).appendPath(idList.toString()).build();
+        }
+
+        //buildSearchUri creates a Uri that searches the name, e-mail and address of every contact for
+        //the words in query. Each word matches any word in the contact that starts with it, so
+        //"jo sm" finds "John Smith".
+        public static Uri buildSearchUri(String query){
+            return CONTENT_URI.buildUpon().appendPath(PATH_SEARCH).appendPath(query).build();
+        }
+
+        //buildPhoneLookupUri creates a Uri that finds the contacts with the phone number number, the
+        //way an incoming call is matched to a contact. Only the digits count, and numbers match if
+        //their last 7 digits agree and one ends with the other, so "555-010-0000" finds a contact
+        //saved as "+1 (555) 010-0000". Exact matches come first.
+        public static Uri buildPhoneLookupUri(String number){
+            return CONTENT_URI.buildUpon().appendPath(PATH_PHONE_LOOKUP).appendPath(number).build();
+        }
+
+        //buildExportUri creates a Uri to open with ContentResolver.openInputStream to read every
+        //contact as a FORMAT_CSV or FORMAT_VCARD file.
+        public static Uri buildExportUri(String format){
+            return CONTENT_URI.buildUpon().appendPath(PATH_EXPORT)
+                    .appendQueryParameter(PARAM_FORMAT, format).build();
+        }
+
+        //buildSectionsUri creates the Uri that lists the sections of the contact list.
+        public static Uri buildSectionsUri(){
+            return CONTENT_URI.buildUpon().appendPath(PATH_SECTIONS).build();
+        }
+
+        //buildDuplicatesUri creates the Uri that lists the groups of duplicate contacts.
+        public static Uri buildDuplicatesUri(){
+            return CONTENT_URI.buildUpon().appendPath(PATH_DUPLICATES).build();
+        }
+
+        //buildPageKey creates the page key for a row from its sort key and row ID. The ID comes last
+        //so the sort key itself may contain commas.
+        public static String buildPageKey(String sortKey, long id){
+            return PageKeys.build(sortKey, id);
+        }
+
+        //buildPageUri creates a Uri for a page of the contact list. afterKey and untilKey are page keys
+        //created by buildPageKey, or null for an open bound. A limit of zero or less means no limit.
+        public static Uri buildPageUri(String afterKey, String untilKey, int limit){
+
+            Uri.Builder builder = CONTENT_URI.buildUpon();
+            if (afterKey != null)
+                builder.appendQueryParameter(PARAM_AFTER, afterKey);
+            if (untilKey != null)
+                builder.appendQueryParameter(PARAM_UNTIL, untilKey);
+            if (limit > 0)
+                builder.appendQueryParameter(PARAM_LIMIT, String.valueOf(limit));
+            return builder.build();
+        }
     }
 
 }
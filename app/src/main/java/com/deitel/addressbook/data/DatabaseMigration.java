@@ -0,0 +1,56 @@
+package com.deitel.addressbook.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+//DatabaseMigration is one step of the database's upgrade path. Each migration upgrades the schema
+//from (version - 1) to version. DatabaseMigrations runs the steps in order, each in its own
+//transaction, when AddressBookDatabaseHelper creates or upgrades the database.
+
+//A migration that has to rewrite every existing row (for example to fill in a new column) returns a
+//Backfill. Schema changes run inside SQLiteOpenHelper's upgrade transaction, which holds the database's
+//write lock until the whole upgrade commits. A backfill instead runs after the upgrade, in small chunks
+//that each commit on their own, so other readers and writers get the database between chunks.
+
+abstract class DatabaseMigration {
+
+
+    //version is the schema version this migration upgrades the database to.
+    final int version;
+
+    //name describes the migration in progress reports.
+    final String name;
+
+
+    //constructor
+    DatabaseMigration(int version, String name){
+        this.version = version;
+        this.name = name;
+    }
+
+
+    //migrate applies the migration's schema changes. It runs inside a transaction, so if it throws,
+    //the database is left at the previous version.
+    abstract void migrate(SQLiteDatabase db);
+
+
+    //createBackfill returns the Backfill that fills in data for existing rows after migrate has run,
+    //or null if the migration does not need one.
+    Backfill createBackfill(){
+        return null;
+    }
+
+
+
+    //Backfill processes the rows of a table in chunks ordered by row ID. DatabaseMigrations remembers
+    //the ID of the last row of every committed chunk, so an interrupted backfill resumes where it stopped.
+    abstract static class Backfill{
+
+        //countRemaining returns the number of rows with an ID greater than afterId that still have
+        //to be processed. It is only used for progress reports.
+        abstract int countRemaining(SQLiteDatabase db, long afterId);
+
+        //backfill processes up to limit rows with an ID greater than afterId, in ID order, and returns
+        //the ID of the last row processed or -1 if there were no rows left.
+        abstract long backfill(SQLiteDatabase db, long afterId, int limit);
+    }
+}
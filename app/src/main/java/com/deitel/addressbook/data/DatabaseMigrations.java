@@ -0,0 +1,472 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.deitel.addressbook.core.PhoneKeys;
+import com.deitel.addressbook.core.SortKeys;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+//DatabaseMigrations holds the ordered list of DatabaseMigrations and runs them.
+//AddressBookDatabaseHelper calls upgrade when the database is created or upgraded, and
+//runPendingBackfills once the upgrade has committed. Every step is timed and reported to a
+//ProgressListener.
+
+//To change the schema, add a DatabaseMigration for the next version to the end of MIGRATIONS and
+//increase AddressBookDatabaseHelper.DATABASE_VERSION. Never change a migration that has shipped.
+
+final class DatabaseMigrations {
+
+
+    //ProgressListener is told about the progress of migrations and backfills.
+    interface ProgressListener{
+
+        //called when a migration's schema changes were applied.
+        void onMigrationFinished(DatabaseMigration migration, long elapsedMillis);
+
+        //called after every committed backfill chunk with the number of rows processed so far
+        //and the number of rows that had to be processed when the backfill (re)started.
+        void onBackfillProgress(DatabaseMigration migration, int rowsDone, int rowsTotal);
+
+        //called when a backfill has processed every row.
+        void onBackfillFinished(DatabaseMigration migration, long elapsedMillis);
+    }
+
+
+    //LOG_PROGRESS is the default ProgressListener. It writes every report to logcat.
+    static final ProgressListener LOG_PROGRESS = new ProgressListener() {
+        @Override
+        public void onMigrationFinished(DatabaseMigration migration, long elapsedMillis) {
+            Log.i(TAG, "Migration to version " + migration.version + " (" + migration.name +
+                    ") took " + elapsedMillis + " ms");
+        }
+
+        @Override
+        public void onBackfillProgress(DatabaseMigration migration, int rowsDone, int rowsTotal) {
+            Log.i(TAG, "Backfill for version " + migration.version + ": " + rowsDone + "/" + rowsTotal);
+        }
+
+        @Override
+        public void onBackfillFinished(DatabaseMigration migration, long elapsedMillis) {
+            Log.i(TAG, "Backfill for version " + migration.version + " (" + migration.name +
+                    ") took " + elapsedMillis + " ms");
+        }
+    };
+
+
+    private static final String TAG = "DatabaseMigrations";
+
+    //The number of rows a backfill processes per transaction.
+    static final int BACKFILL_CHUNK_SIZE = 500;
+
+    //PENDING_BACKFILLS_TABLE records the backfills that have not finished yet: the version of the
+    //migration that needs it and the ID of the last row it processed.
+    static final String PENDING_BACKFILLS_TABLE = "pending_backfills";
+    private static final String COLUMN_VERSION = "version";
+    private static final String COLUMN_LAST_ID = "last_id";
+
+
+    //MIGRATIONS lists every migration in version order, starting at version 2.
+    //Version 1 is the contacts table created by AddressBookDatabaseHelper.onCreate.
+    static final DatabaseMigration[] MIGRATIONS = {
+            new SearchTableMigration(),
+            new SortKeyMigration(),
+            new PhoneKeyMigration(),
+            new TombstoneMigration(),
+            new SectionCountsMigration(),
+            new SearchTriggerColumnsMigration()
+    };
+
+
+    private final ProgressListener listener;
+    private final DatabaseMigration[] migrations;
+
+    //constructor, runs the app's MIGRATIONS.
+    DatabaseMigrations(ProgressListener listener){
+        this(listener, MIGRATIONS);
+    }
+
+    //this constructor runs the given migrations instead, which must be in version order.
+    DatabaseMigrations(ProgressListener listener, DatabaseMigration[] migrations){
+        this.listener = listener;
+        this.migrations = migrations;
+    }
+
+
+
+    //upgrade runs every migration after oldVersion up to newVersion in order. Each migration runs in
+    //its own (nested) transaction. SQLiteOpenHelper runs onUpgrade inside a transaction too, so if any
+    //migration fails, the whole upgrade is rolled back and retried the next time the database opens.
+    void upgrade(SQLiteDatabase db, int oldVersion, int newVersion){
+
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + PENDING_BACKFILLS_TABLE + "(" +
+                COLUMN_VERSION + " integer primary key, " +
+                COLUMN_LAST_ID + " integer not null);");
+
+        for (DatabaseMigration migration : migrations){
+            if (migration.version <= oldVersion || migration.version > newVersion)
+                continue;
+
+            long start = SystemClock.elapsedRealtime();
+            db.beginTransaction();
+            try {
+                migration.migrate(db);
+
+                //remember the backfill so runPendingBackfills processes the existing rows.
+                if (migration.createBackfill() != null){
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_VERSION, migration.version);
+                    values.put(COLUMN_LAST_ID, 0);
+                    db.insertOrThrow(PENDING_BACKFILLS_TABLE, null, values);
+                }
+                db.setTransactionSuccessful();
+            }
+            finally {
+                db.endTransaction();
+            }
+            listener.onMigrationFinished(migration, SystemClock.elapsedRealtime() - start);
+        }
+    }
+
+
+
+    //runPendingBackfills runs every backfill recorded by upgrade that has not finished yet.
+    //Each chunk of BACKFILL_CHUNK_SIZE rows commits in its own transaction together with the ID of
+    //its last row, so the write lock is only held for one chunk at a time.
+    void runPendingBackfills(SQLiteDatabase db){
+
+        //databases that never ran upgrade have nothing to backfill.
+        if (DatabaseUtils.queryNumEntries(db, "sqlite_master", "type = 'table' AND name = ?",
+                new String[]{PENDING_BACKFILLS_TABLE}) == 0)
+            return;
+
+        for (DatabaseMigration migration : migrations){
+            DatabaseMigration.Backfill backfill = migration.createBackfill();
+            if (backfill == null)
+                continue;
+
+            Cursor pending = db.query(PENDING_BACKFILLS_TABLE, new String[]{COLUMN_LAST_ID},
+                    COLUMN_VERSION + " = " + migration.version, null, null, null, null);
+            long lastId;
+            try {
+                if (!pending.moveToFirst())
+                    continue;
+                lastId = pending.getLong(0);
+            }
+            finally {
+                pending.close();
+            }
+
+            runBackfill(db, migration, backfill, lastId);
+        }
+    }
+
+
+    //runBackfill processes the rows after lastId chunk by chunk until none are left.
+    private void runBackfill(SQLiteDatabase db, DatabaseMigration migration,
+                             DatabaseMigration.Backfill backfill, long lastId){
+
+        long start = SystemClock.elapsedRealtime();
+        int rowsTotal = backfill.countRemaining(db, lastId);
+        int rowsDone = 0;
+        String whereVersion = COLUMN_VERSION + " = " + migration.version;
+
+        while (true){
+            db.beginTransaction();
+            try {
+                long chunkLastId = backfill.backfill(db, lastId, BACKFILL_CHUNK_SIZE);
+
+                //no rows left, so the backfill is done.
+                if (chunkLastId < 0){
+                    db.delete(PENDING_BACKFILLS_TABLE, whereVersion, null);
+                    db.setTransactionSuccessful();
+                    break;
+                }
+
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_LAST_ID, chunkLastId);
+                db.update(PENDING_BACKFILLS_TABLE, values, whereVersion, null);
+                db.setTransactionSuccessful();
+                lastId = chunkLastId;
+            }
+            finally {
+                db.endTransaction();
+            }
+
+            rowsDone = Math.min(rowsDone + BACKFILL_CHUNK_SIZE, rowsTotal);
+            listener.onBackfillProgress(migration, rowsDone, rowsTotal);
+        }
+        listener.onBackfillFinished(migration, SystemClock.elapsedRealtime() - start);
+    }
+
+
+
+
+    //Version 2 adds the full-text search table used by contacts/search queries (see
+    //AddressBookDatabaseHelper.FTS_TABLE_NAME) and the triggers that keep it in sync.
+    //Its "rebuild" command indexes the contacts that already exist.
+    static final class SearchTableMigration extends DatabaseMigration{
+
+        SearchTableMigration(){
+            super(2, "full-text search table");
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+
+            String ftsTable = AddressBookDatabaseHelper.FTS_TABLE_NAME;
+            String columns = TextUtils.join(", ", AddressBookDatabaseHelper.FTS_COLUMNS);
+            String newValues = "new." + TextUtils.join(", new.", AddressBookDatabaseHelper.FTS_COLUMNS);
+
+            //An external content table must be told about every change: the old values are removed
+            //from the index before a row is updated or deleted, and the new values are added after
+            //a row is inserted or updated.
+            db.execSQL("CREATE VIRTUAL TABLE " + ftsTable + " USING fts4(" +
+                    columns + ", content=\"" + Contact.TABLE_NAME + "\");");
+
+            db.execSQL("CREATE TRIGGER " + ftsTable + "_before_update BEFORE UPDATE ON " +
+                    Contact.TABLE_NAME + " BEGIN DELETE FROM " + ftsTable +
+                    " WHERE docid = old." + Contact._ID + "; END;");
+            db.execSQL("CREATE TRIGGER " + ftsTable + "_before_delete BEFORE DELETE ON " +
+                    Contact.TABLE_NAME + " BEGIN DELETE FROM " + ftsTable +
+                    " WHERE docid = old." + Contact._ID + "; END;");
+            db.execSQL("CREATE TRIGGER " + ftsTable + "_after_update AFTER UPDATE ON " +
+                    Contact.TABLE_NAME + " BEGIN INSERT INTO " + ftsTable + "(docid, " + columns +
+                    ") VALUES (new." + Contact._ID + ", " + newValues + "); END;");
+            db.execSQL("CREATE TRIGGER " + ftsTable + "_after_insert AFTER INSERT ON " +
+                    Contact.TABLE_NAME + " BEGIN INSERT INTO " + ftsTable + "(docid, " + columns +
+                    ") VALUES (new." + Contact._ID + ", " + newValues + "); END;");
+
+            db.execSQL("INSERT INTO " + ftsTable + "(" + ftsTable + ") VALUES ('rebuild');");
+        }
+    }
+
+
+
+
+    //Version 3 adds the sort key column and the index the contact list is read through.
+    //The index covers every column the list needs (sort key, _ID and name), so the list is read
+    //from the index alone, already in order. Its backfill computes the sort key of existing contacts.
+    static final class SortKeyMigration extends DatabaseMigration{
+
+        static final String INDEX_NAME = Contact.TABLE_NAME + "_sort_key";
+
+        SortKeyMigration(){
+            super(3, "contact sort key");
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + Contact.TABLE_NAME + " ADD COLUMN " + Contact.COLUMN_SORT_KEY + " TEXT;");
+            db.execSQL("CREATE INDEX " + INDEX_NAME + " ON " + Contact.TABLE_NAME + "(" +
+                    Contact.COLUMN_SORT_KEY + ", " + Contact._ID + ", " + Contact.COLUMN_NAME + ");");
+        }
+
+        @Override
+        Backfill createBackfill() {
+            return new Backfill() {
+                @Override
+                int countRemaining(SQLiteDatabase db, long afterId) {
+                    return (int) DatabaseUtils.queryNumEntries(db, Contact.TABLE_NAME,
+                            Contact._ID + " > " + afterId);
+                }
+
+                @Override
+                long backfill(SQLiteDatabase db, long afterId, int limit) {
+                    Cursor cursor = db.query(Contact.TABLE_NAME,
+                            new String[]{Contact._ID, Contact.COLUMN_NAME}, Contact._ID + " > " + afterId,
+                            null, null, null, Contact._ID, String.valueOf(limit));
+                    try {
+                        long lastId = -1;
+                        ContentValues values = new ContentValues();
+                        while (cursor.moveToNext()){
+                            lastId = cursor.getLong(0);
+                            values.put(Contact.COLUMN_SORT_KEY, SortKeys.build(cursor.getString(1)));
+                            db.update(Contact.TABLE_NAME, values, Contact._ID + " = " + lastId, null);
+                        }
+                        return lastId;
+                    }
+                    finally {
+                        cursor.close();
+                    }
+                }
+            };
+        }
+    }
+
+
+
+
+    //Version 4 adds the phone key column (see PhoneKeys) and its index, which phone lookups
+    //search with a range on the key's first digits. Its backfill computes the phone key of existing
+    //contacts. Contacts without a phone number keep a null key, which the index skips over quickly.
+    static final class PhoneKeyMigration extends DatabaseMigration{
+
+        static final String INDEX_NAME = Contact.TABLE_NAME + "_phone_key";
+
+        PhoneKeyMigration(){
+            super(4, "contact phone key");
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + Contact.TABLE_NAME + " ADD COLUMN " + Contact.COLUMN_PHONE_KEY + " TEXT;");
+            db.execSQL("CREATE INDEX " + INDEX_NAME + " ON " + Contact.TABLE_NAME + "(" +
+                    Contact.COLUMN_PHONE_KEY + ");");
+        }
+
+        @Override
+        Backfill createBackfill() {
+            return new Backfill() {
+                @Override
+                int countRemaining(SQLiteDatabase db, long afterId) {
+                    return (int) DatabaseUtils.queryNumEntries(db, Contact.TABLE_NAME,
+                            Contact._ID + " > " + afterId);
+                }
+
+                @Override
+                long backfill(SQLiteDatabase db, long afterId, int limit) {
+                    Cursor cursor = db.query(Contact.TABLE_NAME,
+                            new String[]{Contact._ID, Contact.COLUMN_PHONE}, Contact._ID + " > " + afterId,
+                            null, null, null, Contact._ID, String.valueOf(limit));
+                    try {
+                        long lastId = -1;
+                        ContentValues values = new ContentValues();
+                        while (cursor.moveToNext()){
+                            lastId = cursor.getLong(0);
+                            String phoneKey = PhoneKeys.build(cursor.getString(1));
+                            if (phoneKey == null)
+                                continue; //the column is already null
+                            values.put(Contact.COLUMN_PHONE_KEY, phoneKey);
+                            db.update(Contact.TABLE_NAME, values, Contact._ID + " = " + lastId, null);
+                        }
+                        return lastId;
+                    }
+                    finally {
+                        cursor.close();
+                    }
+                }
+            };
+        }
+    }
+
+
+
+
+    //Version 5 adds the tombstone column (see Contact.COLUMN_DELETED_AT). The sort key and phone
+    //key indexes are rebuilt as partial indexes that leave out deleted contacts, so the list and
+    //phone lookups never step over them. The sort key index also gets the tombstone column, which
+    //is always null in it, so it still covers the list query's WHERE clause. A third partial index
+    //holds only the deleted contacts, so METHOD_PURGE finds the expired ones without a scan.
+    //Existing contacts are not deleted, so there is nothing to backfill.
+    static final class TombstoneMigration extends DatabaseMigration{
+
+        static final String INDEX_NAME = Contact.TABLE_NAME + "_deleted_at";
+
+        TombstoneMigration(){
+            super(5, "contact tombstones");
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + Contact.TABLE_NAME + " ADD COLUMN " + Contact.COLUMN_DELETED_AT + " INTEGER;");
+
+            db.execSQL("DROP INDEX " + SortKeyMigration.INDEX_NAME + ";");
+            db.execSQL("CREATE INDEX " + SortKeyMigration.INDEX_NAME + " ON " + Contact.TABLE_NAME + "(" +
+                    Contact.COLUMN_SORT_KEY + ", " + Contact._ID + ", " + Contact.COLUMN_NAME + ", " +
+                    Contact.COLUMN_DELETED_AT + ") WHERE " + ContactQueries.NOT_DELETED + ";");
+
+            db.execSQL("DROP INDEX " + PhoneKeyMigration.INDEX_NAME + ";");
+            db.execSQL("CREATE INDEX " + PhoneKeyMigration.INDEX_NAME + " ON " + Contact.TABLE_NAME + "(" +
+                    Contact.COLUMN_PHONE_KEY + ") WHERE " + ContactQueries.NOT_DELETED + ";");
+
+            db.execSQL("CREATE INDEX " + INDEX_NAME + " ON " + Contact.TABLE_NAME + "(" +
+                    Contact.COLUMN_DELETED_AT + ") WHERE " + Contact.COLUMN_DELETED_AT + " IS NOT NULL;");
+        }
+    }
+
+
+
+
+    //Version 6 adds the section counts table (see AddressBookDatabaseHelper.SECTIONS_TABLE_NAME),
+    //so the sections of the contact list are read from a few dozen rows instead of being counted
+    //over the whole sort key index every time the list is loaded. It is filled once with an
+    //aggregate query over the sort key. After that, triggers move a contact from one count to
+    //another when it is inserted, renamed, deleted, restored or purged, so a change to one contact
+    //updates one or two rows. A contact counts only while it is not deleted.
+    static final class SectionCountsMigration extends DatabaseMigration{
+
+        SectionCountsMigration(){
+            super(6, "section counts");
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+
+            String sections = AddressBookDatabaseHelper.SECTIONS_TABLE_NAME;
+            db.execSQL("CREATE TABLE " + sections + "(" +
+                    Contact.COLUMN_SECTION + " TEXT PRIMARY KEY NOT NULL, " +
+                    Contact.COLUMN_SECTION_COUNT + " INTEGER NOT NULL);");
+
+            db.execSQL("INSERT INTO " + sections + " SELECT " + ContactQueries.sectionOf(Contact.TABLE_NAME) +
+                    ", count(*) FROM " + Contact.TABLE_NAME + " WHERE " + ContactQueries.NOT_DELETED +
+                    " GROUP BY 1;");
+
+            String oldSection = ContactQueries.sectionOf("old");
+            String newSection = ContactQueries.sectionOf("new");
+            String removeOld = "UPDATE " + sections + " SET " + Contact.COLUMN_SECTION_COUNT + " = " +
+                    Contact.COLUMN_SECTION_COUNT + " - 1 WHERE " + Contact.COLUMN_SECTION + " = " + oldSection +
+                    " AND old." + Contact.COLUMN_DELETED_AT + " IS NULL; ";
+            String addNew = "INSERT OR IGNORE INTO " + sections + " SELECT " + newSection + ", 0" +
+                    " WHERE new." + Contact.COLUMN_DELETED_AT + " IS NULL; " +
+                    "UPDATE " + sections + " SET " + Contact.COLUMN_SECTION_COUNT + " = " +
+                    Contact.COLUMN_SECTION_COUNT + " + 1 WHERE " + Contact.COLUMN_SECTION + " = " + newSection +
+                    " AND new." + Contact.COLUMN_DELETED_AT + " IS NULL; ";
+
+            db.execSQL("CREATE TRIGGER " + sections + "_after_insert AFTER INSERT ON " +
+                    Contact.TABLE_NAME + " BEGIN " + addNew + "END;");
+            db.execSQL("CREATE TRIGGER " + sections + "_after_update AFTER UPDATE OF " +
+                    Contact.COLUMN_SORT_KEY + ", " + Contact.COLUMN_DELETED_AT + " ON " +
+                    Contact.TABLE_NAME + " BEGIN " + removeOld + addNew + "END;");
+            db.execSQL("CREATE TRIGGER " + sections + "_after_delete AFTER DELETE ON " +
+                    Contact.TABLE_NAME + " BEGIN " + removeOld + "END;");
+        }
+    }
+
+
+
+
+    //Version 7 narrows the full-text search table's update triggers (see SearchTableMigration) to
+    //the columns the table indexes. Declared as plain UPDATE triggers they fired on every update,
+    //so soft deletes, restores and the sort key and phone key backfills each removed a contact
+    //from the index and added it back unchanged, doubling the cost of those writes.
+    static final class SearchTriggerColumnsMigration extends DatabaseMigration{
+
+        SearchTriggerColumnsMigration(){
+            super(7, "search trigger columns");
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+
+            String ftsTable = AddressBookDatabaseHelper.FTS_TABLE_NAME;
+            String columns = TextUtils.join(", ", AddressBookDatabaseHelper.FTS_COLUMNS);
+            String newValues = "new." + TextUtils.join(", new.", AddressBookDatabaseHelper.FTS_COLUMNS);
+
+            db.execSQL("DROP TRIGGER " + ftsTable + "_before_update;");
+            db.execSQL("DROP TRIGGER " + ftsTable + "_after_update;");
+
+            db.execSQL("CREATE TRIGGER " + ftsTable + "_before_update BEFORE UPDATE OF " + columns +
+                    " ON " + Contact.TABLE_NAME + " BEGIN DELETE FROM " + ftsTable +
+                    " WHERE docid = old." + Contact._ID + "; END;");
+            db.execSQL("CREATE TRIGGER " + ftsTable + "_after_update AFTER UPDATE OF " + columns +
+                    " ON " + Contact.TABLE_NAME + " BEGIN INSERT INTO " + ftsTable + "(docid, " + columns +
+                    ") VALUES (new." + Contact._ID + ", " + newValues + "); END;");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.deitel.addressbook.data;
+
+import android.os.Bundle;
+
+import com.deitel.addressbook.core.LatencyHistogram;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//ProviderMetrics records how long AddressBookContentProvider's operations take and how many rows
+//they return or change, separately for every operation (query, insert...) and Uri pattern (the
+//codes of the provider's UriMatcher). For queries it also records how long filling the Cursor took,
+//which is when SQLite actually reads the rows. Latencies are kept in LatencyHistograms, in
+//microseconds, so their percentiles can be reported and not just their mean.
+
+//The metrics of an operation on a pattern are created the first time it completes; from then on
+//recording one allocates nothing and takes no lock, so the provider records every operation.
+//snapshot copies the metrics into a Bundle, the result of Contact.METHOD_METRICS.
+
+final class ProviderMetrics {
+
+
+    //the operations, and their names in the snapshot.
+    static final int QUERY = 0;
+    static final int INSERT = 1;
+    static final int UPDATE = 2;
+    static final int DELETE = 3;
+    static final int BULK_INSERT = 4;
+    private static final String[] OPERATION_NAMES = {"query", "insert", "update", "delete", "bulk_insert"};
+
+    //latencies above an hour are recorded as an hour.
+    private static final long HIGHEST_TRACKABLE_MICROS = 60L * 60 * 1000 * 1000;
+
+
+    //the names of the Uri patterns, indexed by their UriMatcher code.
+    private final String[] patternNames;
+
+    //the metrics of each operation on each pattern, at operation * patternNames.length + pattern.
+    //null until the operation first completes on the pattern.
+    private final AtomicReferenceArray<Metrics> metrics;
+
+
+    //constructor. patternNames holds the name of every UriMatcher code, at the code's index.
+    ProviderMetrics(String[] patternNames){
+        this.patternNames = patternNames;
+        metrics = new AtomicReferenceArray<>(OPERATION_NAMES.length * patternNames.length);
+    }
+
+
+    //record records an operation on pattern that started at System.nanoTime() startNanos, has just
+    //completed and returned or changed rows rows.
+    void record(int operation, int pattern, long startNanos, long rows){
+        Metrics operationMetrics = metricsOf(operation, pattern);
+        operationMetrics.latency.record((System.nanoTime() - startNanos) / 1000);
+        operationMetrics.rows.addAndGet(rows);
+    }
+
+
+    //recordQuery records a query on pattern that started at startNanos, had its Cursor created
+    //at fillStartNanos, was filled just now and returned rows rows.
+    void recordQuery(int pattern, long startNanos, long fillStartNanos, long rows){
+        Metrics queryMetrics = metricsOf(QUERY, pattern);
+        long now = System.nanoTime();
+        queryMetrics.latency.record((now - startNanos) / 1000);
+        queryMetrics.fill.record((now - fillStartNanos) / 1000);
+        queryMetrics.rows.addAndGet(rows);
+    }
+
+
+    //snapshot returns the metrics of every operation that has completed, each in a Bundle under
+    //the operation's name and the pattern's name, e.g. "query contacts" (see Contact.METHOD_METRICS).
+    Bundle snapshot(){
+        Bundle snapshot = new Bundle();
+        for (int i = 0; i < metrics.length(); i++){
+            Metrics operationMetrics = metrics.get(i);
+            if (operationMetrics == null)
+                continue;
+
+            int operation = i / patternNames.length;
+            Bundle values = new Bundle();
+            values.putLong(Contact.METRIC_COUNT, operationMetrics.latency.getCount());
+            values.putLong(Contact.METRIC_ROWS, operationMetrics.rows.get());
+            putPercentiles(values, operationMetrics.latency, Contact.METRIC_LATENCY_P50,
+                    Contact.METRIC_LATENCY_P90, Contact.METRIC_LATENCY_P99, Contact.METRIC_LATENCY_MAX);
+            if (operation == QUERY)
+                putPercentiles(values, operationMetrics.fill, Contact.METRIC_FILL_P50,
+                        Contact.METRIC_FILL_P90, Contact.METRIC_FILL_P99, Contact.METRIC_FILL_MAX);
+            snapshot.putBundle(OPERATION_NAMES[operation] + " " + patternNames[i % patternNames.length], values);
+        }
+        return snapshot;
+    }
+
+
+    //metricsOf returns the metrics of operation on pattern, creating them the first time. If two
+    //threads create them at once, the one that loses the race uses the winner's.
+    private Metrics metricsOf(int operation, int pattern){
+        int index = operation * patternNames.length + pattern;
+        Metrics operationMetrics = metrics.get(index);
+        if (operationMetrics == null){
+            metrics.compareAndSet(index, null, new Metrics(operation == QUERY));
+            operationMetrics = metrics.get(index);
+        }
+        return operationMetrics;
+    }
+
+
+    private static void putPercentiles(Bundle values, LatencyHistogram histogram,
+                                       String p50Key, String p90Key, String p99Key, String maxKey){
+        values.putLong(p50Key, histogram.getValueAtPercentile(50));
+        values.putLong(p90Key, histogram.getValueAtPercentile(90));
+        values.putLong(p99Key, histogram.getValueAtPercentile(99));
+        values.putLong(maxKey, histogram.getMax());
+    }
+
+
+    //Metrics holds the metrics of one operation on one pattern. fill is only kept for queries.
+    private static final class Metrics{
+        final LatencyHistogram latency = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+        final LatencyHistogram fill;
+        final AtomicLong rows = new AtomicLong();
+
+        Metrics(boolean query){
+            fill = query ? new LatencyHistogram(HIGHEST_TRACKABLE_MICROS) : null;
+        }
+    }
+}
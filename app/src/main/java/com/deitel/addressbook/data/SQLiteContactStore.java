@@ -0,0 +1,119 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.deitel.addressbook.core.ContactRecord;
+import com.deitel.addressbook.core.ContactStore;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//SQLiteContactStore is the ContactStore of the app: the contacts table of the database opened by
+//AddressBookDatabaseHelper. AddressBookContentProvider's ContactBook works on it. Its reads skip the
+//deleted contacts and its writes go through the same code as the provider's own, so contacts
+//written here get the same keys and tombstones. It sends no change notifications; that is up
+//to the provider.
+
+final class SQLiteContactStore implements ContactStore {
+
+
+    //the columns read by scan.
+    private static final String[] SCAN_COLUMNS = {Contact._ID, Contact.COLUMN_NAME, Contact.COLUMN_PHONE,
+            Contact.COLUMN_EMAIL};
+
+
+    private final AddressBookDatabaseHelper dbHelper;
+
+
+    //constructor
+    SQLiteContactStore(AddressBookDatabaseHelper dbHelper){
+        this.dbHelper = dbHelper;
+    }
+
+
+    //scan is a seek on the table's primary key followed by limit rows, so scanning the whole table
+    //chunk by chunk reads every row once.
+    @Override
+    public List<ContactRecord> scan(long afterId, int limit) {
+        Cursor cursor = dbHelper.getReadableDatabase().query(Contact.TABLE_NAME, SCAN_COLUMNS,
+                Contact._ID + " > " + afterId + " AND " + ContactQueries.NOT_DELETED,
+                null, null, null, Contact._ID + " ASC", String.valueOf(limit));
+        try {
+            List<ContactRecord> contacts = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext())
+                contacts.add(new ContactRecord(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), null, null, null, null));
+            return contacts;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+
+    @Override
+    public List<ContactRecord> read(long[] ids) {
+        Cursor cursor = dbHelper.getReadableDatabase().query(Contact.TABLE_NAME, Contact.DETAIL_PROJECTION,
+                Contact._ID + " IN (" + join(ids) + ") AND " + ContactQueries.NOT_DELETED,
+                null, null, null, null);
+        try {
+            List<ContactRecord> contacts = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext())
+                contacts.add(ContactQueries.readRecord(cursor));
+            return contacts;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+
+    @Override
+    public void update(ContactRecord contact) {
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, contact.name);
+        values.put(Contact.COLUMN_PHONE, contact.phone);
+        values.put(Contact.COLUMN_EMAIL, contact.email);
+        values.put(Contact.COLUMN_STREET, contact.street);
+        values.put(Contact.COLUMN_CITY, contact.city);
+        values.put(Contact.COLUMN_STATE, contact.state);
+        values.put(Contact.COLUMN_ZIP, contact.zip);
+        dbHelper.getWritableDatabase().update(Contact.TABLE_NAME,
+                AddressBookContentProvider.withDerivedKeys(values),
+                Contact._ID + " = " + contact.id + " AND " + ContactQueries.NOT_DELETED, null);
+    }
+
+
+    @Override
+    public int markDeleted(long[] ids) {
+        return AddressBookContentProvider.markDeleted(dbHelper.getWritableDatabase(),
+                Contact._ID + " IN (" + join(ids) + ")", null);
+    }
+
+
+    @Override
+    public void beginTransaction() {
+        dbHelper.getWritableDatabase().beginTransaction();
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        dbHelper.getWritableDatabase().setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        dbHelper.getWritableDatabase().endTransaction();
+    }
+
+
+    private static String join(long[] ids){
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids)
+            list.add(id);
+        return TextUtils.join(",", list);
+    }
+}
@@ -0,0 +1,97 @@
+package com.deitel.addressbook;
+
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the page diffs ContactsAdapter uses to update the contact list,
+ * which will execute on the development machine (host).
+ */
+public class PageSnapshotTest {
+
+    @Test
+    public void identicalPages_produceNoUpdates() {
+        PageSnapshot page = snapshot(new long[]{1, 2, 3}, new int[]{10, 20, 30});
+
+        assertTrue(updates(page, snapshot(new long[]{1, 2, 3}, new int[]{10, 20, 30})).isEmpty());
+    }
+
+    @Test
+    public void insertedContact_isASingleInsert() {
+        List<String> updates = updates(
+                snapshot(new long[]{1, 2, 3}, new int[]{10, 20, 30}),
+                snapshot(new long[]{1, 4, 2, 3}, new int[]{10, 40, 20, 30}));
+
+        assertEquals(1, updates.size());
+        assertEquals("inserted 1+1", updates.get(0));
+    }
+
+    @Test
+    public void deletedContact_isASingleRemove() {
+        List<String> updates = updates(
+                snapshot(new long[]{1, 2, 3}, new int[]{10, 20, 30}),
+                snapshot(new long[]{1, 3}, new int[]{10, 30}));
+
+        assertEquals(1, updates.size());
+        assertEquals("removed 1+1", updates.get(0));
+    }
+
+    @Test
+    public void editedContact_isASingleChange() {
+        List<String> updates = updates(
+                snapshot(new long[]{1, 2, 3}, new int[]{10, 20, 30}),
+                snapshot(new long[]{1, 2, 3}, new int[]{10, 21, 30}));
+
+        assertEquals(1, updates.size());
+        assertEquals("changed 1+1", updates.get(0));
+    }
+
+    @Test
+    public void renamedContact_isMovedAndChanged() {
+        List<String> updates = updates(
+                snapshot(new long[]{1, 2, 3}, new int[]{10, 20, 30}),
+                snapshot(new long[]{2, 3, 1}, new int[]{20, 30, 11}));
+
+        //the renamed contact is moved instead of removed and inserted again, and it is rebound.
+        assertEquals(updates.toString(), 2, updates.size());
+        assertTrue(updates.toString(), updates.get(0).startsWith("moved ") || updates.get(1).startsWith("moved "));
+        assertTrue(updates.toString(), updates.get(0).startsWith("changed ") || updates.get(1).startsWith("changed "));
+    }
+
+    private static PageSnapshot snapshot(long[] ids, int[] hashes) {
+        return new PageSnapshot(ids, hashes);
+    }
+
+    //returns the updates of the diff from oldPage to newPage as strings.
+    private static List<String> updates(PageSnapshot oldPage, PageSnapshot newPage) {
+        final List<String> updates = new ArrayList<>();
+        PageSnapshot.diff(oldPage, newPage).dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                updates.add("inserted " + position + "+" + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                updates.add("removed " + position + "+" + count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                updates.add("moved " + fromPosition + ">" + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                updates.add("changed " + position + "+" + count);
+            }
+        });
+        return updates;
+    }
+}
@@ -0,0 +1,528 @@
+package com.deitel.addressbook.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.deitel.addressbook.BuildConfig;
+import com.deitel.addressbook.core.SortKeys;
+import com.deitel.addressbook.data.DatabaseDescription.Contact;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load tests for AddressBookContentProvider, which will execute on the development machine (host).
+ * Robolectric runs the real provider against a real SQLite database, seeded with a generated
+ * dataset. Every Uri the provider's UriMatcher knows is queried, its row count checked against
+ * the generated contacts and its latency against a budget; a last test runs readers and writers
+ * on several threads at once.
+ * The budgets are generous for a development machine, so only a real regression (a lost index,
+ * a query that reads every row) fails them. The on-device numbers come from
+ * AddressBookProviderBenchmark.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class AddressBookContentProviderLoadTest {
+
+    //the number of contacts seeded before each test, and the seed they are generated from.
+    private static final int CONTACT_COUNT = 5000;
+    private static final long SEED = 42;
+
+    //every DUPLICATE_INTERVAL-th contact is a copy of the contact before it, so the duplicates
+    //Uri has something to find.
+    private static final int DUPLICATE_INTERVAL = 100;
+
+    //the number of lookups timed for the Uris that select one contact.
+    private static final int LOOKUP_COUNT = 200;
+
+    //the number of rows of a page of the contact list (ContactPageList.PAGE_SIZE).
+    private static final int PAGE_SIZE = 100;
+
+    //the concurrency test runs WORKER_COUNT threads doing OPERATIONS_PER_WORKER operations each,
+    //next to a thread importing IMPORT_CHUNK_COUNT chunks of ContactImporter.CHUNK_SIZE contacts.
+    private static final int WORKER_COUNT = 4;
+    private static final int OPERATIONS_PER_WORKER = 250;
+    private static final int IMPORT_CHUNK_COUNT = 4;
+    private static final int IMPORT_CHUNK_SIZE = 500;
+
+    //the latency budgets, in milliseconds.
+    private static final long SEED_BUDGET_MILLIS = 10000;
+    private static final long LIST_BUDGET_MILLIS = 2000;
+    private static final long PAGE_BUDGET_MILLIS = 100;
+    private static final long LOOKUP_BUDGET_MILLIS = 20;
+    private static final long SEARCH_BUDGET_MILLIS = 500;
+    private static final long SECTIONS_BUDGET_MILLIS = 100;
+    private static final long DUPLICATES_BUDGET_MILLIS = 5000;
+    private static final long EXPORT_BUDGET_MILLIS = 5000;
+    private static final long WRITE_BUDGET_MILLIS = 100;
+    private static final long CONCURRENT_BUDGET_MILLIS = 60000;
+
+    private static final String[] FIRST_NAMES = {"Ada", "Alan", "Barbara", "Charles", "Donald", "Edsger",
+            "Frances", "Grace", "Hedy", "John", "Katherine", "Linus", "Margaret", "Niklaus", "Radia", "Tim"};
+    private static final String[] LAST_NAMES = {"Lovelace", "Turing", "Liskov", "Babbage", "Knuth",
+            "Dijkstra", "Allen", "Hopper", "Lamarr", "McCarthy", "Johnson", "Torvalds", "Hamilton", "Wirth",
+            "Perlman", "Berners-Lee", "\u00c5str\u00f6m", "O'Neil"};
+    private static final String[] CITIES = {"Boston", "London", "Springfield", "Austin"};
+
+    private AddressBookContentProvider provider;
+    private Dataset dataset;
+
+    @Before
+    public void setUp() {
+        provider = Robolectric.setupContentProvider(AddressBookContentProvider.class,
+                DatabaseDescription.AUTHORITY);
+        dataset = new Dataset(CONTACT_COUNT, SEED);
+
+        long start = System.nanoTime();
+        assertEquals(CONTACT_COUNT, provider.bulkInsert(Contact.CONTENT_URI, dataset.rows));
+        assertWithinBudget("bulkInsert of " + CONTACT_COUNT + " contacts", start, SEED_BUDGET_MILLIS);
+    }
+
+    @After
+    public void tearDown() {
+        provider.shutdown();
+    }
+
+    @Test
+    public void contacts_listAndPagesReturnEveryContact() {
+        long start = System.nanoTime();
+        assertEquals(CONTACT_COUNT, fill(provider.query(Contact.CONTENT_URI, Contact.LIST_PROJECTION,
+                null, null, Contact.PAGE_SORT_ORDER)));
+        assertWithinBudget("whole contact list", start, LIST_BUDGET_MILLIS);
+
+        //walking the list a page at a time returns every contact once, in sort key order.
+        String afterKey = null;
+        String lastSortKey = "";
+        Set<Long> seen = new HashSet<>();
+        while (true) {
+            start = System.nanoTime();
+            Cursor cursor = provider.query(Contact.buildPageUri(afterKey, null, PAGE_SIZE),
+                    Contact.LIST_PROJECTION, null, null, null);
+            try {
+                assertWithinBudget("page after " + afterKey, start, PAGE_BUDGET_MILLIS);
+                assertTrue(cursor.getCount() <= PAGE_SIZE);
+                while (cursor.moveToNext()) {
+                    long id = cursor.getLong(cursor.getColumnIndex(Contact._ID));
+                    String sortKey = cursor.getString(cursor.getColumnIndex(Contact.COLUMN_SORT_KEY));
+                    assertTrue("contact " + id + " listed twice", seen.add(id));
+                    assertTrue(sortKey + " before " + lastSortKey, sortKey.compareTo(lastSortKey) >= 0);
+                    lastSortKey = sortKey;
+                    afterKey = Contact.buildPageKey(sortKey, id);
+                }
+                if (cursor.getCount() < PAGE_SIZE)
+                    break;
+            }
+            finally {
+                cursor.close();
+            }
+        }
+        assertEquals(CONTACT_COUNT, seen.size());
+    }
+
+    @Test
+    public void oneContact_returnsItsDetails() {
+        Random random = new Random(SEED);
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            int index = random.nextInt(CONTACT_COUNT);
+            Cursor cursor = provider.query(Contact.buildContactUri(idOf(index)), null, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+                cursor.moveToFirst();
+                assertEquals(dataset.names[index],
+                        cursor.getString(cursor.getColumnIndex(Contact.COLUMN_NAME)));
+            }
+            finally {
+                cursor.close();
+            }
+        }
+        assertWithinMeanBudget("contact by ID", start, LOOKUP_COUNT, LOOKUP_BUDGET_MILLIS);
+    }
+
+    @Test
+    public void search_findsEveryContactWithTheName() {
+        for (String lastName : new String[]{"Hopper", "Lovelace", "Wirth"}) {
+            int expected = 0;
+            for (String name : dataset.names)
+                if (name.endsWith(" " + lastName))
+                    expected++;
+
+            long start = System.nanoTime();
+            assertEquals(lastName, expected, fill(provider.query(Contact.buildSearchUri(lastName),
+                    null, null, null, null)));
+            assertWithinBudget("search for " + lastName, start, SEARCH_BUDGET_MILLIS);
+        }
+    }
+
+    @Test
+    public void phoneLookup_findsTheContactsWithTheNumber() {
+        Random random = new Random(SEED);
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            int index = random.nextInt(CONTACT_COUNT);
+            String phone = dataset.phones[index];
+
+            //phone numbers are unique except for the planted duplicates.
+            int expected = 0;
+            for (String other : dataset.phones)
+                if (other.equals(phone))
+                    expected++;
+
+            assertEquals(phone, expected, fill(provider.query(Contact.buildPhoneLookupUri(phone),
+                    new String[]{Contact._ID}, null, null, null)));
+        }
+        assertWithinMeanBudget("phone lookup", start, LOOKUP_COUNT, LOOKUP_BUDGET_MILLIS);
+    }
+
+    @Test
+    public void sections_countEveryContact() {
+        Map<String, Integer> expected = new TreeMap<>();
+        for (String name : dataset.names) {
+            String section = SortKeys.build(name).substring(0, 1);
+            Integer count = expected.get(section);
+            expected.put(section, (count == null) ? 1 : count + 1);
+        }
+
+        long start = System.nanoTime();
+        Cursor cursor = provider.query(Contact.buildSectionsUri(), null, null, null, null);
+        try {
+            assertWithinBudget("sections", start, SECTIONS_BUDGET_MILLIS);
+            Map<String, Integer> sections = new TreeMap<>();
+            while (cursor.moveToNext())
+                sections.put(cursor.getString(cursor.getColumnIndex(Contact.COLUMN_SECTION)),
+                        cursor.getInt(cursor.getColumnIndex(Contact.COLUMN_SECTION_COUNT)));
+            assertEquals(expected, sections);
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void duplicates_groupEveryPlantedCopy() {
+        long start = System.nanoTime();
+        Cursor cursor = provider.query(Contact.buildDuplicatesUri(), null, null, null, null);
+        Map<Long, Long> groups = new TreeMap<>();
+        try {
+            assertWithinBudget("duplicates", start, DUPLICATES_BUDGET_MILLIS);
+            while (cursor.moveToNext())
+                groups.put(cursor.getLong(cursor.getColumnIndex(Contact._ID)),
+                        cursor.getLong(cursor.getColumnIndex(Contact.COLUMN_DUPLICATE_GROUP)));
+        }
+        finally {
+            cursor.close();
+        }
+
+        //other contacts may be grouped too (the generated names repeat), but each copy must be
+        //in the group of its original.
+        for (int index = DUPLICATE_INTERVAL - 1; index < CONTACT_COUNT; index += DUPLICATE_INTERVAL) {
+            Long group = groups.get(idOf(index));
+            assertNotNull("copy " + index + " not found", group);
+            assertEquals("copy " + index, group, groups.get(idOf(index - 1)));
+        }
+    }
+
+    @Test
+    public void export_writesEveryContact() throws Exception {
+        assertEquals(Contact.MIME_TYPE_CSV, provider.getType(Contact.buildExportUri(Contact.FORMAT_CSV)));
+
+        //openFile needs a pipe, which Robolectric does not have, so we time the writer it runs.
+        SQLiteDatabase db = new AddressBookDatabaseHelper(RuntimeEnvironment.application).getReadableDatabase();
+        StringWriter writer = new StringWriter();
+        long start = System.nanoTime();
+        ContactExportWriter.write(db, Contact.FORMAT_CSV, writer);
+        assertWithinBudget("CSV export", start, EXPORT_BUDGET_MILLIS);
+
+        //a header line and one line per contact.
+        int lines = 0;
+        String csv = writer.toString();
+        for (int i = 0; i < csv.length(); i++)
+            if (csv.charAt(i) == '\n')
+                lines++;
+        assertEquals(CONTACT_COUNT + 1, lines);
+    }
+
+    @Test
+    public void writes_changeTheExpectedRows() {
+        Random random = new Random(SEED);
+
+        //ONE_CONTACT: update and delete single contacts.
+        long start = System.nanoTime();
+        long[] deleted = new long[LOOKUP_COUNT];
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            deleted[i] = idOf(i * (CONTACT_COUNT / LOOKUP_COUNT));
+            ContentValues values = new ContentValues();
+            values.put(Contact.COLUMN_CITY, CITIES[random.nextInt(CITIES.length)]);
+            assertEquals(1, provider.update(Contact.buildContactUri(deleted[i]), values, null, null));
+            assertEquals(1, provider.delete(Contact.buildContactUri(deleted[i]), null, null));
+        }
+        assertWithinMeanBudget("update and delete by ID", start, LOOKUP_COUNT, WRITE_BUDGET_MILLIS);
+        assertEquals(CONTACT_COUNT - LOOKUP_COUNT, count(Contact.CONTENT_URI));
+
+        //SOME_CONTACTS: deleted contacts in the set are skipped.
+        long[] set = new long[2 * LOOKUP_COUNT];
+        for (int i = 0; i < set.length; i++)
+            set[i] = idOf(i);
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_STATE, "NY");
+        int live = set.length;
+        for (long id : deleted)
+            if (id <= set.length)
+                live--;
+        start = System.nanoTime();
+        assertEquals(live, provider.update(Contact.buildContactsUri(set), values, null, null));
+        assertEquals(live, provider.delete(Contact.buildContactsUri(set), null, null));
+        assertWithinBudget("update and delete of a contact set", start, WRITE_BUDGET_MILLIS);
+
+        //METHOD_RESTORE brings the first batch back; nothing is old enough for METHOD_PURGE.
+        Bundle extras = new Bundle();
+        extras.putLongArray(Contact.EXTRA_IDS, deleted);
+        start = System.nanoTime();
+        assertEquals(LOOKUP_COUNT, provider.call(Contact.METHOD_RESTORE, null, extras)
+                .getInt(Contact.EXTRA_RESTORED_COUNT));
+        assertEquals(0, provider.call(Contact.METHOD_PURGE, null, null).getInt(Contact.EXTRA_PURGED_COUNT));
+        assertWithinBudget("restore and purge", start, WRITE_BUDGET_MILLIS);
+        assertEquals(CONTACT_COUNT - live, count(Contact.CONTENT_URI));
+
+        //METHOD_MERGE: merging a copy into its original deletes the copy. Both are past the set.
+        extras.putLongArray(Contact.EXTRA_IDS, new long[]{idOf(5 * DUPLICATE_INTERVAL - 2),
+                idOf(5 * DUPLICATE_INTERVAL - 1)});
+        assertEquals(1, provider.call(Contact.METHOD_MERGE, null, extras).getInt(Contact.EXTRA_MERGED_COUNT));
+        assertEquals(CONTACT_COUNT - live - 1, count(Contact.CONTENT_URI));
+    }
+
+    @Test
+    public void metrics_recordEveryOperationByUriPattern() {
+        fill(provider.query(Contact.CONTENT_URI, Contact.LIST_PROJECTION, null, null, null));
+        for (int i = 0; i < LOOKUP_COUNT; i++)
+            fill(provider.query(Contact.buildContactUri(idOf(i)), null, null, null, null));
+        provider.delete(Contact.buildContactsUri(idOf(0), idOf(1)), null, null);
+
+        Bundle metrics = provider.call(Contact.METHOD_METRICS, null, null);
+        assertMetrics(metrics.getBundle("bulk_insert contacts"), 1, CONTACT_COUNT);
+        assertMetrics(metrics.getBundle("query contacts"), 1, CONTACT_COUNT);
+        assertMetrics(metrics.getBundle("query contact"), LOOKUP_COUNT, LOOKUP_COUNT);
+        assertMetrics(metrics.getBundle("delete contact_set"), 1, 2);
+        assertNull(metrics.getBundle("insert contacts"));
+
+        //filling is part of the query, and only queries are filled.
+        Bundle list = metrics.getBundle("query contacts");
+        assertTrue(list.getLong(Contact.METRIC_FILL_MAX) <= list.getLong(Contact.METRIC_LATENCY_MAX));
+        assertFalse(metrics.getBundle("delete contact_set").containsKey(Contact.METRIC_FILL_MAX));
+    }
+
+    @Test
+    public void concurrentReadersAndWriters_neverFail() throws Exception {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicInteger expectedCount = new AtomicInteger(CONTACT_COUNT);
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        //a ContactImporter-style writer, committing chunks of contacts while the others run.
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                startSignal.await();
+                for (int chunk = 0; chunk < IMPORT_CHUNK_COUNT; chunk++) {
+                    Dataset imported = new Dataset(IMPORT_CHUNK_SIZE, SEED + 1 + chunk);
+                    assertEquals(IMPORT_CHUNK_SIZE, provider.bulkInsert(Contact.CONTENT_URI, imported.rows));
+                    expectedCount.addAndGet(IMPORT_CHUNK_SIZE);
+                }
+                return null;
+            }
+        });
+
+        //workers mixing the reads of the contact list, the detail screen and search with the writes
+        //of the edit screen, delete and undo.
+        for (int w = 0; w < WORKER_COUNT; w++) {
+            final Random random = new Random(SEED + 100 + w);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startSignal.await();
+                    long inserted = 0;
+                    for (int i = 0; i < OPERATIONS_PER_WORKER; i++) {
+                        long id = idOf(random.nextInt(CONTACT_COUNT));
+                        ContentValues values = new ContentValues();
+                        switch (i % 6) {
+                            case 0:
+                                values.put(Contact.COLUMN_NAME, "Worker " + random.nextInt());
+                                inserted = ContentUris.parseId(provider.insert(Contact.CONTENT_URI, values));
+                                expectedCount.incrementAndGet();
+                                break;
+                            case 1:
+                                assertEquals(PAGE_SIZE, fill(provider.query(Contact.buildPageUri(null, null, PAGE_SIZE),
+                                        Contact.LIST_PROJECTION, null, null, null)));
+                                break;
+                            case 2:
+                                values.put(Contact.COLUMN_PHONE, "555-" + (1000 + random.nextInt(9000)));
+                                provider.update(Contact.buildContactUri(id), values, null, null);
+                                break;
+                            case 3:
+                                fill(provider.query(Contact.buildContactUri(id), null, null, null, null));
+                                fill(provider.query(Contact.buildSearchUri(
+                                        LAST_NAMES[random.nextInt(LAST_NAMES.length)]), null, null, null, null));
+                                break;
+                            case 4:
+                                assertEquals(1, provider.delete(Contact.buildContactUri(inserted), null, null));
+                                Bundle extras = new Bundle();
+                                extras.putLongArray(Contact.EXTRA_IDS, new long[]{inserted});
+                                assertEquals(1, provider.call(Contact.METHOD_RESTORE, null, extras)
+                                        .getInt(Contact.EXTRA_RESTORED_COUNT));
+                                break;
+                            default:
+                                fill(provider.query(Contact.buildSectionsUri(), null, null, null, null));
+                                provider.call(Contact.METHOD_PURGE, null, null);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks)
+                futures.add(executor.submit(task));
+
+            long start = System.nanoTime();
+            startSignal.countDown();
+            for (Future<Void> future : futures) {
+                try {
+                    future.get(CONCURRENT_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                catch (ExecutionException e) {
+                    //most likely a SQLiteDatabaseLockedException ("database is locked"): a
+                    //connection waited for the write lock longer than SQLite's busy timeout.
+                    throw new AssertionError("concurrent operation failed: " + e.getCause(), e.getCause());
+                }
+            }
+            assertWithinBudget("concurrent readers and writers", start, CONCURRENT_BUDGET_MILLIS);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(expectedCount.get(), count(Contact.CONTENT_URI));
+    }
+
+    //idOf returns the row ID of the generated contact with index index. The database is new for
+    //every test, so row IDs follow the order of the bulkInsert.
+    private static long idOf(int index) {
+        return index + 1;
+    }
+
+    private int count(Uri uri) {
+        return fill(provider.query(uri, new String[]{Contact._ID}, null, null, null));
+    }
+
+    //fill reads every column of every row of cursor, as a CursorWindow would be filled, closes it
+    //and returns the number of rows.
+    private static int fill(Cursor cursor) {
+        try {
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                for (int c = 0; c < cursor.getColumnCount(); c++)
+                    cursor.getString(c);
+                rows++;
+            }
+            return rows;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    private static void assertWithinBudget(String operation, long startNanos, long budgetMillis) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertTrue(operation + " took " + millis + " ms, budget " + budgetMillis + " ms",
+                millis <= budgetMillis);
+    }
+
+    //assertWithinMeanBudget checks the mean latency of count operations that started at startNanos.
+    private static void assertWithinMeanBudget(String operation, long startNanos, int count, long budgetMillis) {
+        double millis = (System.nanoTime() - startNanos) / 1e6 / count;
+        assertTrue(String.format("%s took %.2f ms on average, budget %d ms", operation, millis, budgetMillis),
+                millis <= budgetMillis);
+    }
+
+    //assertMetrics checks the count and rows of the metrics of an operation, and that its latency
+    //percentiles are in order.
+    private static void assertMetrics(Bundle metrics, long count, long rows) {
+        assertNotNull(metrics);
+        assertEquals(count, metrics.getLong(Contact.METRIC_COUNT));
+        assertEquals(rows, metrics.getLong(Contact.METRIC_ROWS));
+        assertTrue(metrics.getLong(Contact.METRIC_LATENCY_P50) <= metrics.getLong(Contact.METRIC_LATENCY_P90));
+        assertTrue(metrics.getLong(Contact.METRIC_LATENCY_P90) <= metrics.getLong(Contact.METRIC_LATENCY_P99));
+        assertTrue(metrics.getLong(Contact.METRIC_LATENCY_P99) <= metrics.getLong(Contact.METRIC_LATENCY_MAX));
+    }
+
+    //Dataset generates count contacts from seed. The same seed always generates the same contacts.
+    //Names repeat, as in a real address book; phone numbers and e-mail addresses are unique, except
+    //that every DUPLICATE_INTERVAL-th contact is an exact copy of the one before it.
+    private static final class Dataset {
+        final ContentValues[] rows;
+        final String[] names;
+        final String[] phones;
+
+        Dataset(int count, long seed) {
+            Random random = new Random(seed);
+            rows = new ContentValues[count];
+            names = new String[count];
+            phones = new String[count];
+            for (int i = 0; i < count; i++) {
+                if (i % DUPLICATE_INTERVAL == DUPLICATE_INTERVAL - 1) {
+                    rows[i] = new ContentValues(rows[i - 1]);
+                    names[i] = names[i - 1];
+                    phones[i] = phones[i - 1];
+                    continue;
+                }
+
+                names[i] = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " +
+                        LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                //the last seven digits, the ones a phone lookup matches on, come from i.
+                phones[i] = String.format("+1 (%03d) %03d-%04d", 200 + random.nextInt(800),
+                        (i / 10000) % 1000, i % 10000);
+
+                ContentValues values = new ContentValues();
+                values.put(Contact.COLUMN_NAME, names[i]);
+                values.put(Contact.COLUMN_PHONE, phones[i]);
+                values.put(Contact.COLUMN_EMAIL, "contact" + seed + "." + i + "@example.com");
+                values.put(Contact.COLUMN_STREET, (1 + random.nextInt(999)) + " Main Street");
+                values.put(Contact.COLUMN_CITY, CITIES[random.nextInt(CITIES.length)]);
+                values.put(Contact.COLUMN_STATE, "MA");
+                values.put(Contact.COLUMN_ZIP, String.format("%05d", random.nextInt(100000)));
+                rows[i] = values;
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.deitel.addressbook.benchmarks;
+
+import com.deitel.addressbook.core.PhoneKeys;
+import com.deitel.addressbook.core.SortKeys;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//BenchmarkDatabase creates the SQLite databases the benchmarks run against, through sqlite-jdbc.
+//Each has the schema of the app's contacts database (schema.sql, kept in step with
+//AddressBookDatabaseHelper) and a number of generated contacts. The same index always generates
+//the same contact, so every run of a benchmark sees the same data.
+
+//Generating a million contacts takes a while, so each size is generated once into DATA_DIR and
+//every trial works on a copy of it.
+
+final class BenchmarkDatabase {
+
+
+    //the directory holding the generated databases. The jmh task points it into the build directory.
+    private static final File DATA_DIR = new File(System.getProperty("benchmark.dataDir", "benchmark-data"));
+
+    //contacts are generated in transactions of this many rows.
+    private static final int SEED_CHUNK_SIZE = 10000;
+
+    //the statement that inserts a contact, with the keys the provider derives from the name and phone.
+    static final String INSERT_SQL = "INSERT INTO contacts(name, phone, email, street, city, state, zip, " +
+            "sort_key, phone_key) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String[] FIRST_NAMES = {"Ada", "Alan", "Barbara", "Charles", "Donald", "Edsger",
+            "Frances", "Grace", "Hedy", "John", "Katherine", "Linus", "Margaret", "Niklaus", "Radia", "Tim"};
+    private static final String[] LAST_NAMES = {"Lovelace", "Turing", "Liskov", "Babbage", "Knuth",
+            "Dijkstra", "Allen", "Hopper", "Lamarr", "McCarthy", "Johnson", "Torvalds", "Hamilton", "Wirth",
+            "Perlman", "Berners-Lee", "\u00c5str\u00f6m", "O'Neil"};
+    private static final String[] CITIES = {"Boston", "London", "Z\u00fcrich", "Springfield", "Austin"};
+
+
+    private BenchmarkDatabase(){
+    }
+
+
+    //open returns a connection to a new copy of the database with size contacts, with row IDs 1 to
+    //size. The caller deletes the copy with close.
+    static Connection open(int size) throws IOException, SQLException {
+        File template = new File(DATA_DIR, "contacts-" + size + ".db");
+        if (!template.exists())
+            generate(template, size);
+
+        File copy = File.createTempFile("contacts-" + size + "-", ".db", DATA_DIR);
+        Files.copy(template.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return connect(copy);
+    }
+
+
+    //close closes a connection returned by open and deletes its copy of the database, with its
+    //write-ahead log.
+    static void close(Connection connection) throws SQLException {
+        String path = connection.getMetaData().getURL().substring("jdbc:sqlite:".length());
+        connection.close();
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File(path + suffix).delete();
+    }
+
+
+    //generate creates the database file with size contacts. It is written under a temporary name
+    //and renamed when complete, so an interrupted run never leaves a partial database behind.
+    private static synchronized void generate(File file, int size) throws IOException, SQLException {
+        if (file.exists())
+            return;
+        if (!DATA_DIR.isDirectory() && !DATA_DIR.mkdirs())
+            throw new IOException("Cannot create " + DATA_DIR);
+
+        File partial = new File(DATA_DIR, file.getName() + ".partial");
+        partial.delete();
+        Connection connection = connect(partial);
+        try {
+            createSchema(connection);
+            connection.setAutoCommit(false);
+            PreparedStatement insert = connection.prepareStatement(INSERT_SQL);
+            for (int i = 0; i < size; i++){
+                bindContact(insert, i);
+                insert.addBatch();
+                if ((i + 1) % SEED_CHUNK_SIZE == 0 || i == size - 1){
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.close();
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()){
+                statement.execute("ANALYZE");
+            }
+        }
+        finally {
+            connection.close();
+        }
+        if (!partial.renameTo(file))
+            throw new IOException("Cannot create " + file);
+    }
+
+
+    //connect opens file in write-ahead logging mode, like AddressBookDatabaseHelper.
+    private static Connection connect(File file) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()){
+            statement.execute("PRAGMA journal_mode=WAL");
+        }
+        return connection;
+    }
+
+
+    //createSchema runs the statements of schema.sql, which are separated by lines holding only "--".
+    private static void createSchema(Connection connection) throws IOException, SQLException {
+        StringBuilder script = new StringBuilder();
+        InputStream in = BenchmarkDatabase.class.getResourceAsStream("schema.sql");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"))){
+            String line;
+            while ((line = reader.readLine()) != null)
+                if (!line.startsWith("-- "))
+                    script.append(line).append('\n');
+        }
+
+        try (Statement statement = connection.createStatement()){
+            for (String sql : script.toString().split("\n--\n"))
+                if (!sql.trim().isEmpty())
+                    statement.execute(sql);
+        }
+    }
+
+
+    //bindContact binds the parameters of INSERT_SQL to the generated contact with index i.
+    static void bindContact(PreparedStatement insert, int i) throws SQLException {
+        String name = FIRST_NAMES[i % FIRST_NAMES.length] + " " +
+                LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length] + " " + i;
+        String phone = String.format("+1 (%03d) %03d-%04d", 200 + i % 800, (i / 800) % 1000, i % 10000);
+        insert.setString(1, name);
+        insert.setString(2, phone);
+        insert.setString(3, "contact" + i + "@example.com");
+        insert.setString(4, (i % 997) + " Main Street");
+        insert.setString(5, CITIES[i % CITIES.length]);
+        insert.setString(6, "MA");
+        insert.setString(7, String.format("%05d", i % 100000));
+        insert.setString(8, SortKeys.build(name));
+        insert.setString(9, PhoneKeys.build(phone));
+    }
+}
@@ -0,0 +1,107 @@
+package com.deitel.addressbook.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//ContactQueryBenchmark times the reads of AddressBookContentProvider, as the SQL the provider runs:
+//the first page of the contact list in its current order (the sort key index), the same page in
+//the order the list used to have (name COLLATE NOCASE, which no index covers, so SQLite sorts the
+//whole table for every page) and the lookup of one contact by _id. Every row read is consumed,
+//as a CursorWindow would be filled.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactQueryBenchmark {
+
+
+    //the number of rows of a page of the contact list (ContactPageList.PAGE_SIZE).
+    private static final int PAGE_SIZE = 100;
+
+    private static final String LIST_COLUMNS = "_id, name, sort_key";
+    private static final String DETAIL_COLUMNS = "_id, name, phone, email, street, city, state, zip";
+
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private Connection connection;
+    private PreparedStatement firstPage;
+    private PreparedStatement firstPageByName;
+    private PreparedStatement byId;
+    private final Random random = new Random(42);
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        connection = BenchmarkDatabase.open(size);
+        firstPage = connection.prepareStatement("SELECT " + LIST_COLUMNS + " FROM contacts " +
+                "WHERE deleted_at IS NULL ORDER BY sort_key ASC, _id ASC LIMIT " + PAGE_SIZE);
+        firstPageByName = connection.prepareStatement("SELECT " + LIST_COLUMNS + " FROM contacts " +
+                "WHERE deleted_at IS NULL ORDER BY name COLLATE NOCASE ASC LIMIT " + PAGE_SIZE);
+        byId = connection.prepareStatement("SELECT " + DETAIL_COLUMNS + " FROM contacts " +
+                "WHERE _id = ? AND deleted_at IS NULL");
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.close(connection);
+    }
+
+
+    @Benchmark
+    public int listFirstPage(Blackhole blackhole) throws SQLException {
+        return consume(firstPage, blackhole);
+    }
+
+
+    @Benchmark
+    public int listFirstPageByNameNocase(Blackhole blackhole) throws SQLException {
+        return consume(firstPageByName, blackhole);
+    }
+
+
+    @Benchmark
+    public int lookupById(Blackhole blackhole) throws SQLException {
+        byId.setLong(1, 1 + random.nextInt(size));
+        return consume(byId, blackhole);
+    }
+
+
+    //consume runs query and reads every column of every row. Returns the number of rows.
+    private static int consume(PreparedStatement query, Blackhole blackhole) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = query.executeQuery()){
+            int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()){
+                for (int c = 1; c <= columns; c++)
+                    blackhole.consume(resultSet.getString(c));
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,132 @@
+package com.deitel.addressbook.benchmarks;
+
+import com.deitel.addressbook.core.PhoneKeys;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//ContactWriteBenchmark times the writes of AddressBookContentProvider, as the SQL the provider runs.
+//Every write fires the triggers that keep the full-text search table and the section counts up to
+//date, as it does on a device.
+
+//insertOne inserts a contact in a transaction of its own, like insert(); insertBatch inserts
+//BATCH_SIZE contacts in one transaction, like bulkInsert(), and is reported per contact so the two
+//compare directly. The inserted contacts accumulate over a trial, which is small next to the
+//larger dataset sizes. delete is a soft delete (see Contact.COLUMN_DELETED_AT), so deleteAndRestore
+//undoes each delete to keep the dataset the same size, and reports the time of both.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactWriteBenchmark {
+
+
+    //the number of contacts inserted per bulkInsert (ContactImporter.CHUNK_SIZE).
+    private static final int BATCH_SIZE = 500;
+
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement updatePhone;
+    private PreparedStatement markDeleted;
+    private PreparedStatement restore;
+    private final Random random = new Random(42);
+    private int nextContact;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        connection = BenchmarkDatabase.open(size);
+        insert = connection.prepareStatement(BenchmarkDatabase.INSERT_SQL);
+        updatePhone = connection.prepareStatement("UPDATE contacts SET phone = ?, phone_key = ? " +
+                "WHERE _id = ? AND deleted_at IS NULL");
+        markDeleted = connection.prepareStatement("UPDATE contacts SET deleted_at = ? " +
+                "WHERE _id = ? AND deleted_at IS NULL");
+        restore = connection.prepareStatement("UPDATE contacts SET deleted_at = NULL " +
+                "WHERE _id = ? AND deleted_at IS NOT NULL");
+        nextContact = size;
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.close(connection);
+    }
+
+
+    @Benchmark
+    public int insertOne() throws SQLException {
+        BenchmarkDatabase.bindContact(insert, nextContact++);
+        return insert.executeUpdate();
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int insertBatch() throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            for (int i = 0; i < BATCH_SIZE; i++){
+                BenchmarkDatabase.bindContact(insert, nextContact++);
+                insert.addBatch();
+            }
+            int[] counts = insert.executeBatch();
+            connection.commit();
+            return counts.length;
+        }
+        finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+
+    @Benchmark
+    public int updateById() throws SQLException {
+        String phone = "555-" + (1000 + random.nextInt(9000));
+        updatePhone.setString(1, phone);
+        updatePhone.setString(2, PhoneKeys.build(phone));
+        updatePhone.setLong(3, randomId());
+        return updatePhone.executeUpdate();
+    }
+
+
+    @Benchmark
+    public int deleteAndRestore() throws SQLException {
+        long id = randomId();
+        markDeleted.setLong(1, System.currentTimeMillis());
+        markDeleted.setLong(2, id);
+        int deleted = markDeleted.executeUpdate();
+        restore.setLong(1, id);
+        return deleted + restore.executeUpdate();
+    }
+
+
+    //randomId returns the row ID of one of the generated contacts.
+    private long randomId(){
+        return 1 + random.nextInt(size);
+    }
+}
@@ -0,0 +1,29 @@
+-- The schema of the contacts database at version 7, as AddressBookDatabaseHelper.onCreate leaves it
+-- after running every migration in DatabaseMigrations. Keep it in step with new migrations.
+-- Statements are separated by lines holding only "--".
+
+CREATE TABLE contacts(_id integer primary key, name TEXT, phone TEXT, email TEXT, street TEXT, city TEXT, state TEXT, zip TEXT, sort_key TEXT, phone_key TEXT, deleted_at INTEGER);
+--
+CREATE VIRTUAL TABLE contacts_fts USING fts4(name, email, street, city, state, zip, content="contacts");
+--
+CREATE TRIGGER contacts_fts_before_update BEFORE UPDATE OF name, email, street, city, state, zip ON contacts BEGIN DELETE FROM contacts_fts WHERE docid = old._id; END;
+--
+CREATE TRIGGER contacts_fts_before_delete BEFORE DELETE ON contacts BEGIN DELETE FROM contacts_fts WHERE docid = old._id; END;
+--
+CREATE TRIGGER contacts_fts_after_update AFTER UPDATE OF name, email, street, city, state, zip ON contacts BEGIN INSERT INTO contacts_fts(docid, name, email, street, city, state, zip) VALUES (new._id, new.name, new.email, new.street, new.city, new.state, new.zip); END;
+--
+CREATE TRIGGER contacts_fts_after_insert AFTER INSERT ON contacts BEGIN INSERT INTO contacts_fts(docid, name, email, street, city, state, zip) VALUES (new._id, new.name, new.email, new.street, new.city, new.state, new.zip); END;
+--
+CREATE INDEX contacts_sort_key ON contacts(sort_key, _id, name, deleted_at) WHERE deleted_at IS NULL;
+--
+CREATE INDEX contacts_phone_key ON contacts(phone_key) WHERE deleted_at IS NULL;
+--
+CREATE INDEX contacts_deleted_at ON contacts(deleted_at) WHERE deleted_at IS NOT NULL;
+--
+CREATE TABLE contacts_sections(section TEXT PRIMARY KEY NOT NULL, section_count INTEGER NOT NULL);
+--
+CREATE TRIGGER contacts_sections_after_insert AFTER INSERT ON contacts BEGIN INSERT OR IGNORE INTO contacts_sections SELECT coalesce(substr(new.sort_key, 1, 1), ''), 0 WHERE new.deleted_at IS NULL; UPDATE contacts_sections SET section_count = section_count + 1 WHERE section = coalesce(substr(new.sort_key, 1, 1), '') AND new.deleted_at IS NULL; END;
+--
+CREATE TRIGGER contacts_sections_after_update AFTER UPDATE OF sort_key, deleted_at ON contacts BEGIN UPDATE contacts_sections SET section_count = section_count - 1 WHERE section = coalesce(substr(old.sort_key, 1, 1), '') AND old.deleted_at IS NULL; INSERT OR IGNORE INTO contacts_sections SELECT coalesce(substr(new.sort_key, 1, 1), ''), 0 WHERE new.deleted_at IS NULL; UPDATE contacts_sections SET section_count = section_count + 1 WHERE section = coalesce(substr(new.sort_key, 1, 1), '') AND new.deleted_at IS NULL; END;
+--
+CREATE TRIGGER contacts_sections_after_delete AFTER DELETE ON contacts BEGIN UPDATE contacts_sections SET section_count = section_count - 1 WHERE section = coalesce(substr(old.sort_key, 1, 1), '') AND old.deleted_at IS NULL; END;
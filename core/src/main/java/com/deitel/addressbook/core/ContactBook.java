@@ -0,0 +1,93 @@
+package com.deitel.addressbook.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//ContactBook holds the address book's logic that works on many contacts at once: finding the
+//duplicate contacts and merging them. It reads and writes the contacts only through a
+//ContactStore, so it has no dependency on Android. AddressBookContentProvider delegates to a
+//ContactBook over its SQLite database, and the same code can be tested and profiled on a JVM.
+
+//ContactBook keeps no state between calls. It is as thread-safe as its store.
+
+public final class ContactBook {
+
+
+    private final ContactStore store;
+    private final int scanChunkSize;
+
+
+    //constructor. The contacts are scanned scanChunkSize at a time.
+    public ContactBook(ContactStore store, int scanChunkSize){
+        this.store = store;
+        this.scanChunkSize = scanChunkSize;
+    }
+
+
+    //findDuplicates returns the groups of contacts that are probably the same person (see
+    //DuplicateDetector), each as the sorted row IDs of its contacts, sorted by their first row ID.
+    //The whole store is scanned in chunks of row IDs, and only the detector's keys are kept.
+    public List<long[]> findDuplicates(){
+
+        DuplicateDetector detector = new DuplicateDetector();
+        long lastId = 0; //row IDs start at 1
+        List<ContactRecord> chunk;
+        do {
+            chunk = store.scan(lastId, scanChunkSize);
+            for (ContactRecord contact : chunk){
+                detector.add(contact.id, contact.name, contact.phone, contact.email);
+                lastId = contact.id;
+            }
+        } while (chunk.size() == scanChunkSize);
+
+        return detector.findDuplicates();
+    }
+
+
+    //merge merges the contacts with row IDs ids into the first one, in one transaction. Each detail
+    //the first contact lacks is taken from the first of the other contacts that has it, then the
+    //other contacts are deleted. Contacts that do not exist are ignored. Returns the row IDs of the
+    //deleted contacts, none if the first contact does not exist.
+    public long[] merge(long[] ids){
+
+        long[] deleted = new long[0];
+
+        store.beginTransaction();
+        try {
+            Map<Long, ContactRecord> contacts = new HashMap<>();
+            for (ContactRecord contact : store.read(ids))
+                contacts.put(contact.id, contact);
+
+            ContactRecord survivor = contacts.remove(ids[0]);
+            if (survivor == null)
+                return deleted;
+
+            //fill in the details the survivor lacks, in the order of ids.
+            ContactRecord merged = survivor;
+            List<Long> others = new ArrayList<>();
+            for (int i = 1; i < ids.length; i++){
+                ContactRecord other = contacts.remove(ids[i]);
+                if (other == null)
+                    continue; //missing, or listed twice
+                merged = merged.withMissingDetailsFrom(other);
+                others.add(other.id);
+            }
+            if (merged != survivor)
+                store.update(merged);
+
+            deleted = new long[others.size()];
+            for (int i = 0; i < deleted.length; i++)
+                deleted[i] = others.get(i);
+            if (deleted.length > 0)
+                store.markDeleted(deleted);
+
+            store.setTransactionSuccessful();
+        }
+        finally {
+            store.endTransaction();
+        }
+        return deleted;
+    }
+}
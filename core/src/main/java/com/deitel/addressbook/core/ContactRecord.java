@@ -0,0 +1,64 @@
+package com.deitel.addressbook.core;
+
+//ContactRecord holds all the details of one contact, read from a row of the contacts table.
+//Unlike a Cursor it needs no database connection and never changes, so it can be kept in the
+//ContactCache and shared by every screen that shows the contact. Any detail may be null.
+
+public final class ContactRecord {
+
+
+    public final long id;
+    public final String name;
+    public final String phone;
+    public final String email;
+    public final String street;
+    public final String city;
+    public final String state;
+    public final String zip;
+
+
+    //constructor
+    public ContactRecord(long id, String name, String phone, String email, String street,
+                         String city, String state, String zip){
+        this.id = id;
+        this.name = name;
+        this.phone = phone;
+        this.email = email;
+        this.street = street;
+        this.city = city;
+        this.state = state;
+        this.zip = zip;
+    }
+
+
+    //withMissingDetailsFrom returns this contact with each detail it lacks (null or empty) taken
+    //from other, or this contact itself if other has none of them. The row ID is kept.
+    public ContactRecord withMissingDetailsFrom(ContactRecord other){
+        ContactRecord filled = new ContactRecord(id,
+                fill(name, other.name), fill(phone, other.phone), fill(email, other.email),
+                fill(street, other.street), fill(city, other.city), fill(state, other.state),
+                fill(zip, other.zip));
+        return filled.hasSameDetails(this) ? this : filled;
+    }
+
+
+    //hasSameDetails returns true if other has the same details as this contact, whatever its row ID.
+    public boolean hasSameDetails(ContactRecord other){
+        return equal(name, other.name) && equal(phone, other.phone) && equal(email, other.email) &&
+                equal(street, other.street) && equal(city, other.city) && equal(state, other.state) &&
+                equal(zip, other.zip);
+    }
+
+
+    private static String fill(String value, String otherValue){
+        return (isEmpty(value) && !isEmpty(otherValue)) ? otherValue : value;
+    }
+
+    private static boolean isEmpty(String value){
+        return value == null || value.isEmpty();
+    }
+
+    private static boolean equal(String a, String b){
+        return (a == null) ? b == null : a.equals(b);
+    }
+}
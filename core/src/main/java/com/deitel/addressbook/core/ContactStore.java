@@ -0,0 +1,35 @@
+package com.deitel.addressbook.core;
+
+import java.util.List;
+
+//ContactStore is the storage ContactBook works on. The app implements it on its SQLite database
+//(see the data package's SQLiteContactStore); on a plain JVM it can be backed by a JDBC database
+//or a map in memory, so ContactBook runs the same way in unit tests and benchmarks.
+
+//A store only ever returns live contacts: deleted contacts (see markDeleted) are invisible to
+//every read. Calls between beginTransaction and endTransaction are applied all together, or not
+//at all if endTransaction is reached without setTransactionSuccessful.
+
+public interface ContactStore {
+
+
+    //scan returns up to limit contacts whose row IDs are greater than afterId, in row ID order.
+    //Only the ID, name, phone and e-mail of the contacts are read; their other details are null.
+    List<ContactRecord> scan(long afterId, int limit);
+
+    //read returns the contacts with row IDs ids that exist, in no particular order.
+    List<ContactRecord> read(long[] ids);
+
+    //update replaces every detail of the contact with contact's row ID. The store keeps any data
+    //derived from the details (sort and phone keys) up to date.
+    void update(ContactRecord contact);
+
+    //markDeleted deletes the contacts with row IDs ids and returns the number deleted.
+    int markDeleted(long[] ids);
+
+    void beginTransaction();
+
+    void setTransactionSuccessful();
+
+    void endTransaction();
+}
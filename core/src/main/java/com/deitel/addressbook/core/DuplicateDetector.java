@@ -0,0 +1,306 @@
+package com.deitel.addressbook.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+//DuplicateDetector finds the contacts that are probably the same person entered more than once.
+//Comparing every contact with every other one takes n*n/2 comparisons, far too many for 100k
+//contacts. Instead each contact gets up to three blocking keys: its phone number's digits, its
+//lower-cased e-mail address and a phonetic code of its name. Only contacts that share a key (a
+//"block") are compared, and each compared pair is scored. Pairs scoring at least DUPLICATE_SCORE
+//are duplicates, and duplicates of duplicates end up in the same group.
+
+//A block holding more than MAX_BLOCK_SIZE contacts (a very common name, say) says little about
+//any pair in it, so it is not compared at all. That bounds the work to about
+//n * MAX_BLOCK_SIZE comparisons.
+
+//DuplicateDetector does not touch the database: AddressBookContentProvider adds the contacts
+//to it and turns the groups into a Cursor. It is not thread-safe.
+
+final class DuplicateDetector {
+
+
+    //the lowest score (see score) of a pair of duplicates.
+    static final double DUPLICATE_SCORE = 0.75;
+
+    //blocks with more contacts than this are not compared.
+    static final int MAX_BLOCK_SIZE = 100;
+
+    //a phone number needs this many digits to be a blocking key. Only the last PHONE_KEY_DIGITS
+    //digits are used, so "+1 (555) 010-0000" and "555-010-0000" get the same key.
+    private static final int MIN_PHONE_DIGITS = 7;
+    private static final int PHONE_KEY_DIGITS = 10;
+
+    //the blocking keys of a contact, in this order. The prefix keeps keys of different kinds apart.
+    private static final int PHONE_KEY = 0;
+    private static final int EMAIL_KEY = 1;
+    private static final int NAME_KEY = 2;
+    private static final String[] KEY_PREFIXES = {"p:", "e:", "n:"};
+
+    //the Soundex digit of each letter from a to z. 0 means the letter is not coded.
+    private static final String SOUNDEX_CODES = "01230120022455012623010202";
+
+
+    //the contacts added so far: their row IDs, normalized names and blocking keys. keys[i] holds
+    //the keys of contact i in the order PHONE_KEY, EMAIL_KEY, NAME_KEY, null for a missing key.
+    private long[] ids = new long[1024];
+    private String[] names = new String[1024];
+    private String[][] keys = new String[1024][];
+    private int size;
+
+
+    //add adds a contact with row ID id. Any of name, phone and email may be null.
+    void add(long id, String name, String phone, String email){
+        if (size == ids.length){
+            ids = Arrays.copyOf(ids, 2 * size);
+            names = Arrays.copyOf(names, 2 * size);
+            keys = Arrays.copyOf(keys, 2 * size);
+        }
+
+        ids[size] = id;
+        names[size] = SortKeys.build(name);
+        String[] contactKeys = {phoneKey(phone), emailKey(email), normalizedNameCode(names[size])};
+        for (int k = 0; k < contactKeys.length; k++)
+            if (contactKeys[k] != null)
+                contactKeys[k] = KEY_PREFIXES[k] + contactKeys[k];
+        keys[size] = contactKeys;
+        size++;
+    }
+
+
+    //findDuplicates returns the groups of duplicate contacts, each as the sorted row IDs of its
+    //contacts. Groups are sorted by their first row ID.
+    List<long[]> findDuplicates(){
+
+        //group the contacts by blocking key.
+        Map<String, List<Integer>> blocks = new HashMap<>();
+        for (int i = 0; i < size; i++){
+            for (String key : keys[i]){
+                if (key == null)
+                    continue;
+                List<Integer> block = blocks.get(key);
+                if (block == null){
+                    block = new ArrayList<>(2);
+                    blocks.put(key, block);
+                }
+                block.add(i);
+            }
+        }
+
+        //the blocks that are too large to compare.
+        Set<String> skippedKeys = new HashSet<>();
+        for (Map.Entry<String, List<Integer>> block : blocks.entrySet())
+            if (block.getValue().size() > MAX_BLOCK_SIZE)
+                skippedKeys.add(block.getKey());
+
+        //compare the contacts within each block. parents is a union-find forest that joins the
+        //groups of the two contacts of every duplicate pair.
+        int[] parents = new int[size];
+        for (int i = 0; i < size; i++)
+            parents[i] = i;
+
+        for (Map.Entry<String, List<Integer>> entry : blocks.entrySet()){
+            List<Integer> block = entry.getValue();
+            if (block.size() < 2 || skippedKeys.contains(entry.getKey()))
+                continue;
+
+            int keyIndex = keyIndex(entry.getKey());
+            for (int a = 0; a < block.size(); a++){
+                for (int b = a + 1; b < block.size(); b++){
+                    int i = block.get(a);
+                    int j = block.get(b);
+                    //a pair sharing several keys is compared only in the block of the first one.
+                    if (sharesEarlierKey(i, j, keyIndex, skippedKeys))
+                        continue;
+                    if (score(i, j) >= DUPLICATE_SCORE)
+                        union(parents, i, j);
+                }
+            }
+        }
+
+        //collect the contacts of the groups of more than one contact. Most contacts have no
+        //duplicate, so we count the groups' sizes first and skip the single contacts.
+        int[] groupSizes = new int[size];
+        for (int i = 0; i < size; i++)
+            groupSizes[find(parents, i)]++;
+
+        Map<Integer, List<Long>> groups = new HashMap<>();
+        for (int i = 0; i < size; i++){
+            int root = find(parents, i);
+            if (groupSizes[root] < 2)
+                continue;
+            List<Long> group = groups.get(root);
+            if (group == null){
+                group = new ArrayList<>(groupSizes[root]);
+                groups.put(root, group);
+            }
+            group.add(ids[i]);
+        }
+
+        List<long[]> duplicates = new ArrayList<>(groups.size());
+        for (List<Long> group : groups.values()){
+            long[] groupIds = new long[group.size()];
+            for (int i = 0; i < groupIds.length; i++)
+                groupIds[i] = group.get(i);
+            Arrays.sort(groupIds);
+            duplicates.add(groupIds);
+        }
+        Collections.sort(duplicates, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return (a[0] < b[0]) ? -1 : ((a[0] == b[0]) ? 0 : 1);
+            }
+        });
+        return duplicates;
+    }
+
+
+    //score returns how likely contacts i and j are the same person, from 0 to 1: the share of the
+    //fields both contacts have that agree. The name always counts (1 if the normalized names are
+    //equal, 0.5 if they only sound alike); the phone and e-mail count only if both contacts have
+    //one. So two "John Smith"s with nothing else are duplicates, but not if their phone numbers
+    //differ.
+    private double score(int i, int j){
+        double matched = 0;
+        int compared = 1;
+
+        if (names[i].equals(names[j]))
+            matched += 1;
+        else if (sameKey(i, j, NAME_KEY))
+            matched += 0.5;
+
+        if (keys[i][PHONE_KEY] != null && keys[j][PHONE_KEY] != null){
+            compared++;
+            if (sameKey(i, j, PHONE_KEY))
+                matched += 1;
+        }
+        if (keys[i][EMAIL_KEY] != null && keys[j][EMAIL_KEY] != null){
+            compared++;
+            if (sameKey(i, j, EMAIL_KEY))
+                matched += 1;
+        }
+        return matched / compared;
+    }
+
+
+    //sharesEarlierKey returns true if contacts i and j also share a key that comes before keyIndex
+    //and whose block is compared, so the pair is (or was) scored in that block instead.
+    private boolean sharesEarlierKey(int i, int j, int keyIndex, Set<String> skippedKeys){
+        for (int k = 0; k < keyIndex; k++)
+            if (sameKey(i, j, k) && !skippedKeys.contains(keys[i][k]))
+                return true;
+        return false;
+    }
+
+    private boolean sameKey(int i, int j, int k){
+        return keys[i][k] != null && keys[i][k].equals(keys[j][k]);
+    }
+
+    private static int keyIndex(String key){
+        for (int k = 0; k < KEY_PREFIXES.length; k++)
+            if (key.startsWith(KEY_PREFIXES[k]))
+                return k;
+        throw new IllegalArgumentException(key);
+    }
+
+
+    //find returns the root of contact i's group, shortening the path to it on the way.
+    private static int find(int[] parents, int i){
+        while (parents[i] != i){
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    //union joins the groups of contacts i and j.
+    private static void union(int[] parents, int i, int j){
+        parents[find(parents, i)] = find(parents, j);
+    }
+
+
+    //phoneKey returns the last PHONE_KEY_DIGITS digits of phone, or null if it has fewer than
+    //MIN_PHONE_DIGITS digits.
+    static String phoneKey(String phone){
+        if (phone == null)
+            return null;
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++)
+            if (phone.charAt(i) >= '0' && phone.charAt(i) <= '9')
+                digits.append(phone.charAt(i));
+        if (digits.length() < MIN_PHONE_DIGITS)
+            return null;
+        return digits.substring(Math.max(0, digits.length() - PHONE_KEY_DIGITS));
+    }
+
+
+    //emailKey returns the lower-cased e-mail address, or null if email is not an address.
+    static String emailKey(String email){
+        if (email == null || email.indexOf('@') == -1)
+            return null;
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+
+    //nameCode returns the Soundex codes of the first and last word of name, so "Jon Smyth" and
+    //"John Smith" get the same code ("J500S530"). Words without any letter from a to z (numbers,
+    //non-Latin scripts) are ignored. Returns null if name has no such word.
+    static String nameCode(String name){
+        return normalizedNameCode(SortKeys.build(name));
+    }
+
+    //normalizedNameCode returns the nameCode of a name already normalized by SortKeys.build.
+    private static String normalizedNameCode(String name){
+        String first = null;
+        String last = null;
+        for (String word : name.split(" ")){
+            String code = soundex(word);
+            if (code == null)
+                continue;
+            if (first == null)
+                first = code;
+            else
+                last = code;
+        }
+        if (first == null)
+            return null;
+        return (last == null) ? first : first + last;
+    }
+
+
+    //soundex returns the American Soundex code of a lower-case word: its first letter followed by
+    //three digits for the consonants after it, e.g. "R163" for both "robert" and "rupert".
+    //Letters other than a to z are ignored. Returns null if word has no such letter.
+    static String soundex(String word){
+        StringBuilder code = new StringBuilder(4);
+        char previous = 0;
+        for (int i = 0; i < word.length() && code.length() < 4; i++){
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z')
+                continue;
+            char digit = SOUNDEX_CODES.charAt(c - 'a');
+
+            if (code.length() == 0)
+                code.append(Character.toUpperCase(c));
+            else if (digit != '0' && digit != previous)
+                code.append(digit);
+
+            //h and w do not separate two consonants with the same code, vowels do.
+            if (c != 'h' && c != 'w')
+                previous = digit;
+        }
+        if (code.length() == 0)
+            return null;
+        while (code.length() < 4)
+            code.append('0');
+        return code.toString();
+    }
+}
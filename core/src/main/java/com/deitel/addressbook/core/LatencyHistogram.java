@@ -0,0 +1,115 @@
+package com.deitel.addressbook.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//LatencyHistogram counts recorded values, such as the latencies of an operation in microseconds,
+//in buckets whose width grows with the value, like HdrHistogram does: values below SUB_BUCKET_COUNT
+//have a bucket each, and every following power of two is split into SUB_BUCKET_COUNT / 2 buckets
+//of equal width. A bucket is therefore never wider than about 1/8 of its values (SUB_BUCKET_BITS
+//is 4), which is precise enough for percentiles, and a histogram up to an hour in microseconds
+//needs fewer than 250 buckets.
+
+//All buckets are allocated up front and counted with atomic increments, so record allocates
+//nothing, takes no lock and may be called from any thread. The readers (getValueAtPercentile and
+//the others) see each count as it is at the time they read it, so a read made while values are
+//being recorded is approximate.
+
+public final class LatencyHistogram {
+
+
+    //each power of two is split into SUB_BUCKET_COUNT / 2 buckets (see indexOf).
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+
+    //constructor. Values above highestTrackableValue are recorded as highestTrackableValue.
+    public LatencyHistogram(long highestTrackableValue){
+        if (highestTrackableValue < 1)
+            throw new IllegalArgumentException("Invalid highest trackable value: " + highestTrackableValue);
+        this.highestTrackableValue = highestTrackableValue;
+        counts = new AtomicLongArray(indexOf(highestTrackableValue) + 1);
+    }
+
+
+    //record adds value to the histogram. Negative values are recorded as 0.
+    public void record(long value){
+        value = Math.max(0, Math.min(value, highestTrackableValue));
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)){
+            //another thread raised the maximum in between; try again against its value.
+        }
+    }
+
+
+    //getCount returns the number of values recorded.
+    public long getCount(){
+        return count.get();
+    }
+
+
+    //getTotal returns the sum of the values recorded.
+    public long getTotal(){
+        return total.get();
+    }
+
+
+    //getMax returns the highest value recorded, 0 if none was.
+    public long getMax(){
+        return max.get();
+    }
+
+
+    //getValueAtPercentile returns the value that percentile percent (0 to 100) of the recorded values
+    //are at or below, as the highest value of its bucket, but never more than getMax. Returns 0 if
+    //no value was recorded.
+    public long getValueAtPercentile(double percentile){
+        long recorded = 0;
+        for (int i = 0; i < counts.length(); i++)
+            recorded += counts.get(i);
+        if (recorded == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * recorded));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++){
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValueOf(i), getMax());
+        }
+        return getMax();
+    }
+
+
+    //indexOf returns the bucket of value. A value of magnitude m (its highest bit) at or above
+    //SUB_BUCKET_BITS is shifted right until only its top SUB_BUCKET_BITS bits remain, which
+    //picks one of the SUB_BUCKET_COUNT / 2 buckets of its power of two.
+    static int indexOf(long value){
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift); //SUB_BUCKET_COUNT / 2 to SUB_BUCKET_COUNT - 1
+        return shift * (SUB_BUCKET_COUNT / 2) + subBucket;
+    }
+
+
+    //highestValueOf returns the highest value that falls into bucket index.
+    static long highestValueOf(int index){
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int shift = index / (SUB_BUCKET_COUNT / 2) - 1;
+        long subBucket = index % (SUB_BUCKET_COUNT / 2) + SUB_BUCKET_COUNT / 2;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.deitel.addressbook.core;
+
+//MatchQueries turns the text the user searched for into the MATCH expression of a query of the
+//contacts' full-text search table.
+
+public final class MatchQueries {
+
+
+    private MatchQueries(){
+    }
+
+
+    //build turns text into an FTS MATCH expression. Each word becomes a prefix query (word*) and all
+    //words must match. Only letters and digits are kept, so characters with a special meaning in
+    //FTS queries (quotes, '-', '*', ...) can't cause a syntax error. Returns null if the text
+    //contains no words.
+    public static String build(String text){
+
+        StringBuilder matchQuery = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+
+        for (int i = 0; i <= text.length(); i++){
+            char c = (i < text.length()) ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c))
+                word.append(Character.toLowerCase(c));
+            else if (word.length() > 0){
+                if (matchQuery.length() > 0)
+                    matchQuery.append(' ');
+                matchQuery.append(word).append('*');
+                word.setLength(0);
+            }
+        }
+        return (matchQuery.length() > 0) ? matchQuery.toString() : null;
+    }
+}
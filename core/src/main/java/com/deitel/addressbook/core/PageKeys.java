@@ -0,0 +1,37 @@
+package com.deitel.addressbook.core;
+
+//PageKeys builds and parses the page keys of the contact list's keyset pagination. A page key
+//names a row by its position in the list order, the sort key (see SortKeys) followed by the row ID,
+//e.g. "ada lovelace,42". A page of the list is the rows after one key and up to another.
+
+public final class PageKeys {
+
+
+    private PageKeys(){
+    }
+
+
+    //build returns the page key of the row with sortKey and id. The ID comes last so the sort key
+    //itself may contain commas.
+    public static String build(String sortKey, long id){
+        return sortKey + "," + id;
+    }
+
+
+    //sortKeyOf returns the sort key of key: everything before its last comma.
+    public static String sortKeyOf(String key){
+        return key.substring(0, Math.max(key.lastIndexOf(','), 0));
+    }
+
+
+    //idOf returns the row ID of key: the number after its last comma. Page keys come from Uris, so
+    //a malformed key throws an IllegalArgumentException.
+    public static long idOf(String key){
+        try {
+            return Long.parseLong(key.substring(key.lastIndexOf(',') + 1));
+        }
+        catch (NumberFormatException e){
+            throw new IllegalArgumentException("Invalid page key: " + key);
+        }
+    }
+}
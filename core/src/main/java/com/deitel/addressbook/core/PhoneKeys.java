@@ -0,0 +1,37 @@
+package com.deitel.addressbook.core;
+
+//PhoneKeys builds the value of the Contact.COLUMN_PHONE_KEY column from a contact's phone number:
+//the number's digits in reverse order. "+1 (555) 010-0000" becomes "00000105551".
+
+//Two numbers that end in the same digits, such as "555-010-0000" and "+1 555 010 0000", have keys
+//that start with the same digits. A lookup by number can therefore find every contact whose number
+//ends like the looked-up one with a range scan of the phone key index, instead of reading every
+//contact and comparing the free-form numbers as typed.
+
+public final class PhoneKeys {
+
+
+    //numbers are matched on at least this many trailing digits, enough to tell apart local numbers
+    //but not so many that a number with and without its country or area code no longer matches.
+    public static final int MIN_MATCH_DIGITS = 7;
+
+
+    private PhoneKeys(){
+    }
+
+
+    //build returns the phone key for phone, or null if phone is null or has no digits.
+    public static String build(String phone){
+
+        if (phone == null)
+            return null;
+
+        StringBuilder key = new StringBuilder(phone.length());
+        for (int i = phone.length() - 1; i >= 0; i--){
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9')
+                key.append(c);
+        }
+        return (key.length() > 0) ? key.toString() : null;
+    }
+}
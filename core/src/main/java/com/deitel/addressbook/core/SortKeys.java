@@ -0,0 +1,45 @@
+package com.deitel.addressbook.core;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+//SortKeys builds the value of the Contact.COLUMN_SORT_KEY column from a contact's name.
+//The contact list is ordered by this key. Because the key is already normalized, SQLite can compare
+//it byte by byte, use an index for the ORDER BY and never has to sort the list itself.
+
+public final class SortKeys {
+
+
+    //matches the accents and other combining marks left after decomposing a string.
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    //matches runs of whitespace.
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    //The leading article that is ignored when sorting, so "The Beatles" is listed under B.
+    //"A" and "An" are kept because in a contact name they are usually an initial ("A. Smith").
+    private static final String LEADING_ARTICLE = "the ";
+
+
+    private SortKeys(){
+    }
+
+
+    //build returns the sort key for name: accents are removed (an accented e becomes e),
+    //letters are lower-cased, whitespace is collapsed and a leading "the" is dropped.
+    //A null name gets an empty key.
+    public static String build(String name){
+
+        if (name == null)
+            return "";
+
+        String key = Normalizer.normalize(name, Normalizer.Form.NFD);
+        key = COMBINING_MARKS.matcher(key).replaceAll("");
+        key = WHITESPACE.matcher(key.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+
+        if (key.startsWith(LEADING_ARTICLE) && key.length() > LEADING_ARTICLE.length())
+            key = key.substring(LEADING_ARTICLE.length());
+        return key;
+    }
+}
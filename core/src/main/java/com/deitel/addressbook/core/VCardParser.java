@@ -0,0 +1,369 @@
+package com.deitel.addressbook.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+//VCardParser reads the contacts of a vCard (.vcf) file one at a time, so a file with tens of
+//thousands of contacts is never held in memory. It understands vCard 2.1, 3.0 and 4.0: folded
+//lines, quoted-printable values and escaped characters. next() returns one Card per
+//BEGIN:VCARD ... END:VCARD block, holding the properties that map to the columns of the contacts
+//table (see DatabaseDescription.Contact).
+
+//The value of every other property (PHOTO, NOTE, ...) is skipped as it is read, without being
+//stored, so even a large embedded photo costs no memory. Values we keep are cut off at
+//MAX_VALUE_LENGTH characters.
+
+public final class VCardParser {
+
+
+    //Card holds the fields of one vCard that the contacts table can store. Any field may be null.
+    public static final class Card {
+        public String name;
+        public String phone;
+        public String email;
+        public String street;
+        public String city;
+        public String state;
+        public String zip;
+    }
+
+
+    //the longest value we keep. Longer values are cut off, so a malformed file can not make us
+    //read a whole file into one String.
+    static final int MAX_VALUE_LENGTH = 4096;
+
+    //the longest property name with its parameters, e.g. "item1.TEL;TYPE=CELL,PREF".
+    private static final int MAX_NAME_LENGTH = 256;
+
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+
+    private final Reader reader;
+
+    //a character read ahead by read(), or NONE.
+    private static final int NONE = -2;
+    private int pushedBack = NONE;
+
+    //the fields of the N property, used if the card has no FN.
+    private String structuredName;
+
+    //whether the phone and email of the current card came from a property marked preferred.
+    private boolean preferredPhone;
+    private boolean preferredEmail;
+
+
+    //constructor. reader should be buffered; VCardParser reads it one character at a time.
+    public VCardParser(Reader reader){
+        this.reader = reader;
+    }
+
+
+    //next returns the next card of the file, or null at the end of the file. Lines outside of a
+    //BEGIN:VCARD ... END:VCARD block and properties we do not recognize are ignored.
+    public Card next() throws IOException {
+
+        Card card = null;
+        //vCard 2.1 can nest a card inside another (AGENT), whose properties we ignore.
+        int depth = 0;
+
+        while (true){
+            String head = readName();
+            if (head == null)
+                return null; //end of file
+
+            //head is "[group.]NAME[;PARAM...]". Property names are case insensitive.
+            String[] parts = head.split(";");
+            String name = parts[0].substring(parts[0].lastIndexOf('.') + 1).toUpperCase(Locale.ROOT);
+
+            if (name.equals("BEGIN") || name.equals("END")){
+                String value = readValue(false, MAX_NAME_LENGTH);
+                if (!value.trim().equalsIgnoreCase("VCARD"))
+                    continue;
+
+                if (name.equals("BEGIN")){
+                    if (depth++ == 0){
+                        card = new Card();
+                        structuredName = null;
+                        preferredPhone = false;
+                        preferredEmail = false;
+                    }
+                }
+                else if (depth > 0 && --depth == 0){
+                    if (card.name == null)
+                        card.name = structuredName;
+                    return card;
+                }
+                continue;
+            }
+
+            //a property outside of a card or inside a nested card.
+            if (depth != 1 || !isKnownProperty(name)){
+                skipValue(isQuotedPrintable(parts));
+                continue;
+            }
+
+            String value = readValue(isQuotedPrintable(parts), MAX_VALUE_LENGTH);
+            value = decode(value, parts);
+            boolean preferred = isPreferred(parts);
+
+            switch (name){
+                case "FN":
+                    card.name = emptyToNull(unescape(value).trim());
+                    break;
+                case "N":
+                    structuredName = formatStructuredName(splitStructured(value));
+                    break;
+                case "TEL":
+                    if (card.phone == null || (preferred && !preferredPhone)){
+                        card.phone = emptyToNull(unescape(value).trim());
+                        preferredPhone = preferred;
+                    }
+                    break;
+                case "EMAIL":
+                    if (card.email == null || (preferred && !preferredEmail)){
+                        card.email = emptyToNull(unescape(value).trim());
+                        preferredEmail = preferred;
+                    }
+                    break;
+                case "ADR":
+                    //ADR is "PO box;extended;street;locality;region;postal code;country".
+                    //We keep the first address, like the contacts table does.
+                    if (card.street == null && card.city == null && card.state == null && card.zip == null){
+                        List<String> fields = splitStructured(value);
+                        card.street = field(fields, 2);
+                        card.city = field(fields, 3);
+                        card.state = field(fields, 4);
+                        card.zip = field(fields, 5);
+                    }
+                    break;
+            }
+        }
+    }
+
+
+    //isKnownProperty returns true for the properties that map to a column of the contacts table.
+    private static boolean isKnownProperty(String name){
+        return name.equals("FN") || name.equals("N") || name.equals("TEL") ||
+                name.equals("EMAIL") || name.equals("ADR");
+    }
+
+
+    //read returns the next character of the unfolded file, or -1 at the end of the file.
+    //Every line break (CRLF, LF or CR) is returned as '\n'. A line break followed by a space or a
+    //tab is a folded line, so both are dropped and the line continues.
+    private int read() throws IOException {
+        while (true){
+            int c;
+            if (pushedBack != NONE){
+                c = pushedBack;
+                pushedBack = NONE;
+            }
+            else
+                c = reader.read();
+
+            if (c != '\r' && c != '\n')
+                return c;
+
+            int next = reader.read();
+            if (c == '\r' && next == '\n')
+                next = reader.read();
+            if (next == ' ' || next == '\t')
+                continue; //a folded line
+            pushedBack = next;
+            return '\n';
+        }
+    }
+
+
+    //readName reads a property's name and parameters, up to the ':' that starts its value.
+    //Returns null at the end of the file. Empty lines and lines without a ':' are skipped.
+    private String readName() throws IOException {
+        StringBuilder name = new StringBuilder();
+        while (true){
+            int c = read();
+            if (c == -1)
+                return null;
+            if (c == ':' && name.length() != 0)
+                return name.toString();
+            if (c == '\n'){
+                name.setLength(0);
+                continue;
+            }
+            if (name.length() < MAX_NAME_LENGTH)
+                name.append((char) c);
+        }
+    }
+
+
+    //readValue reads a property's value up to the end of its line, keeping at most maxLength
+    //characters. In a quoted-printable value a '=' at the end of a line is a soft line break,
+    //and the value continues on the next line.
+    private String readValue(boolean quotedPrintable, int maxLength) throws IOException {
+        StringBuilder value = new StringBuilder();
+        while (true){
+            int c = read();
+            if (c == -1)
+                break;
+            if (c == '\n'){
+                if (quotedPrintable && value.length() > 0 && value.charAt(value.length() - 1) == '='){
+                    value.setLength(value.length() - 1);
+                    continue;
+                }
+                break;
+            }
+            if (value.length() < maxLength)
+                value.append((char) c);
+        }
+        return value.toString();
+    }
+
+
+    //skipValue reads past a property's value without storing it.
+    private void skipValue(boolean quotedPrintable) throws IOException {
+        int previous = -1;
+        while (true){
+            int c = read();
+            if (c == -1 || (c == '\n' && !(quotedPrintable && previous == '=')))
+                return;
+            previous = c;
+        }
+    }
+
+
+    //isQuotedPrintable returns true if the property's parameters declare a quoted-printable
+    //value: "ENCODING=QUOTED-PRINTABLE" in vCard 2.1, or just "QUOTED-PRINTABLE".
+    private static boolean isQuotedPrintable(String[] parts){
+        for (int i = 1; i < parts.length; i++){
+            String parameter = parts[i].trim();
+            if (parameter.equalsIgnoreCase("QUOTED-PRINTABLE") ||
+                    parameter.equalsIgnoreCase("ENCODING=QUOTED-PRINTABLE"))
+                return true;
+        }
+        return false;
+    }
+
+
+    //isPreferred returns true if the property is marked as the preferred one of its kind:
+    //"PREF" (2.1), "TYPE=...,PREF" (3.0) or "PREF=1" (4.0).
+    private static boolean isPreferred(String[] parts){
+        for (int i = 1; i < parts.length; i++){
+            String parameter = parts[i].trim().toUpperCase(Locale.ROOT);
+            if (parameter.equals("PREF") || parameter.equals("PREF=1"))
+                return true;
+            if (parameter.startsWith("TYPE=")){
+                for (String type : parameter.substring(5).replace("\"", "").split(","))
+                    if (type.equals("PREF"))
+                        return true;
+            }
+        }
+        return false;
+    }
+
+
+    //decode turns a quoted-printable value back into text, using the property's CHARSET
+    //parameter (UTF-8 if it has none). Other values are returned unchanged.
+    private static String decode(String value, String[] parts){
+        if (!isQuotedPrintable(parts))
+            return value;
+
+        String charset = DEFAULT_CHARSET;
+        for (int i = 1; i < parts.length; i++){
+            String parameter = parts[i].trim();
+            if (parameter.regionMatches(true, 0, "CHARSET=", 0, 8))
+                charset = parameter.substring(8);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+        for (int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if (c == '=' && i + 2 < value.length()){
+                int high = Character.digit(value.charAt(i + 1), 16);
+                int low = Character.digit(value.charAt(i + 2), 16);
+                if (high != -1 && low != -1){
+                    bytes.write(high * 16 + low);
+                    i += 2;
+                    continue;
+                }
+            }
+            bytes.write(c);
+        }
+
+        try {
+            return bytes.toString(charset);
+        }
+        catch (UnsupportedEncodingException e){
+            try {
+                return bytes.toString(DEFAULT_CHARSET);
+            }
+            catch (UnsupportedEncodingException impossible){
+                throw new AssertionError(impossible);
+            }
+        }
+    }
+
+
+    //splitStructured splits a structured value such as N or ADR at the ';'s that are not escaped,
+    //and unescapes each field.
+    private static List<String> splitStructured(String value){
+        List<String> fields = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if (c == '\\')
+                i++; //skip the escaped character
+            else if (c == ';'){
+                fields.add(unescape(value.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        fields.add(unescape(value.substring(start)));
+        return fields;
+    }
+
+
+    //unescape replaces the escape sequences \\, \; \, and \n of a vCard value.
+    private static String unescape(String value){
+        if (value.indexOf('\\') == -1)
+            return value;
+
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()){
+                char escaped = value.charAt(++i);
+                text.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            }
+            else
+                text.append(c);
+        }
+        return text.toString();
+    }
+
+
+    //formatStructuredName turns the fields of N ("family;given;middle;prefix;suffix") into a
+    //name like the ones users type into AddEditFragment: "given middle family".
+    private static String formatStructuredName(List<String> fields){
+        StringBuilder name = new StringBuilder();
+        for (int index : new int[]{1, 2, 0}){
+            String field = field(fields, index);
+            if (field != null)
+                name.append(name.length() == 0 ? "" : " ").append(field);
+        }
+        return emptyToNull(name.toString());
+    }
+
+
+    //field returns the trimmed field at index, or null if it is missing or empty.
+    private static String field(List<String> fields, int index){
+        return index < fields.size() ? emptyToNull(fields.get(index).trim()) : null;
+    }
+
+    private static String emptyToNull(String value){
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,125 @@
+package com.deitel.addressbook.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for ContactBook, which will execute on the development machine (host).
+ * The contacts are kept by an in-memory ContactStore.
+ */
+public class ContactBookTest {
+
+    private MemoryStore store;
+    private ContactBook book;
+
+    @Before
+    public void setUp() {
+        store = new MemoryStore();
+        //a small chunk size, so scans take several chunks.
+        book = new ContactBook(store, 2);
+    }
+
+    @Test
+    public void findDuplicates_scansEveryChunk() {
+        store.put(new ContactRecord(1, "John Smith", "555-010-0000", null, null, null, null, null));
+        store.put(new ContactRecord(2, "Ada Lovelace", null, null, null, null, null, null));
+        store.put(new ContactRecord(3, "Grace Hopper", null, null, null, null, null, null));
+        store.put(new ContactRecord(4, "Alan Turing", null, null, null, null, null, null));
+        store.put(new ContactRecord(5, "Jon Smyth", "+1 555 010 0000", null, null, null, null, null));
+
+        List<long[]> groups = book.findDuplicates();
+        assertEquals(1, groups.size());
+        assertArrayEquals(new long[]{1, 5}, groups.get(0));
+    }
+
+    @Test
+    public void merge_fillsMissingDetailsAndDeletesTheOthers() {
+        store.put(new ContactRecord(1, "Ada Lovelace", "", null, null, "London", null, null));
+        store.put(new ContactRecord(2, "Ada King", "555-0100", "ada@example.com", null, "Paris", null, null));
+        store.put(new ContactRecord(3, "A. Lovelace", "555-0199", null, "12 St James's Sq", null, null, null));
+
+        assertArrayEquals(new long[]{2, 3}, book.merge(new long[]{1, 2, 3, 9}));
+
+        ContactRecord merged = store.contacts.get(1L);
+        assertEquals("Ada Lovelace", merged.name);
+        assertEquals("555-0100", merged.phone);
+        assertEquals("ada@example.com", merged.email);
+        assertEquals("12 St James's Sq", merged.street);
+        assertEquals("London", merged.city);
+        assertNull(merged.zip);
+        assertEquals(1, store.contacts.size());
+        assertTrue(store.committed);
+    }
+
+    @Test
+    public void merge_intoAMissingContact_changesNothing() {
+        store.put(new ContactRecord(2, "Ada King", null, null, null, null, null, null));
+
+        assertEquals(0, book.merge(new long[]{1, 2}).length);
+        assertEquals(1, store.contacts.size());
+    }
+
+    //MemoryStore keeps the contacts in a map sorted by row ID. Deleted contacts are removed.
+    private static final class MemoryStore implements ContactStore {
+        final TreeMap<Long, ContactRecord> contacts = new TreeMap<>();
+        boolean committed;
+
+        void put(ContactRecord contact) {
+            contacts.put(contact.id, contact);
+        }
+
+        @Override
+        public List<ContactRecord> scan(long afterId, int limit) {
+            List<ContactRecord> chunk = new ArrayList<>();
+            for (Map.Entry<Long, ContactRecord> entry : contacts.tailMap(afterId, false).entrySet()) {
+                if (chunk.size() == limit)
+                    break;
+                chunk.add(entry.getValue());
+            }
+            return chunk;
+        }
+
+        @Override
+        public List<ContactRecord> read(long[] ids) {
+            List<ContactRecord> found = new ArrayList<>();
+            for (long id : ids)
+                if (contacts.containsKey(id))
+                    found.add(contacts.get(id));
+            return found;
+        }
+
+        @Override
+        public void update(ContactRecord contact) {
+            contacts.put(contact.id, contact);
+        }
+
+        @Override
+        public int markDeleted(long[] ids) {
+            int deleted = 0;
+            for (long id : ids)
+                if (contacts.remove(id) != null)
+                    deleted++;
+            return deleted;
+        }
+
+        @Override
+        public void beginTransaction() {
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            committed = true;
+        }
+
+        @Override
+        public void endTransaction() {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.deitel.addressbook.core;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for DuplicateDetector, which will execute on the development machine (host).
+ */
+public class DuplicateDetectorTest {
+
+    @Test
+    public void soundex_matchesTheReferenceCodes() {
+        assertEquals("R163", DuplicateDetector.soundex("robert"));
+        assertEquals("R163", DuplicateDetector.soundex("rupert"));
+        assertEquals("A261", DuplicateDetector.soundex("ashcraft"));
+        assertEquals("T522", DuplicateDetector.soundex("tymczak"));
+        assertEquals("P236", DuplicateDetector.soundex("pfister"));
+        assertNull(DuplicateDetector.soundex("42"));
+    }
+
+    @Test
+    public void keys_areNormalized() {
+        assertEquals("5550100000", DuplicateDetector.phoneKey("+1 (555) 010-0000"));
+        assertEquals("5550100000", DuplicateDetector.phoneKey("555.010.0000"));
+        assertNull(DuplicateDetector.phoneKey("911"));
+        assertEquals("ada@example.com", DuplicateDetector.emailKey(" Ada@Example.COM "));
+        assertNull(DuplicateDetector.emailKey("not an address"));
+        assertEquals(DuplicateDetector.nameCode("John Smith"), DuplicateDetector.nameCode("Jon Smyth"));
+    }
+
+    @Test
+    public void samePhoneAndSimilarName_areDuplicates() {
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(1, "John Smith", "555-010-0000", null);
+        detector.add(2, "Jon Smyth", "+1 555 010 0000", "jon@example.com");
+        detector.add(3, "Mary Smith", "555-010-0000", null);
+
+        List<long[]> groups = detector.findDuplicates();
+        assertEquals(1, groups.size());
+        assertArrayEquals(new long[]{1, 2}, groups.get(0));
+    }
+
+    @Test
+    public void sameNameWithDifferentPhones_areNotDuplicates() {
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(1, "John Smith", "555-010-0000", null);
+        detector.add(2, "John Smith", "555-010-9999", null);
+
+        assertTrue(detector.findDuplicates().isEmpty());
+    }
+
+    @Test
+    public void duplicatesOfDuplicates_formOneGroup() {
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(7, "Ada Lovelace", null, "ada@example.com");
+        detector.add(3, "ada lovelace", "555-010-0000", "ADA@example.com");
+        detector.add(5, "Ada  Lovelace", "555 010 0000", null);
+        detector.add(9, "Charles Babbage", null, null);
+
+        List<long[]> groups = detector.findDuplicates();
+        assertEquals(1, groups.size());
+        assertArrayEquals(new long[]{3, 5, 7}, groups.get(0));
+    }
+
+    @Test
+    public void oversizedBlocks_areNotCompared() {
+        //every contact has the same name, so only the name block joins them, and it is too large.
+        DuplicateDetector detector = new DuplicateDetector();
+        for (int i = 0; i <= DuplicateDetector.MAX_BLOCK_SIZE; i++)
+            detector.add(i, "John Smith", null, null);
+
+        assertTrue(detector.findDuplicates().isEmpty());
+    }
+}
@@ -0,0 +1,49 @@
+package com.deitel.addressbook.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LatencyHistogram, which will execute on the development machine (host).
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueOnce() {
+        long previousHighest = -1;
+        for (int index = 0; index <= LatencyHistogram.indexOf(Long.MAX_VALUE); index++) {
+            long highest = LatencyHistogram.highestValueOf(index);
+            assertEquals(index, LatencyHistogram.indexOf(previousHighest + 1));
+            assertEquals(index, LatencyHistogram.indexOf(highest));
+            //no bucket is wider than an eighth of its lowest value.
+            assertTrue(highest - previousHighest <= Math.max(1, (previousHighest + 1) / 8));
+            previousHighest = highest;
+        }
+    }
+
+    @Test
+    public void percentiles_areWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram(3600000000L);
+        for (int value = 1; value <= 10000; value++)
+            histogram.record(value);
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(50005000, histogram.getTotal());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000, histogram.getValueAtPercentile(50), 5000 / 8);
+        assertEquals(9900, histogram.getValueAtPercentile(99), 9900 / 8);
+        assertEquals(10000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void valuesOutOfRange_areClamped() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        histogram.record(-5);
+        histogram.record(1000000);
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertEquals(0, new LatencyHistogram(1000).getValueAtPercentile(99));
+    }
+}
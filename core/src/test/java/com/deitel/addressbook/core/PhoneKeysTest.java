@@ -0,0 +1,32 @@
+package com.deitel.addressbook.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for PhoneKeys, which will execute on the development machine (host).
+ */
+public class PhoneKeysTest {
+
+    @Test
+    public void build_reversesTheDigits() {
+        assertEquals("00000105551", PhoneKeys.build("+1 (555) 010-0000"));
+        assertEquals("0000010555", PhoneKeys.build("555.010.0000"));
+        assertEquals("119", PhoneKeys.build("911"));
+    }
+
+    @Test
+    public void build_returnsNullWithoutDigits() {
+        assertNull(PhoneKeys.build(null));
+        assertNull(PhoneKeys.build(""));
+        assertNull(PhoneKeys.build("ask reception"));
+    }
+
+    @Test
+    public void numbersEndingAlike_shareTheKeyPrefix() {
+        String local = PhoneKeys.build("555-010-0000");
+        String international = PhoneKeys.build("+1 555 010 0000");
+        assertTrue(international.startsWith(local));
+    }
+}
@@ -0,0 +1,148 @@
+package com.deitel.addressbook.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for VCardParser, which will execute on the development machine (host).
+ */
+public class VCardParserTest {
+
+    @Test
+    public void vCard30_mapsToContactColumns() throws IOException {
+        VCardParser parser = parser(
+                "BEGIN:VCARD",
+                "VERSION:3.0",
+                "N:Lovelace;Ada;;;",
+                "FN:Ada Lovelace",
+                "TEL;TYPE=HOME:555-0100",
+                "EMAIL;TYPE=INTERNET:ada@example.com",
+                "ADR;TYPE=HOME:;;12 St James\\, Square;London;Middlesex;SW1Y 4JH;UK",
+                "END:VCARD");
+
+        VCardParser.Card card = parser.next();
+        assertEquals("Ada Lovelace", card.name);
+        assertEquals("555-0100", card.phone);
+        assertEquals("ada@example.com", card.email);
+        assertEquals("12 St James, Square", card.street);
+        assertEquals("London", card.city);
+        assertEquals("Middlesex", card.state);
+        assertEquals("SW1Y 4JH", card.zip);
+        assertNull(parser.next());
+    }
+
+    @Test
+    public void structuredName_isUsedWithoutFormattedName() throws IOException {
+        VCardParser.Card card = parser("BEGIN:VCARD", "N:Hopper;Grace;Brewster;;", "END:VCARD").next();
+
+        assertEquals("Grace Brewster Hopper", card.name);
+    }
+
+    @Test
+    public void foldedLines_areUnfolded() throws IOException {
+        VCardParser.Card card = parser(
+                "BEGIN:VCARD",
+                "FN:Ada",
+                "  Lovelace",
+                "EMAIL:ada@exam",
+                "\tple.com",
+                "END:VCARD").next();
+
+        assertEquals("Ada Lovelace", card.name);
+        assertEquals("ada@example.com", card.email);
+    }
+
+    @Test
+    public void quotedPrintable_isDecodedWithItsCharset() throws IOException {
+        VCardParser.Card card = parser(
+                "BEGIN:VCARD",
+                "VERSION:2.1",
+                "FN;CHARSET=UTF-8;ENCODING=QUOTED-PRINTABLE:Ren=C3=A9 Des=",
+                "cartes",
+                "END:VCARD").next();
+
+        assertEquals("Ren\u00e9 Descartes", card.name);
+    }
+
+    @Test
+    public void preferredPhone_winsOverFirstPhone() throws IOException {
+        VCardParser.Card card = parser(
+                "BEGIN:VCARD",
+                "FN:Alan Turing",
+                "TEL;TYPE=WORK:555-0101",
+                "item1.TEL;TYPE=CELL,PREF:555-0102",
+                "TEL:555-0103",
+                "END:VCARD").next();
+
+        assertEquals("555-0102", card.phone);
+    }
+
+    @Test
+    public void lowerCaseNames_areMatchedInTurkishLocale() throws IOException {
+        //in Turkish, "i".toUpperCase() is a dotted capital I, so "email" would not match "EMAIL".
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            VCardParser.Card card = parser(
+                    "BEGIN:VCARD",
+                    "fn:Alan Turing",
+                    "email:alan@example.com",
+                    "tel:555-0101",
+                    "tel;type=cell,pref:555-0102",
+                    "END:VCARD").next();
+
+            assertEquals("alan@example.com", card.email);
+            assertEquals("555-0102", card.phone);
+        }
+        finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void unknownPropertiesAndNestedCards_areSkipped() throws IOException {
+        char[] photo = new char[100000];
+        Arrays.fill(photo, 'A');
+        VCardParser parser = parser(
+                "junk before the first card",
+                "BEGIN:VCARD",
+                "FN:Charles Babbage",
+                "PHOTO;ENCODING=b;TYPE=JPEG:" + new String(photo),
+                "AGENT:BEGIN:VCARD",
+                "BEGIN:VCARD",
+                "FN:Nested Agent",
+                "END:VCARD",
+                "END:VCARD",
+                "BEGIN:VCARD",
+                "EMAIL:nameless@example.com",
+                "END:VCARD");
+
+        assertEquals("Charles Babbage", parser.next().name);
+        VCardParser.Card nameless = parser.next();
+        assertNull(nameless.name);
+        assertEquals("nameless@example.com", nameless.email);
+        assertNull(parser.next());
+    }
+
+    @Test
+    public void longValues_areCutOff() throws IOException {
+        char[] name = new char[2 * VCardParser.MAX_VALUE_LENGTH];
+        Arrays.fill(name, 'x');
+        VCardParser.Card card = parser("BEGIN:VCARD", "FN:" + new String(name), "END:VCARD").next();
+
+        assertEquals(VCardParser.MAX_VALUE_LENGTH, card.name.length());
+    }
+
+    private static VCardParser parser(String... lines) {
+        StringBuilder file = new StringBuilder();
+        for (String line : lines)
+            file.append(line).append("\r\n");
+        return new VCardParser(new StringReader(file.toString()));
+    }
+}
@@ -0,0 +1,103 @@
+package com.deitel.addressbook.macrobenchmark;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.test.uiautomator.Direction;
+import android.support.test.uiautomator.UiDevice;
+import android.support.test.uiautomator.UiObject2;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Macrobenchmarks of the address book's user flows, which will execute on an Android device
+ * against the installed benchmark build of the app. Each flow is timed and recorded in a system
+ * trace (see AppDriver). Results are written to logcat under the tag "Macrobenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class AddressBookMacrobenchmark {
+
+    private static final String TAG = "Macrobenchmark";
+
+    //the number of contacts in the app while the flows run.
+    private static final int CONTACT_COUNT = 5000;
+
+    //the number of times each timed flow is repeated.
+    private static final int ITERATIONS = 5;
+
+    //the number of flings down, and back up, the contact list.
+    private static final int FLINGS = 10;
+
+    private AppDriver app;
+
+    @Before
+    public void setUp() throws Exception {
+        app = new AppDriver(UiDevice.getInstance(InstrumentationRegistry.getInstrumentation()));
+        app.seedContacts(CONTACT_COUNT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        app.stop();
+    }
+
+    //starts the app from a killed process until the contact list shows contacts.
+    @Test
+    public void coldStart() throws Exception {
+        long[] millis = new long[ITERATIONS];
+        String trace = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            app.startTrace();
+            millis[i] = app.coldStart();
+            app.waitForContactList();
+            trace = app.stopTrace("cold-start");
+        }
+        log("cold start", millis, trace);
+    }
+
+    //flings the contact list down and back up, which loads and binds new pages of contacts.
+    @Test
+    public void scrollContactList() throws Exception {
+        app.coldStart();
+        UiObject2 list = app.waitForContactList();
+
+        app.resetFrameStats();
+        app.startTrace();
+        for (int i = 0; i < FLINGS; i++)
+            list.fling(Direction.DOWN);
+        for (int i = 0; i < FLINGS; i++)
+            list.fling(Direction.UP);
+        String trace = app.stopTrace("scroll");
+
+        Log.i(TAG, "scroll: " + app.frameStats() + " (trace " + trace + ")");
+    }
+
+    //opens contacts of the list in DetailFragment and goes back, timing until the details appear.
+    @Test
+    public void openContactDetail() throws Exception {
+        app.coldStart();
+        long[] millis = new long[ITERATIONS];
+
+        app.startTrace();
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<UiObject2> rows = app.waitForContactList().getChildren();
+            millis[i] = app.openContact(rows.get(i % rows.size()));
+            app.pressBack();
+        }
+        String trace = app.stopTrace("open-detail");
+
+        log("open detail", millis, trace);
+    }
+
+    private static void log(String flow, long[] millis, String trace) {
+        Arrays.sort(millis);
+        Log.i(TAG, String.format("%s: median %d ms, min %d ms, max %d ms (last trace %s)",
+                flow, millis[millis.length / 2], millis[0], millis[millis.length - 1], trace));
+    }
+}
@@ -0,0 +1,139 @@
+package com.deitel.addressbook.macrobenchmark;
+
+import android.os.SystemClock;
+import android.support.test.uiautomator.By;
+import android.support.test.uiautomator.UiDevice;
+import android.support.test.uiautomator.UiObject2;
+import android.support.test.uiautomator.Until;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//AppDriver drives the address book app from outside its process, as a user and the shell would:
+//it starts the app with "am start", finds and touches its views with UI Automator, records system
+//traces with atrace and reads the frame statistics of dumpsys gfxinfo. The app must be the
+//benchmark build type, which has the trace sections and the SeedContactsReceiver.
+
+final class AppDriver {
+
+
+    static final String PACKAGE = "com.deitel.addressbook";
+    private static final String ACTIVITY = PACKAGE + "/.MainActivity";
+
+    //how long to wait for a screen to appear.
+    private static final long UI_TIMEOUT_MILLIS = 10000;
+
+    //where the traces are written, and what they record besides the app's own sections.
+    static final String TRACE_DIR = "/data/local/tmp/addressbook-traces";
+    private static final String TRACE_CATEGORIES = "gfx input view wm am sched freq dalvik";
+    private static final int TRACE_BUFFER_KB = 32768;
+
+    //the launch time "am start -W" reports, from the start intent to the first frame drawn.
+    private static final Pattern TOTAL_TIME = Pattern.compile("TotalTime: (\\d+)");
+
+    //the summary lines of dumpsys gfxinfo.
+    private static final Pattern FRAME_STATS = Pattern.compile(
+            "(Total frames rendered|Janky frames|\\d+th percentile): [^\\n]*");
+
+
+    private final UiDevice device;
+
+
+    AppDriver(UiDevice device){
+        this.device = device;
+    }
+
+
+    //seedContacts makes sure the app holds at least count contacts (see SeedContactsReceiver).
+    void seedContacts(int count) throws IOException {
+        String output = shell("am broadcast -n " + PACKAGE + "/.SeedContactsReceiver --ei count " + count);
+        if (!output.contains("result=-1"))
+            throw new IllegalStateException("Cannot seed contacts; is the benchmark build installed? " + output);
+    }
+
+
+    //stop kills the app's process, so the next start is a cold start.
+    void stop() throws IOException {
+        shell("am force-stop " + PACKAGE);
+    }
+
+
+    //coldStart kills the app, starts it and returns the launch time in milliseconds.
+    long coldStart() throws IOException {
+        stop();
+        String output = shell("am start -W -n " + ACTIVITY);
+        Matcher matcher = TOTAL_TIME.matcher(output);
+        if (!matcher.find())
+            throw new IllegalStateException("Cannot start " + ACTIVITY + ": " + output);
+        return Long.parseLong(matcher.group(1));
+    }
+
+
+    //waitForContactList returns the contact list's RecyclerView once it shows contacts.
+    UiObject2 waitForContactList(){
+        UiObject2 list = device.wait(Until.findObject(By.res(PACKAGE, "recyclerView").hasChild(By.text(
+                Pattern.compile(".+")))), UI_TIMEOUT_MILLIS);
+        if (list == null)
+            throw new IllegalStateException("The contact list did not appear");
+        return list;
+    }
+
+
+    //openContact touches row of the contact list and returns the milliseconds until the contact's
+    //name is shown by DetailFragment.
+    long openContact(UiObject2 row){
+        String name = row.getText();
+        long start = SystemClock.uptimeMillis();
+        row.click();
+        if (!device.wait(Until.hasObject(By.res(PACKAGE, "nameTextView").text(name)), UI_TIMEOUT_MILLIS))
+            throw new IllegalStateException("The details of " + name + " did not appear");
+        return SystemClock.uptimeMillis() - start;
+    }
+
+
+    void pressBack(){
+        device.pressBack();
+    }
+
+
+    //startTrace starts recording a system trace that includes the app's trace sections.
+    void startTrace() throws IOException {
+        shell("atrace --async_start -b " + TRACE_BUFFER_KB + " -a " + PACKAGE + " " + TRACE_CATEGORIES);
+    }
+
+
+    //stopTrace stops the trace started by startTrace, writes it to TRACE_DIR as name and returns
+    //its path.
+    String stopTrace(String name) throws IOException {
+        String path = TRACE_DIR + "/" + name + "-" + System.currentTimeMillis() + ".atrace";
+        shell("mkdir -p " + TRACE_DIR);
+        shell("atrace --async_stop -o " + path);
+        return path;
+    }
+
+
+    //resetFrameStats clears the app's frame statistics, so frameStats covers what follows.
+    void resetFrameStats() throws IOException {
+        shell("dumpsys gfxinfo " + PACKAGE + " reset");
+    }
+
+
+    //frameStats returns the summary of the frames the app drew since resetFrameStats: how many,
+    //how many were janky and the frame time percentiles.
+    String frameStats() throws IOException {
+        Matcher matcher = FRAME_STATS.matcher(shell("dumpsys gfxinfo " + PACKAGE));
+        StringBuilder stats = new StringBuilder();
+        while (matcher.find()){
+            if (stats.length() > 0)
+                stats.append(", ");
+            stats.append(matcher.group());
+        }
+        return stats.toString();
+    }
+
+
+    private String shell(String command) throws IOException {
+        return device.executeShellCommand(command);
+    }
+}